@@ -0,0 +1,53 @@
+package com.ai.reviewer.agent;
+
+import com.ai.reviewer.model.ReviewResult;
+import com.ai.reviewer.util.ConfigManager;
+import com.google.gson.Gson;
+
+/**
+ * Wraps a {@link CodeReviewerAgent} with a {@link ReviewCache}, so a file
+ * whose name and content are byte-identical to an earlier run is answered
+ * from disk instead of being reviewed again.
+ *
+ * The cache key covers the content, the file name (it is part of the
+ * result), the rule set and the config version, so editing the config or
+ * swapping analyzers invalidates old entries automatically.
+ */
+public class CachingReviewer {
+
+    /** Config keys that change what a review produces. */
+    private static final String[] CONFIG_KEYS = {
+        "agent.version",
+        "review.max.method.lines",
+        "review.check.magic.numbers",
+        "review.check.naming"
+    };
+
+    private final CodeReviewerAgent agent;
+    private final ReviewCache cache;
+    private final String ruleSet;
+    private final String configVersion;
+    private final Gson gson = new Gson();
+
+    public CachingReviewer(CodeReviewerAgent agent, ReviewCache cache, String ruleSet, ConfigManager config) {
+        this.agent = agent;
+        this.cache = cache;
+        this.ruleSet = ruleSet;
+        this.configVersion = configVersion(config);
+    }
+
+    public ReviewResult reviewCode(String fileName, String code) throws Exception {
+        String key = ReviewCache.key(code, fileName + "\0" + ruleSet, configVersion);
+        String json = cache.computeIfAbsent(key, () -> gson.toJson(agent.reviewCode(fileName, code)));
+        return gson.fromJson(json, ReviewResult.class);
+    }
+
+    /** Fingerprint of the config values that affect review output. */
+    static String configVersion(ConfigManager config) {
+        StringBuilder sb = new StringBuilder();
+        for (String key : CONFIG_KEYS) {
+            sb.append(key).append('=').append(config.getString(key)).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,402 @@
+package com.ai.reviewer.agent;
+
+import com.ai.reviewer.analyzer.Winnower;
+import com.ai.reviewer.analyzer.Winnower.Fingerprints;
+import com.ai.reviewer.util.MappedSource;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cross-file clone detection over {@link Winnower} fingerprints.
+ *
+ * Workers call {@link #update} for their files concurrently; each file's
+ * fingerprints go into a {@link ConcurrentHashMap} as one immutable value,
+ * so workers never wait on each other. {@link #clusters} then finds every
+ * shared fingerprint through one hash table over all of them and strings
+ * matches that line up into cloned regions, which is linear in the number
+ * of fingerprints apart from fingerprints shared by many places: those are
+ * boilerplate and skipped.
+ *
+ * With a backing file the index is loaded on construction and written by
+ * {@link #save}; a file whose size and modification time are unchanged
+ * keeps its stored fingerprints and is not read again.
+ */
+public class CloneIndex {
+
+    /** Shorter copies are not reported by default. */
+    public static final int DEFAULT_MIN_TOKENS = 50;
+    /** A fingerprint found in more places than this is boilerplate, not a clone. */
+    public static final int MAX_OCCURRENCES = 32;
+
+    private static final int MAGIC = 0x52434931; // "RCI1"
+    private static final int VERSION = 1;
+    /** Matches on one diagonal this many fingerprints apart still join one region. */
+    private static final int GAP = 2;
+    /** Files at least this large are memory-mapped instead of read onto the heap. */
+    private static final long MAP_THRESHOLD = 1024 * 1024;
+
+    private final Path file;
+    private final Winnower winnower;
+    private final ConcurrentHashMap<String, Entry> files = new ConcurrentHashMap<>();
+    private final LongAdder rehashed = new LongAdder();
+
+    /** In-memory index with default parameters. */
+    public CloneIndex() {
+        this.file = null;
+        this.winnower = new Winnower();
+    }
+
+    /** Index kept in {@code file}, which need not exist yet. */
+    public CloneIndex(Path file) throws IOException {
+        this(file, new Winnower());
+    }
+
+    /** A stored index built with other winnowing parameters is discarded. */
+    public CloneIndex(Path file, Winnower winnower) throws IOException {
+        this.file = file;
+        this.winnower = winnower;
+        load();
+    }
+
+    /**
+     * Fingerprints {@code p} unless it is unchanged since it was last seen.
+     * Returns whether it was read. Safe to call from many threads.
+     */
+    public boolean update(Path p) throws IOException {
+        String key = key(p);
+        BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+        long size = attrs.size();
+        long modified = attrs.lastModifiedTime().toMillis();
+        Entry old = files.get(key);
+        if (old != null && old.size == size && old.modified == modified) return false;
+        Fingerprints fps;
+        if (size >= MAP_THRESHOLD) {
+            try (MappedSource text = MappedSource.map(p)) {
+                fps = winnower.fingerprint(text.text());
+            }
+        } else {
+            fps = winnower.fingerprint(MappedSource.read(p));
+        }
+        files.put(key, new Entry(size, modified, fps));
+        rehashed.increment();
+        return true;
+    }
+
+    /** Drops every file not in {@code paths}, e.g. ones deleted since the index was saved. */
+    public void retainAll(Collection<Path> paths) {
+        Set<String> keep = new HashSet<>();
+        for (Path p : paths) keep.add(key(p));
+        files.keySet().retainAll(keep);
+    }
+
+    public int size() { return files.size(); }
+
+    /** Files fingerprinted by {@link #update} since construction. */
+    public long rehashed() { return rehashed.sum(); }
+
+    /** Key of {@code p} in the index and in {@link Region#path()}. */
+    public static String key(Path p) {
+        return p.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Copied code of at least {@code minTokens} normalized tokens, largest
+     * first. Each cluster holds every place one piece of code appears.
+     * Call it once the updates are done; files updated meanwhile may be
+     * seen either way.
+     */
+    public List<Cluster> clusters(int minTokens) {
+        List<String> paths = new ArrayList<>(files.keySet());
+        paths.sort(null);
+        int n = paths.size();
+        Fingerprints[] fps = new Fingerprints[n];
+        int[] offsets = new int[n + 1];
+        for (int f = 0; f < n; f++) {
+            fps[f] = files.get(paths.get(f)).fingerprints;
+            offsets[f + 1] = offsets[f] + fps[f].size();
+        }
+        int total = offsets[n];
+
+        // open addressing by hash; postings with one hash are chained, in order
+        int capacity = Integer.highestOneBit(Math.max(2, total) * 2 - 1) * 2;
+        long[] keys = new long[capacity];
+        int[] heads = new int[capacity];
+        int[] counts = new int[capacity];
+        int[] slots = new int[total];
+        int[] next = new int[total];
+        Arrays.fill(heads, -1);
+        int[] tails = new int[capacity];
+        for (int f = 0, g = 0; f < n; f++) {
+            for (int i = 0; i < fps[f].size(); i++, g++) {
+                long h = fps[f].hash(i);
+                int s = (int) (h ^ (h >>> 32)) & (capacity - 1);
+                while (heads[s] >= 0 && keys[s] != h) s = (s + 1) & (capacity - 1);
+                if (heads[s] < 0) {
+                    keys[s] = h;
+                    heads[s] = g;
+                } else {
+                    next[tails[s]] = g;
+                }
+                tails[s] = g;
+                next[g] = -1;
+                counts[s]++;
+                slots[g] = s;
+            }
+        }
+
+        List<Pair> pairs = new ArrayList<>();
+        for (int f = 0; f < n; f++) {
+            Map<Long, Run> runs = new HashMap<>();
+            for (int i = 0; i < fps[f].size(); i++) {
+                int g = offsets[f] + i;
+                int s = slots[g];
+                if (counts[s] < 2 || counts[s] > MAX_OCCURRENCES) continue;
+                for (int o = next[g]; o >= 0; o = next[o]) {
+                    int of = fileOf(offsets, o);
+                    int oi = o - offsets[of];
+                    Long diagonal = ((long) of << 32) | ((oi - i) & 0xFFFFFFFFL);
+                    Run run = runs.get(diagonal);
+                    if (run != null && i - run.lastA <= GAP) {
+                        run.lastA = i;
+                        run.lastB = oi;
+                    } else {
+                        if (run != null) run.close(fps, f, winnower.k(), minTokens, pairs);
+                        runs.put(diagonal, new Run(of, i, oi));
+                    }
+                }
+            }
+            for (Run run : runs.values()) run.close(fps, f, winnower.k(), minTokens, pairs);
+        }
+        return cluster(paths, pairs);
+    }
+
+    private static int fileOf(int[] offsets, int g) {
+        int f = Arrays.binarySearch(offsets, g);
+        if (f < 0) return -f - 2;
+        // empty files share an offset with the next one
+        while (offsets[f + 1] == g) f++;
+        return f;
+    }
+
+    /** Unions pairs that share a region; overlapping regions of one file merge. */
+    private static List<Cluster> cluster(List<String> paths, List<Pair> pairs) {
+        int regions = pairs.size() * 2;
+        int[] fileOf = new int[regions], first = new int[regions], last = new int[regions];
+        for (int p = 0; p < pairs.size(); p++) {
+            Pair pair = pairs.get(p);
+            fileOf[2 * p] = pair.fileA;
+            first[2 * p] = pair.firstA;
+            last[2 * p] = pair.lastA;
+            fileOf[2 * p + 1] = pair.fileB;
+            first[2 * p + 1] = pair.firstB;
+            last[2 * p + 1] = pair.lastB;
+        }
+        int[] parent = new int[regions];
+        for (int r = 0; r < regions; r++) parent[r] = r;
+        for (int p = 0; p < pairs.size(); p++) union(parent, 2 * p, 2 * p + 1);
+
+        Integer[] order = new Integer[regions];
+        for (int r = 0; r < regions; r++) order[r] = r;
+        Arrays.sort(order, Comparator.<Integer>comparingInt(r -> fileOf[r]).thenComparingInt(r -> first[r]));
+        for (int i = 1, open = 0; i < regions; i++) {
+            int r = order[i], o = order[open];
+            if (fileOf[r] == fileOf[o] && first[r] <= last[o]) {
+                union(parent, r, o);
+                if (last[r] > last[o]) open = i;
+            } else {
+                open = i;
+            }
+        }
+
+        Map<Integer, Cluster> clusters = new HashMap<>();
+        Map<Integer, Region> current = new HashMap<>();
+        for (int i = 0; i < regions; i++) {
+            int r = order[i];
+            int root = find(parent, r);
+            Cluster c = clusters.computeIfAbsent(root, x -> new Cluster());
+            Region open = current.get(root);
+            if (open != null && open.path.equals(paths.get(fileOf[r])) && first[r] <= open.lastLine) {
+                open.lastLine = Math.max(open.lastLine, last[r]);
+            } else {
+                open = new Region(paths.get(fileOf[r]), first[r], last[r]);
+                c.regions.add(open);
+                current.put(root, open);
+            }
+        }
+        for (int p = 0; p < pairs.size(); p++) {
+            Cluster c = clusters.get(find(parent, 2 * p));
+            c.tokens = Math.max(c.tokens, pairs.get(p).tokens);
+        }
+        List<Cluster> out = new ArrayList<>(clusters.values());
+        out.sort(Comparator.comparingInt(Cluster::tokens).reversed()
+            .thenComparing(c -> c.regions.get(0).path).thenComparingInt(c -> c.regions.get(0).firstLine));
+        return out;
+    }
+
+    private static int find(int[] parent, int r) {
+        while (parent[r] != r) {
+            parent[r] = parent[parent[r]];
+            r = parent[r];
+        }
+        return r;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        a = find(parent, a);
+        b = find(parent, b);
+        if (a != b) parent[Math.max(a, b)] = Math.min(a, b);
+    }
+
+    /** Writes the index to its file; a no-op for an in-memory index. */
+    public void save() throws IOException {
+        if (file == null) return;
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(winnower.k());
+                out.writeInt(winnower.window());
+                List<Map.Entry<String, Entry>> entries = new ArrayList<>(files.entrySet());
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> e : entries) {
+                    out.writeUTF(e.getKey());
+                    out.writeLong(e.getValue().size);
+                    out.writeLong(e.getValue().modified);
+                    e.getValue().fingerprints.writeTo(out);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readInt() != winnower.k() || in.readInt() != winnower.window()) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                files.put(key, new Entry(size, modified, Fingerprints.readFrom(in)));
+            }
+        } catch (NoSuchFileException e) {
+            // first run
+        } catch (EOFException | StreamCorruptedException e) {
+            // unreadable; every file is fingerprinted again
+            files.clear();
+        }
+    }
+
+    private static final class Entry {
+        final long size;
+        final long modified;
+        final Fingerprints fingerprints;
+
+        Entry(long size, long modified, Fingerprints fingerprints) {
+            this.size = size;
+            this.modified = modified;
+            this.fingerprints = fingerprints;
+        }
+    }
+
+    /** Matches along one diagonal between the current file (A) and {@code fileB}. */
+    private static final class Run {
+        final int fileB;
+        final int firstA, firstB;
+        int lastA, lastB;
+
+        Run(int fileB, int a, int b) {
+            this.fileB = fileB;
+            this.firstA = lastA = a;
+            this.firstB = lastB = b;
+        }
+
+        void close(Fingerprints[] fps, int fileA, int k, int minTokens, List<Pair> out) {
+            Fingerprints a = fps[fileA], b = fps[fileB];
+            int tokens = a.token(lastA) + k - a.token(firstA);
+            if (tokens < minTokens) return;
+            int aFirst = a.firstLine(firstA), aLast = a.lastLine(lastA);
+            int bFirst = b.firstLine(firstB), bLast = b.lastLine(lastB);
+            // a repeated pattern matching a shifted copy of itself
+            if (fileA == fileB && bFirst <= aLast) return;
+            out.add(new Pair(fileA, aFirst, aLast, fileB, bFirst, bLast, tokens));
+        }
+    }
+
+    private static final class Pair {
+        final int fileA, firstA, lastA, fileB, firstB, lastB, tokens;
+
+        Pair(int fileA, int firstA, int lastA, int fileB, int firstB, int lastB, int tokens) {
+            this.fileA = fileA;
+            this.firstA = firstA;
+            this.lastA = lastA;
+            this.fileB = fileB;
+            this.firstB = firstB;
+            this.lastB = lastB;
+            this.tokens = tokens;
+        }
+    }
+
+    /** The places one piece of code appears, by path and line. */
+    public static final class Cluster {
+        private final List<Region> regions = new ArrayList<>();
+        private int tokens;
+
+        public List<Region> regions() { return regions; }
+
+        /** Normalized tokens in the longest copy. */
+        public int tokens() { return tokens; }
+    }
+
+    public static final class Region {
+        private final String path;
+        private final int firstLine;
+        private int lastLine;
+
+        Region(String path, int firstLine, int lastLine) {
+            this.path = path;
+            this.firstLine = firstLine;
+            this.lastLine = lastLine;
+        }
+
+        public String path() { return path; }
+        public int firstLine() { return firstLine; }
+        public int lastLine() { return lastLine; }
+
+        @Override
+        public String toString() {
+            return path + ":" + firstLine + "-" + lastLine;
+        }
+    }
+}
@@ -1,174 +1,1809 @@
+import com.ai.reviewer.agent.CloneIndex;
+import com.ai.reviewer.agent.FindingsStore;
+import com.ai.reviewer.agent.LlmClient;
+import com.ai.reviewer.agent.LlmReviewStage;
+import com.ai.reviewer.agent.OpenAiClient;
+import com.ai.reviewer.agent.ParallelReviewEngine;
+import com.ai.reviewer.agent.ReviewCache;
+import com.ai.reviewer.analyzer.JavaLexer;
+import com.ai.reviewer.analyzer.JavaLexer.Token;
+import com.ai.reviewer.analyzer.JavaLexer.TokenKind;
+import com.ai.reviewer.analyzer.JavaLexer.TokenListener;
+import com.ai.reviewer.analyzer.SyntaxTree;
+import com.ai.reviewer.analyzer.TokenPatternMatcher;
+import com.ai.reviewer.analyzer.TokenPatternMatcher.Match;
+import com.ai.reviewer.util.GitDiff;
+import com.ai.reviewer.util.MappedSource;
+import com.ai.reviewer.util.ReviewMetrics;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.util.*;
-import java.util.regex.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
 
 
 public class CodeReviewerAgent1 {
 
-    public static void main(String[] args) throws IOException {
-        if (args.length < 1) {
-            System.out.println("Usage: java CodeReviewerAgent <file.java>");
-            return;
+    /** Enabled rules, loaded on first use; switch one off with {@code -Dreview.rule.<Name>=false}. */
+    static List<Rule> rules() {
+        return Rules.PLAN.rules;
+    }
+
+    /** Holder, so loading this class (e.g. from {@code QuickReview}) neither looks up nor creates rules. */
+    private static final class Rules {
+        static final RulePlan PLAN = RulePlan.load(System::getProperty);
+    }
+
+    /** Bump whenever rule behavior or the cached format changes, so old findings are dropped. */
+    private static final String RULES_VERSION = "4";
+
+    /** Files at least this large are memory-mapped instead of read onto the heap. */
+    private static final long MAP_THRESHOLD = 1024 * 1024;
+
+    private static ReviewCache cache;
+
+    /** Where whole-file reviews are recorded, under {@link #commit}; diff reviews are not. */
+    private static FindingsStore store;
+    private static String commit;
+
+    /** Files with findings, kept for the model review when there is one. */
+    private static Queue<LlmReviewStage.Source> flagged;
+
+    /** Limits every file's review; none unless asked for, see {@link Budget}. */
+    static volatile Budget budget = Budget.NONE;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int parallelism = ParallelReviewEngine.defaultParallelism();
+        String glob = "**.java";
+        String diff = null;
+        int context = 3;
+        Path clones = null;
+        URI llm = null;
+        String llmKeyEnv = null;
+        String llmModel = OpenAiClient.DEFAULT_MODEL;
+        List<Path> targets = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--parallelism") && i + 1 < args.length) {
+                parallelism = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--glob") && i + 1 < args.length) {
+                glob = args[++i];
+            } else if (args[i].equals("--cache") && i + 1 < args.length) {
+                cache = new ReviewCache(Path.of(args[++i]));
+            } else if (args[i].equals("--store") && i + 1 < args.length) {
+                store = new FindingsStore(Path.of(args[++i]));
+            } else if (args[i].equals("--commit") && i + 1 < args.length) {
+                commit = args[++i];
+            } else if (args[i].equals("--clones") && i + 1 < args.length) {
+                clones = Path.of(args[++i]);
+            } else if (args[i].equals("--llm") && i + 1 < args.length) {
+                llm = args[++i].equals("openai") ? OpenAiClient.DEFAULT_ENDPOINT : URI.create(args[i]);
+            } else if (args[i].equals("--llm-model") && i + 1 < args.length) {
+                llmModel = args[++i];
+            } else if (args[i].equals("--llm-key-env") && i + 1 < args.length) {
+                llmKeyEnv = args[++i];
+            } else if (args[i].equals("--metrics")) {
+                ReviewMetrics.GLOBAL.setEnabled(true);
+            } else if (args[i].equals("--rule-budget-ms") && i + 1 < args.length) {
+                budget = budget.withRuleMillis(Long.parseLong(args[++i]));
+            } else if (args[i].equals("--rule-budget-mb") && i + 1 < args.length) {
+                budget = budget.withRuleMegabytes(Long.parseLong(args[++i]));
+            } else if (args[i].equals("--file-budget-ms") && i + 1 < args.length) {
+                budget = budget.withFileMillis(Long.parseLong(args[++i]));
+            } else if (args[i].equals("--file-budget-mb") && i + 1 < args.length) {
+                budget = budget.withFileMegabytes(Long.parseLong(args[++i]));
+            } else if (args[i].equals("--diff") && i + 1 < args.length) {
+                diff = args[++i];
+            } else if (args[i].equals("--context") && i + 1 < args.length) {
+                context = Integer.parseInt(args[++i]);
+            } else {
+                targets.add(Path.of(args[i]));
+            }
         }
-        Path p = Path.of(args[0]);
-        if (!Files.exists(p)) {
-            System.out.println("File not found: " + p);
+        if (targets.isEmpty() && diff == null) {
+            System.out.println("Usage: java CodeReviewerAgent [--parallelism N] [--glob PATTERN] [--cache DIR] [--metrics]"
+                + " [--store DIR [--commit ID]] [--clones DIR] [--llm URL|openai [--llm-model NAME] [--llm-key-env VAR]]"
+                + " [--rule-budget-ms N] [--rule-budget-mb N] [--file-budget-ms N] [--file-budget-mb N]"
+                + " [--diff BASE[..HEAD] [--context N]] <file.java|dir>...");
             return;
         }
 
-        String text = Files.readString(p);
-        LineIndex index = new LineIndex(text);
+        List<Path> files = new ArrayList<>();
+        ParallelReviewEngine.FileReviewer<String> reviewer = CodeReviewerAgent1::reviewFile;
+        if (diff != null) {
+            // Only the files and lines the change touches; HEAD defaults to the work tree
+            Path root;
+            String[] range;
+            Map<String, GitDiff.ChangedLines> diffed;
+            List<Path> under = new ArrayList<>();
+            try {
+                root = GitDiff.root(targets.isEmpty() ? Path.of(".") : targets.get(0)).toRealPath();
+                for (Path t : targets) under.add(t.toRealPath());
+                range = GitDiff.range(root, diff);
+                diffed = GitDiff.changedLines(root, range[0], range[1], context);
+            } catch (IOException e) {
+                System.out.println("Cannot read diff " + diff + ": " + e.getMessage());
+                return;
+            }
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+            Map<Path, GitDiff.ChangedLines> changed = new HashMap<>();
+            for (Map.Entry<String, GitDiff.ChangedLines> e : diffed.entrySet()) {
+                if (!matcher.matches(Path.of(e.getKey()))) continue;
+                Path file = root.resolve(e.getKey());
+                if (!under.isEmpty() && under.stream().noneMatch(file::startsWith)) continue;
+                files.add(file);
+                changed.put(file, e.getValue());
+            }
+            String head = range[1];
+            reviewer = file -> reviewChanges(root, root.relativize(file).toString(), head, changed.get(file));
+        } else {
+            for (Path p : targets) {
+                if (!Files.exists(p)) {
+                    System.out.println("File not found: " + p);
+                    return;
+                }
+                files.addAll(ParallelReviewEngine.collect(p, glob));
+            }
+        }
+
+        if (store != null && commit == null) {
+            try {
+                commit = GitDiff.revParse(Path.of("."), "HEAD");
+                // uncommitted edits are not what HEAD holds; keep their findings apart
+                if (GitDiff.dirty(Path.of("."), targets)) commit += "-dirty";
+            } catch (IOException e) {
+                commit = "unversioned";
+            }
+        }
 
-        List<Rule> rules = List.of(
-            new MissingDotRule(),
-            new SystemOutRule(),
-            new UnclosedConstructRule()
-        );
+        if (llm != null && diff == null) flagged = new ConcurrentLinkedQueue<>();
 
-        List<Suggestion> suggestions = new ArrayList<>();
-        for (Rule rule : rules) {
-            suggestions.addAll(rule.apply(text, index));
+        if (files.size() == 1 && diff == null) {
+            reviewFile(files.get(0), System.out);
+        } else {
+            try (ParallelReviewEngine engine = new ParallelReviewEngine(parallelism)) {
+                engine.reviewAll(files, reviewer, (file, report, error) -> {
+                    if (error != null) {
+                        System.out.println("Error reviewing " + file + ": " + error.getMessage());
+                    } else {
+                        System.out.print(report);
+                    }
+                });
+            }
+        }
+        if (store != null) store.close();
+        if (clones != null && diff == null) reportClones(clones, files, parallelism);
+        if (llm != null && diff == null) {
+            reportLlm(new OpenAiClient(llm, llmKey(llm, llmKeyEnv), llmModel), new ArrayList<>(flagged));
+            flagged = null;
+        }
+        if (ReviewMetrics.GLOBAL.enabled()) {
+            // stderr, so the report on stdout stays unchanged
+            ReviewMetrics.GLOBAL.writePrometheus(System.err);
+        }
+    }
+
+    /**
+     * Fingerprints {@code files} into the clone index kept under {@code dir},
+     * rereading only files changed since the last run, and prints the code
+     * found in more than one place.
+     */
+    private static void reportClones(Path dir, List<Path> files, int parallelism)
+            throws IOException, InterruptedException {
+        CloneIndex index = new CloneIndex(dir.resolve("fingerprints.bin"));
+        try (ParallelReviewEngine engine = new ParallelReviewEngine(parallelism)) {
+            engine.reviewAll(files, index::update, (file, read, error) -> {
+                if (error != null) System.out.println("Error fingerprinting " + file + ": " + error.getMessage());
+            });
         }
+        index.retainAll(files);
+        index.save();
+        for (CloneIndex.Cluster c : index.clusters(CloneIndex.DEFAULT_MIN_TOKENS)) {
+            System.out.println("Duplicate code (" + c.tokens() + " tokens):");
+            for (CloneIndex.Region r : c.regions()) {
+                System.out.println("  " + storedPath(Path.of(r.path())) + ": lines " + r.firstLine() + "-" + r.lastLine());
+            }
+        }
+    }
+
+    /**
+     * The key for {@code llm}: the variable named by {@code --llm-key-env},
+     * else {@code OPENAI_API_KEY} but only for OpenAI's own host, so a
+     * local or third-party endpoint never sees it.
+     */
+    static String llmKey(URI llm, String keyEnv) {
+        if (keyEnv != null) return System.getenv(keyEnv);
+        return OpenAiClient.DEFAULT_ENDPOINT.getHost().equalsIgnoreCase(llm.getHost())
+            ? System.getenv("OPENAI_API_KEY") : null;
+    }
+
+    /**
+     * Sends the code around the findings of the review pass, kept in
+     * {@code sources}, to {@code client} through an {@link LlmReviewStage},
+     * sharing the review cache if there is one, and prints the model's
+     * comments. The counts go to stderr.
+     */
+    static void reportLlm(LlmClient client, List<LlmReviewStage.Source> sources) throws InterruptedException {
+        // files finish in any order; the prompts should not
+        sources.sort(Comparator.comparing(LlmReviewStage.Source::path));
+        LlmReviewStage.Result result = new LlmReviewStage(client, cache).review(sources);
+        String path = null;
+        for (LlmReviewStage.Note n : result.notes()) {
+            if (!n.path().equals(path)) {
+                path = n.path();
+                System.out.println("Model review for " + path + ":");
+            }
+            System.out.println("  Lines " + n.firstLine() + "-" + n.lastLine() + ": " + n.comment());
+        }
+        for (String error : result.errors()) System.out.println("Model review failed: " + error);
+        System.err.println("model review: " + result);
+    }
+
+    /** Reviews one file and renders the report printed for it. */
+    static String reviewFile(Path p) throws IOException {
+        StringBuilder out = new StringBuilder();
+        reviewFile(p, out);
+        return out.toString();
+    }
+
+    /**
+     * Reviews one file, writing its report to {@code out} as findings are
+     * released. Returns the number of findings.
+     */
+    static int reviewFile(Path p, Appendable out) throws IOException {
+        Report report = new Report(p.getFileName().toString(), out);
+        Recorder recorder = store == null && flagged == null ? null : new Recorder(report);
+        SuggestionSink sink = recorder == null ? report : recorder;
+        if (Files.size(p) >= MAP_THRESHOLD) {
+            try (MappedSource text = MappedSource.map(p)) {
+                review(text.text(), sink);
+                keepFlagged(p, text.text(), recorder);
+            }
+        } else {
+            String text = MappedSource.read(p);
+            review(text, sink);
+            keepFlagged(p, text, recorder);
+        }
+        report.finish();
+        if (store == null) return report.count();
+        // like the cache, a cut-short review is not worth keeping
+        if (recorder != null && !recorder.partial) store.add(commit, storedPath(p), recorder.found);
+        return report.count();
+    }
 
-        if (suggestions.isEmpty()) {
-            System.out.println("No quick suggestions for " + p.getFileName());
+    /** Keeps {@code p} for the model review if it has findings, so it is not read and reviewed again. */
+    private static void keepFlagged(Path p, CharSequence text, Recorder recorder) {
+        if (flagged == null || recorder.found.isEmpty()) return;
+        LlmReviewStage.Source source = new LlmReviewStage.Source(storedPath(p), text.toString());
+        for (FindingsStore.Finding f : recorder.found) source.flag(f.getLine(), f.getMessage());
+        flagged.add(source);
+    }
+
+    /** {@code p} relative to the working directory when under it, so queries can match on module prefixes. */
+    private static String storedPath(Path p) {
+        Path abs = p.toAbsolutePath().normalize();
+        Path cwd = Path.of("").toAbsolutePath();
+        return abs.startsWith(cwd) ? cwd.relativize(abs).toString() : abs.toString();
+    }
+
+    /**
+     * Reviews the changed lines of {@code path} (relative to {@code root}) as
+     * of {@code rev}, or of the work tree if null. Findings are reported
+     * only on {@code lines}; the cache is not used.
+     */
+    static String reviewChanges(Path root, String path, String rev, GitDiff.ChangedLines lines) throws IOException {
+        String text = rev == null ? MappedSource.read(root.resolve(path)) : GitDiff.show(root, rev, path);
+        StringBuilder out = new StringBuilder();
+        Report report = new Report(path, out);
+        review(text, LINE_INDEX.get().reset(text), rules(), report, lines);
+        report.finish();
+        return out.toString();
+    }
+
+    /** Reused across files; each review is done with it before returning. */
+    private static final ThreadLocal<LineIndex> LINE_INDEX = ThreadLocal.withInitial(LineIndex::new);
+
+    /** Streams the findings for {@code text} to {@code out} in line order. */
+    static void review(CharSequence text, SuggestionSink out) throws IOException {
+        if (cache == null) {
+            review(text, LINE_INDEX.get().reset(text), rules(), out);
+        } else {
+            reviewCached(text, out);
+        }
+    }
+
+    static SuggestionTable review(CharSequence text) {
+        SuggestionTable out = new SuggestionTable();
+        review(text, LINE_INDEX.get().reset(text), rules(), out);
+        return out;
+    }
+
+    /** Looks the findings up by content hash; only reviews on a miss. */
+    static void reviewCached(CharSequence text, SuggestionSink out) throws IOException {
+        String key = ReviewCache.key(text, ruleSet(rules()), RULES_VERSION);
+
+        String payload = cache.get(key);
+        if (payload != null) {
+            for (Suggestion s : Suggestion.decode(payload)) out.accept(s);
             return;
         }
+        SuggestionTable found = new SuggestionTable();
+        boolean[] partial = {false};
+        review(text, LINE_INDEX.get().reset(text), rules(), new SuggestionSink() {
+            @Override
+            public void accept(Suggestion s) {
+                found.add(s);
+                out.accept(s);
+            }
 
-        suggestions.sort(Comparator.comparingInt(s -> s.line));
-        System.out.println("Suggestions for " + p.getFileName() + ":");
-        for (Suggestion s : suggestions) {
-            System.out.printf("  Line %d: %s%n", s.line, s.msg);
+            @Override
+            public void incomplete(String reason) {
+                partial[0] = true;
+                out.incomplete(reason);
+            }
+        });
+        // a cut-short review depends on the machine's speed, not just the text
+        if (!partial[0]) cache.put(key, Suggestion.encode(found));
+    }
+
+    /** Identifies {@code rules} and their settings in cache keys. */
+    static String ruleSet(List<Rule> rules) {
+        StringBuilder ruleSet = new StringBuilder();
+        for (Rule rule : rules) {
+            ruleSet.append(rule.getClass().getName());
+            String settings = rule.settings();
+            if (!settings.isEmpty()) ruleSet.append('[').append(settings).append(']');
+            ruleSet.append(',');
         }
+        return ruleSet.toString();
     }
 
     // ---------- Core Types ----------
     interface Rule {
-        List<Suggestion> apply(String text, LineIndex index);
+        List<Suggestion> apply(CharSequence text, LineIndex index);
+
+        /** The {@code ReviewSeverity} name its findings are recorded with; any other name counts as MAJOR. */
+        default String severity() { return "MAJOR"; }
+
+        /** Names the rule in findings, metrics and config. */
+        default String name() { return getClass().getSimpleName(); }
+
+        /** Prefix of every built-in rule's {@link #configKey()}. */
+        String CONFIG_PREFIX = "review.rule.";
+
+        /** Setting this key to {@code false} leaves the rule out of the {@link RulePlan}. */
+        default String configKey() { return CONFIG_PREFIX + name(); }
+
+        /** Whether the rule runs while its config key is unset; if not, it takes {@code true}. */
+        default boolean enabledByDefault() { return true; }
+
+        /** Configuration besides the text that changes its findings, e.g. a limit; cached findings depend on it. */
+        default String settings() { return ""; }
+    }
+
+    /**
+     * Receives findings as a rule produces them. {@link #advance} is a
+     * promise that nothing will be reported before a source position any
+     * more, which lets an {@link OrderedMerge} release earlier findings.
+     */
+    interface SuggestionSink {
+        void accept(Suggestion s);
+
+        default void advance(int pos) {}
+
+        /** The review was cut short, e.g. by its {@link Budget}; findings may be missing. */
+        default void incomplete(String reason) {}
+    }
+
+    /**
+     * A rule fed by the shared {@link JavaLexer} pass instead of rescanning the
+     * text itself. It only sees the token kinds it asks for. {@link #apply}
+     * still works and runs a private lexer pass for just this rule.
+     */
+    interface TokenRule extends Rule {
+        Set<TokenKind> kinds();
+
+        /** Creates the per-file listener; findings are pushed to {@code out}. */
+        TokenListener listener(CharSequence text, LineIndex index, SuggestionSink out);
+
+        @Override
+        default List<Suggestion> apply(CharSequence text, LineIndex index) {
+            List<Suggestion> out = new ArrayList<>();
+            new JavaLexer().subscribe(listener(text, index, out::add), kinds()).scan(text);
+            return out;
+        }
+    }
+
+    /**
+     * A token listener whose state can be saved between tokens and restored
+     * later, so a {@link ReviewSession} can resume a scan mid-file after an
+     * edit instead of starting over.
+     */
+    interface ResumableListener extends TokenListener {
+        /** Snapshot of the current state; must not change when scanning goes on. */
+        Object save();
+
+        void restore(Object state);
+
+        /**
+         * Whether {@code state}, taken after an edit, equals {@code old}, taken
+         * before it, once {@code old}'s positions are moved by {@code shift}.
+         */
+        boolean sameState(Object state, Object old, Shift shift);
+
+        /** Moves {@code old}'s positions by {@code shift}; may do so in place. */
+        Object shift(Object old, Shift shift);
+    }
+
+    /**
+     * How positions and token indexes of text after an edit moved: those at
+     * or after {@code from} (resp. {@code indexFrom}) by {@code delta}
+     * (resp. {@code indexDelta}).
+     */
+    static final class Shift {
+        final int from, delta, indexFrom, indexDelta;
+
+        Shift(int from, int delta, int indexFrom, int indexDelta) {
+            this.from = from;
+            this.delta = delta;
+            this.indexFrom = indexFrom;
+            this.indexDelta = indexDelta;
+        }
+
+        int pos(int p) { return p >= from ? p + delta : p; }
+        int index(int i) { return i >= indexFrom ? i + indexDelta : i; }
+    }
+
+    /**
+     * A rule that fires on a sequence of whitespace-separated identifiers,
+     * written as a {@link TokenPatternMatcher} pattern. The patterns of all
+     * pattern rules in a review are compiled into one automaton, so adding
+     * one costs nothing per token.
+     */
+    interface PatternRule extends TokenRule {
+        String pattern();
+
+        /** Called for each match; may still decide not to report it. */
+        void onMatch(CharSequence text, LineIndex index, Match m, SuggestionSink out);
+
+        @Override
+        default Set<TokenKind> kinds() { return EnumSet.of(TokenKind.IDENTIFIER); }
+
+        @Override
+        default TokenListener listener(CharSequence text, LineIndex index, SuggestionSink out) {
+            return TokenPatternMatcher.compile(List.of(pattern())).listener(new TokenPatternMatcher.MatchListener() {
+                @Override
+                public void onMatch(int pattern, Match m) { PatternRule.this.onMatch(text, index, m, out); }
+
+                @Override
+                public void onAdvance(int pos) { out.advance(pos); }
+            });
+        }
+    }
+
+    /**
+     * One shared matcher listener for all the {@link PatternRule}s in
+     * {@code rules}, each reporting to {@code sinks.apply(ruleIndex)}; null if
+     * there are none. Subscribe it to identifier tokens.
+     */
+    static TokenPatternMatcher.Scan patternScan(CharSequence text, LineIndex index, List<Rule> rules,
+                                               IntFunction<? extends SuggestionSink> sinks) {
+        return patternScan(text, index, rules, sinks, null, null);
+    }
+
+    /**
+     * As above; with {@code times}, each rule's onMatch time is added to it,
+     * and with {@code only}, matches on no accepted line are skipped.
+     */
+    static TokenPatternMatcher.Scan patternScan(CharSequence text, LineIndex index, List<Rule> rules,
+                                               IntFunction<? extends SuggestionSink> sinks, RuleTimes times,
+                                               IntPredicate only) {
+        RulePlan plan = RulePlan.of(rules);
+        if (plan.matcher == null) return null;
+        int[] patternRules = plan.patternRules;
+        return plan.matcher.listener(new TokenPatternMatcher.MatchListener() {
+            @Override
+            public void onMatch(int pattern, Match m) {
+                int r = patternRules[pattern];
+                if (times != null && times.disabled[r]) return;
+                if (only != null && !only.test(index.lineOf(m.start(0)))
+                        && !only.test(index.lineOf(m.end(m.length() - 1) - 1))) {
+                    return;
+                }
+                if (times == null || ++times.matchesSkipped[r] < RuleTimes.SAMPLE) {
+                    ((PatternRule) rules.get(r)).onMatch(text, index, m, sinks.apply(r));
+                    return;
+                }
+                times.matchesSkipped[r] = 0;
+                long start = System.nanoTime();
+                long delivered = times.outNanos;
+                ((PatternRule) rules.get(r)).onMatch(text, index, m, sinks.apply(r));
+                times.matchNanos[r] += (System.nanoTime() - start - (times.outNanos - delivered)) * RuleTimes.SAMPLE;
+            }
+
+            @Override
+            public void onAdvance(int pos) {
+                for (int r : patternRules) sinks.apply(r).advance(pos);
+            }
+        });
+    }
+
+    /**
+     * A rule that reads the {@link SyntaxTree} built once per file in the
+     * shared lexer pass instead of finding methods, loops or catch blocks in
+     * the text itself. {@link #onNode} is called as each node of its
+     * {@link #kinds} closes, innermost first, and may only report on lines
+     * from the node's start on.
+     */
+    interface TreeRule extends Rule {
+        Set<SyntaxTree.Kind> kinds();
+
+        /** Called with the tree complete up to {@code node}'s end. */
+        void onNode(SyntaxTree tree, int node, LineIndex index, SuggestionSink out);
+
+        @Override
+        default List<Suggestion> apply(CharSequence text, LineIndex index) {
+            List<Suggestion> out = new ArrayList<>();
+            Set<SyntaxTree.Kind> kinds = kinds();
+            new JavaLexer().subscribeAll(new SyntaxTree.Builder(text, (tree, n) -> {
+                if (kinds.contains(tree.kind(n))) onNode(tree, n, index, out::add);
+            })).scan(text);
+            return out;
+        }
+    }
+
+    /**
+     * One shared tree builder for all the {@link TreeRule}s in {@code rules},
+     * each reporting to {@code sinks.apply(ruleIndex)}; null if there are
+     * none. Subscribe it to every token kind. With {@code times}, each rule's
+     * onNode time is added to it.
+     */
+    static TokenListener treeScan(CharSequence text, LineIndex index, List<Rule> rules,
+                                  IntFunction<? extends SuggestionSink> sinks, RuleTimes times) {
+        RulePlan plan = RulePlan.of(rules);
+        int[] treeRules = plan.treeRules;
+        if (treeRules.length == 0) return null;
+        List<Set<SyntaxTree.Kind>> kinds = plan.treeKinds;
+        SyntaxTree.Builder builder = new SyntaxTree.Builder(text, (tree, n) -> {
+            SyntaxTree.Kind kind = tree.kind(n);
+            for (int i = 0; i < treeRules.length; i++) {
+                int r = treeRules[i];
+                if (!kinds.get(i).contains(kind) || (times != null && times.disabled[r])) continue;
+                TreeRule rule = (TreeRule) rules.get(r);
+                if (times == null) {
+                    rule.onNode(tree, n, index, sinks.apply(r));
+                    continue;
+                }
+                long start = System.nanoTime();
+                long delivered = times.outNanos;
+                rule.onNode(tree, n, index, sinks.apply(r));
+                times.matchNanos[r] += System.nanoTime() - start - (times.outNanos - delivered);
+            }
+        });
+        return new TokenListener() {
+            @Override
+            public void onToken(Token t) {
+                builder.onToken(t);
+                // a rule can still report from the oldest open node it watches
+                for (int i = 0; i < treeRules.length; i++) {
+                    sinks.apply(treeRules[i]).advance(builder.openFrom(kinds.get(i), t.end()));
+                }
+            }
+
+            @Override
+            public void onEnd(int length) {
+                builder.onEnd(length);
+            }
+        };
+    }
+
+    /**
+     * Runs all token rules off a single lexer pass, with every pattern rule
+     * sharing one automaton and every tree rule one {@link SyntaxTree};
+     * plain rules scan on their own. Findings reach
+     * {@code out} ordered by line, ties in rule order.
+     */
+    static void review(CharSequence text, LineIndex index, List<Rule> rules, SuggestionSink out) {
+        review(text, index, rules, out, null);
+    }
+
+    /**
+     * As above, but only findings on lines {@code only} accepts are reported,
+     * and pattern rules are not run anywhere else. Token rules still see the
+     * whole text, so structural ones like bracket matching stay correct
+     * around the accepted lines.
+     */
+    static void review(CharSequence text, LineIndex index, List<Rule> rules, SuggestionSink out,
+                       IntPredicate only) {
+        if (only != null) out = new LineFilter(out, only);
+        RulePlan plan = RulePlan.of(rules);
+        Budget limits = budget;
+        boolean measured = ReviewMetrics.GLOBAL.enabled();
+        boolean ruleLimits = limits.ruleNanos > 0 || limits.ruleAllocatedBytes > 0;
+        RuleTimes times = measured || ruleLimits ? new RuleTimes(rules.size(), limits.ruleAllocatedBytes > 0) : null;
+        OrderedMerge merge = new OrderedMerge(rules, index, out, times);
+        JavaLexer lexer = new JavaLexer();
+        boolean fused = false;
+        if (limits.enabled()) {
+            // first subscriber, so it sees every token before the rules do
+            lexer.subscribeAll(new Watchdog(limits, rules, times, merge, lexer, out));
+        }
+
+        TokenPatternMatcher.Scan patterns = patternScan(text, index, rules, merge::channel, times, only);
+        if (patterns != null) {
+            lexer.subscribe(times == null ? patterns : times.timed(patterns, RuleTimes.PATTERNS),
+                EnumSet.of(TokenKind.IDENTIFIER));
+            fused = true;
+        }
+        TokenListener tree = treeScan(text, index, rules, merge::channel, times);
+        if (tree != null) {
+            lexer.subscribeAll(times == null ? tree : times.timed(tree, RuleTimes.TREE));
+            fused = true;
+        }
+
+        for (int r : plan.tokenRules) {
+            TokenRule tr = (TokenRule) rules.get(r);
+            TokenListener l = tr.listener(text, index, merge.channel(r));
+            lexer.subscribe(times == null ? l : times.timed(l, r), tr.kinds());
+            fused = true;
+        }
+        for (int r : plan.plainRules) {
+            OrderedMerge.Channel channel = merge.channel(r);
+            long start = times == null ? 0 : System.nanoTime();
+            long delivered = times == null ? 0 : times.outNanos;
+            long allocated = times != null && measured ? ReviewMetrics.allocatedBytes() : -1;
+            List<Suggestion> found;
+            try {
+                found = rules.get(r).apply(ruleLimits ? new BudgetedText(text, limits) : text, index);
+            } catch (BudgetedText.OverBudget e) {
+                // what it found so far may be wrong, e.g. an unclosed construct it had not reached the end of
+                found = List.of();
+                out.incomplete(rules.get(r).name() + " skipped after exceeding its " + e.getMessage());
+            }
+            for (Suggestion s : found) channel.accept(s);
+            if (times != null) {
+                times.nanos[r] = System.nanoTime() - start - (times.outNanos - delivered);
+                times.allocated[r] = allocated < 0 ? -1 : ReviewMetrics.allocatedBytes() - allocated;
+            }
+            channel.close();
+        }
+        if (fused) {
+            long start = times == null ? 0 : System.nanoTime();
+            long delivered = times == null ? 0 : times.outNanos;
+            long allocated = times != null && measured ? ReviewMetrics.allocatedBytes() : -1;
+            lexer.scan(text);
+            if (times != null) {
+                times.passNanos = System.nanoTime() - start - (times.outNanos - delivered);
+                times.passAllocated = allocated < 0 ? -1 : ReviewMetrics.allocatedBytes() - allocated;
+            }
+        }
+        merge.finish();
+        if (times != null && measured) times.record(rules, merge, text.length(), fused);
+    }
+
+    /**
+     * Limits for one file's review, so a pathological input (a huge
+     * minified line, thousands of open brackets) cannot hold a worker. A rule
+     * over its time budget is switched off for the rest of the file; a file
+     * over its CPU or allocation budget stops being scanned. Either way the
+     * findings so far are kept and the sink is told the review is
+     * {@linkplain SuggestionSink#incomplete incomplete}. Zero disables a limit,
+     * and every limit is zero until the CLI sets one, so results never depend
+     * on machine speed unless asked to.
+     *
+     * In the token pass, rule time and allocation are the sampled
+     * estimates from {@link RuleTimes}, and file limits use the thread's CPU
+     * time and allocated bytes; all are checked every
+     * {@link Watchdog#CHECK_EVERY} tokens. Plain rules run on their own
+     * before it and are measured directly, through the text they read (see
+     * {@link BudgetedText}).
+     */
+    static final class Budget {
+        static final Budget NONE = new Budget(0, 0, 0);
+
+        final long ruleNanos;
+        final long ruleAllocatedBytes;
+        final long fileCpuNanos;
+        final long fileAllocatedBytes;
+
+        Budget(long ruleMillis, long fileMillis, long fileMegabytes) {
+            this(ruleMillis, 0, fileMillis, fileMegabytes);
+        }
+
+        Budget(long ruleMillis, long ruleMegabytes, long fileMillis, long fileMegabytes) {
+            this.ruleNanos = ruleMillis * 1_000_000;
+            this.ruleAllocatedBytes = ruleMegabytes * 1024 * 1024;
+            this.fileCpuNanos = fileMillis * 1_000_000;
+            this.fileAllocatedBytes = fileMegabytes * 1024 * 1024;
+        }
+
+        Budget withRuleMillis(long ms) {
+            return new Budget(ms, ruleAllocatedBytes >> 20, fileCpuNanos / 1_000_000, fileAllocatedBytes >> 20);
+        }
+
+        Budget withRuleMegabytes(long mb) {
+            return new Budget(ruleNanos / 1_000_000, mb, fileCpuNanos / 1_000_000, fileAllocatedBytes >> 20);
+        }
+
+        Budget withFileMillis(long ms) {
+            return new Budget(ruleNanos / 1_000_000, ruleAllocatedBytes >> 20, ms, fileAllocatedBytes >> 20);
+        }
+
+        Budget withFileMegabytes(long mb) {
+            return new Budget(ruleNanos / 1_000_000, ruleAllocatedBytes >> 20, fileCpuNanos / 1_000_000, mb);
+        }
+
+        boolean enabled() {
+            return ruleNanos > 0 || ruleAllocatedBytes > 0 || fileCpuNanos > 0 || fileAllocatedBytes > 0;
+        }
+
+        String ruleTime() { return "time budget of " + ruleNanos / 1_000_000 + " ms"; }
+        String ruleMemory() { return "memory budget of " + (ruleAllocatedBytes >> 20) + " MB"; }
+    }
+
+    /**
+     * The text as a plain rule reads it under a {@link Budget}: every
+     * {@link Watchdog#CHECK_EVERY} chars read, the rule's time and
+     * allocation since it started are checked, and {@link OverBudget} ends
+     * the rule once either is over. Regex matching and other scans through
+     * the {@code CharSequence} are covered; a rule that copies the text out
+     * with {@code toString()} is only checked up to the copy.
+     */
+    static final class BudgetedText implements CharSequence {
+        private final CharSequence text;
+        private final Meter meter;
+
+        BudgetedText(CharSequence text, Budget limits) {
+            this(text, new Meter(limits));
+        }
+
+        private BudgetedText(CharSequence text, Meter meter) {
+            this.text = text;
+            this.meter = meter;
+        }
+
+        @Override
+        public int length() { return text.length(); }
+
+        @Override
+        public char charAt(int index) {
+            meter.read();
+            return text.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new BudgetedText(text.subSequence(start, end), meter);
+        }
+
+        @Override
+        public String toString() { return text.toString(); }
+
+        /** Shared by the text and its subsequences. */
+        private static final class Meter {
+            private final Budget limits;
+            private final long start = System.nanoTime();
+            private final long allocatedStart;
+            private int reads;
+
+            Meter(Budget limits) {
+                this.limits = limits;
+                this.allocatedStart = limits.ruleAllocatedBytes > 0 ? ReviewMetrics.allocatedBytes() : -1;
+            }
+
+            void read() {
+                if (++reads % Watchdog.CHECK_EVERY != 0) return;
+                if (limits.ruleNanos > 0 && System.nanoTime() - start > limits.ruleNanos) {
+                    throw new OverBudget(limits.ruleTime());
+                }
+                if (allocatedStart >= 0 && ReviewMetrics.allocatedBytes() - allocatedStart > limits.ruleAllocatedBytes) {
+                    throw new OverBudget(limits.ruleMemory());
+                }
+            }
+        }
+
+        /** Thrown through the rule; the message names the budget. */
+        static final class OverBudget extends RuntimeException {
+            private static final long serialVersionUID = 1L;
+
+            OverBudget(String budget) {
+                super(budget, null, false, false);
+            }
+        }
+    }
+
+    /** Enforces a {@link Budget} from inside the lexer pass. */
+    static final class Watchdog implements TokenListener {
+        static final int CHECK_EVERY = 4096;
+
+        private final Budget limits;
+        private final List<Rule> rules;
+        private final RuleTimes times;
+        private final OrderedMerge merge;
+        private final JavaLexer lexer;
+        private final SuggestionSink out;
+        /** Read at the first check, so files too small to reach one never load the thread MXBean. */
+        private long cpuStart;
+        private long allocatedStart;
+        private int tokens;
+
+        Watchdog(Budget limits, List<Rule> rules, RuleTimes times, OrderedMerge merge,
+                 JavaLexer lexer, SuggestionSink out) {
+            this.limits = limits;
+            this.rules = rules;
+            this.times = times;
+            this.merge = merge;
+            this.lexer = lexer;
+            this.out = out;
+        }
+
+        @Override
+        public void onToken(Token t) {
+            if (++tokens % CHECK_EVERY != 0) return;
+            if (tokens == CHECK_EVERY) {
+                // the first chunk's cost is not counted; it is far below any sensible budget
+                cpuStart = ReviewMetrics.cpuTimeNanos();
+                allocatedStart = ReviewMetrics.allocatedBytes();
+            }
+            if (limits.fileCpuNanos > 0 && cpuStart >= 0
+                    && ReviewMetrics.cpuTimeNanos() - cpuStart > limits.fileCpuNanos) {
+                stop("CPU time budget of " + limits.fileCpuNanos / 1_000_000 + " ms", t);
+                return;
+            }
+            if (limits.fileAllocatedBytes > 0 && allocatedStart >= 0
+                    && ReviewMetrics.allocatedBytes() - allocatedStart > limits.fileAllocatedBytes) {
+                stop("memory budget of " + (limits.fileAllocatedBytes >> 20) + " MB", t);
+                return;
+            }
+            if (limits.ruleNanos > 0 || limits.ruleAllocatedBytes > 0) checkRules();
+        }
+
+        private void stop(String budget, Token t) {
+            lexer.stop();
+            out.incomplete("stopped at offset " + t.start() + " after exceeding the " + budget);
+        }
+
+        /** Checks the rules in this pass; plain rules ran before it, under their own {@link BudgetedText}. */
+        private void checkRules() {
+            long matches = 0, nodes = 0;
+            for (int r = 0; r < rules.size(); r++) {
+                Rule rule = rules.get(r);
+                if (times.disabled[r] || !(rule instanceof TokenRule || rule instanceof TreeRule)) continue;
+                if (rule instanceof TreeRule) nodes += times.matchNanos[r]; else matches += times.matchNanos[r];
+                if (overTime(times.nanos[r] + times.matchNanos[r])) {
+                    disable(r, limits.ruleTime());
+                } else if (overMemory(times.sampledAllocated[r])) {
+                    disable(r, limits.ruleMemory());
+                }
+            }
+            // the shared automaton's and tree builder's own cost counts against every rule using them
+            String automaton = overTime(times.patternNanos - matches) ? limits.ruleTime()
+                : overMemory(times.patternAllocated) ? limits.ruleMemory() : null;
+            String builder = overTime(times.treeNanos - nodes) ? limits.ruleTime()
+                : overMemory(times.treeAllocated) ? limits.ruleMemory() : null;
+            boolean patternsLeft = false, treesLeft = false;
+            for (int r = 0; r < rules.size(); r++) {
+                if (times.disabled[r]) continue;
+                if (rules.get(r) instanceof PatternRule) {
+                    if (automaton != null) disable(r, automaton); else patternsLeft = true;
+                } else if (rules.get(r) instanceof TreeRule) {
+                    if (builder != null) disable(r, builder); else treesLeft = true;
+                }
+            }
+            times.patternsDisabled = !patternsLeft;
+            times.treeDisabled = !treesLeft;
+        }
+
+        private boolean overTime(long nanos) {
+            return limits.ruleNanos > 0 && nanos > limits.ruleNanos;
+        }
+
+        private boolean overMemory(long bytes) {
+            return limits.ruleAllocatedBytes > 0 && bytes > limits.ruleAllocatedBytes;
+        }
+
+        private void disable(int r, String budget) {
+            times.disabled[r] = true;
+            merge.channel(r).close();
+            out.incomplete(rules.get(r).name() + " skipped after exceeding its " + budget);
+        }
+    }
+
+    /**
+     * Where one review's time went, per rule, for the metrics and the
+     * {@link Watchdog}. Listeners in the fused pass are timed on a sample of
+     * their callbacks, scaled up; whatever is left of the pass is the
+     * lexer's own time. Tree rules' node callbacks are few and each one is
+     * timed. Time spent handing findings to the caller's sink is
+     * not charged to the rule that happened to release them. Allocation can
+     * only be told apart for plain rules, so the whole pass's allocation is
+     * booked on the lexer. For a per-rule memory budget, allocation is also
+     * sampled with the time, per listener: pattern and tree rules' own
+     * callbacks count toward the shared automaton or tree builder.
+     */
+    static final class RuleTimes {
+        static final int PATTERNS = -1;
+        static final int TREE = -2;
+        /** Only every SAMPLE-th token or match callback is timed; reading the clock costs more than most rules. */
+        static final int SAMPLE = 16;
+
+        final long[] nanos;
+        final long[] matchNanos;
+        final int[] matchesSkipped;
+        final long[] allocated;
+        /** Sampled allocation per rule in the token pass, scaled up; only with {@link #sampleAllocation}. */
+        final long[] sampledAllocated;
+        final boolean sampleAllocation;
+        long patternAllocated;
+        long treeAllocated;
+        /** Rules switched off by the {@link Watchdog}; their callbacks are skipped. */
+        final boolean[] disabled;
+        boolean patternsDisabled;
+        boolean treeDisabled;
+        long patternNanos;
+        /** The shared tree builder's time, tree rules' onNode calls included. */
+        long treeNanos;
+        /** Time spent in the output sink so far. */
+        long outNanos;
+        long passNanos;
+        long passAllocated;
+
+        RuleTimes(int rules, boolean sampleAllocation) {
+            this.sampleAllocation = sampleAllocation;
+            sampledAllocated = new long[rules];
+            nanos = new long[rules];
+            matchNanos = new long[rules];
+            matchesSkipped = new int[rules];
+            disabled = new boolean[rules];
+            for (int r = 0; r < rules; r++) matchesSkipped[r] = phase();
+            allocated = new long[rules];
+            Arrays.fill(allocated, -1);
+        }
+
+        TokenListener timed(TokenListener l, int slot) {
+            return new TokenListener() {
+                private int skipped = phase();
+
+                @Override
+                public void onToken(Token t) {
+                    if (off(slot)) return;
+                    if (++skipped < SAMPLE) {
+                        l.onToken(t);
+                        return;
+                    }
+                    skipped = 0;
+                    long allocated = sampleAllocation ? ReviewMetrics.allocatedBytes() : -1;
+                    long start = System.nanoTime();
+                    long delivered = outNanos;
+                    l.onToken(t);
+                    add(slot, (System.nanoTime() - start - (outNanos - delivered)) * SAMPLE);
+                    if (allocated >= 0) addAllocated(slot, (ReviewMetrics.allocatedBytes() - allocated) * SAMPLE);
+                }
+
+                @Override
+                public void onEnd(int length) {
+                    if (off(slot)) return;
+                    long start = System.nanoTime();
+                    long delivered = outNanos;
+                    l.onEnd(length);
+                    add(slot, System.nanoTime() - start - (outNanos - delivered));
+                }
+            };
+        }
+
+        /** Random start, so files shorter than SAMPLE callbacks are still timed on average. */
+        private static int phase() {
+            return ThreadLocalRandom.current().nextInt(SAMPLE);
+        }
+
+        private boolean off(int slot) {
+            return slot == PATTERNS ? patternsDisabled : slot == TREE ? treeDisabled : disabled[slot];
+        }
+
+        private void add(int slot, long n) {
+            if (slot == PATTERNS) patternNanos += n; else if (slot == TREE) treeNanos += n; else nanos[slot] += n;
+        }
+
+        private void addAllocated(int slot, long n) {
+            if (slot == PATTERNS) {
+                patternAllocated += n;
+            } else if (slot == TREE) {
+                treeAllocated += n;
+            } else {
+                sampledAllocated[slot] += n;
+            }
+        }
+
+        void record(List<Rule> rules, OrderedMerge merge, int length, boolean fused) {
+            ReviewMetrics metrics = ReviewMetrics.GLOBAL;
+            long listeners = patternNanos + treeNanos;
+            long matches = 0, nodes = 0;
+            for (int r = 0; r < rules.size(); r++) {
+                if (rules.get(r) instanceof TokenRule) listeners += nanos[r];
+                if (rules.get(r) instanceof TreeRule) nodes += matchNanos[r]; else matches += matchNanos[r];
+            }
+            for (int r = 0; r < rules.size(); r++) {
+                metrics.recordRule(rules.get(r).name(), nanos[r] + matchNanos[r],
+                    merge.channel(r).accepted, length, allocated[r]);
+            }
+            if (fused) {
+                metrics.recordRule("JavaLexer", Math.max(0, passNanos - listeners), 0, length, passAllocated);
+            }
+            if (patternNanos > 0) {
+                metrics.recordRule("TokenPatternMatcher", Math.max(0, patternNanos - matches), 0, length, -1);
+            }
+            if (treeNanos > 0) {
+                metrics.recordRule("SyntaxTree", Math.max(0, treeNanos - nodes), 0, length, -1);
+            }
+        }
+    }
+
+    /**
+     * K-way merge of per-rule finding streams into one stream ordered by
+     * line, then rule, then report order (the same order a stable sort of the
+     * concatenated per-rule lists gives). A finding is released as soon as
+     * every rule has advanced past its line, so output starts before the
+     * scan ends. A rule that can still report an earlier line, like
+     * {@link UnclosedConstructRule} with a bracket open, holds back what
+     * comes after it.
+     */
+    static class OrderedMerge {
+        private final LineIndex index;
+        private final SuggestionSink out;
+        private final RuleTimes times;
+        private final Channel[] channels;
+        private long seq;
+
+        OrderedMerge(List<Rule> rules, LineIndex index, SuggestionSink out, RuleTimes times) {
+            this.index = index;
+            this.out = out;
+            this.times = times;
+            this.channels = new Channel[rules.size()];
+            for (int r = 0; r < channels.length; r++) {
+                channels[r] = new Channel(r, rules.get(r).name());
+            }
+        }
+
+        Channel channel(int rule) { return channels[rule]; }
+
+        /** Releases everything still pending; the rules are done. */
+        void finish() {
+            for (Channel c : channels) c.watermark = Integer.MAX_VALUE;
+            drain();
+        }
+
+        private void drain() {
+            while (true) {
+                Channel best = null;
+                Pending head = null;
+                for (Channel c : channels) {
+                    Pending p = c.peek();
+                    if (p != null && (head == null || p.s.line < head.s.line)) {
+                        best = c;
+                        head = p;
+                    }
+                }
+                if (head == null) return;
+                for (Channel c : channels) {
+                    if (c.watermark < head.s.line) return;
+                    if (c.watermark == head.s.line && c.rule < best.rule) return;
+                }
+                best.poll();
+                if (times == null) {
+                    out.accept(head.s);
+                } else {
+                    long start = System.nanoTime();
+                    out.accept(head.s);
+                    times.outNanos += System.nanoTime() - start;
+                }
+            }
+        }
+
+        /** One rule's findings. Kept in a FIFO until the rule reports out of line order. */
+        class Channel implements SuggestionSink {
+            final int rule;
+            final String name;
+            long accepted;
+            /** Later findings from this rule are all on this line or after. */
+            int watermark = 1;
+            private int nextLineStart;
+            private int lastLine;
+            private final ArrayDeque<Pending> fifo = new ArrayDeque<>();
+            private PriorityQueue<Pending> sorted;
+
+            Channel(int rule, String name) {
+                this.rule = rule;
+                this.name = name;
+            }
+
+            @Override
+            public void accept(Suggestion s) {
+                accepted++;
+                if (s.rule == null) s = new Suggestion(s.line, s.msg, name);
+                Pending p = new Pending(s, seq++);
+                if (sorted != null) {
+                    sorted.add(p);
+                } else if (s.line >= lastLine) {
+                    fifo.add(p);
+                    lastLine = s.line;
+                } else {
+                    sorted = new PriorityQueue<>(fifo);
+                    fifo.clear();
+                    sorted.add(p);
+                }
+                drain();
+            }
+
+            @Override
+            public void advance(int pos) {
+                if (pos < nextLineStart) return;
+                int line = index.lineOf(pos);
+                watermark = Math.max(watermark, line);
+                nextLineStart = line < index.lineCount() ? index.lineStart(line + 1) : Integer.MAX_VALUE;
+                drain();
+            }
+
+            @Override
+            public void incomplete(String reason) {
+                out.incomplete(reason);
+            }
+
+            void close() {
+                watermark = Integer.MAX_VALUE;
+                drain();
+            }
+
+            Pending peek() { return sorted != null ? sorted.peek() : fifo.peek(); }
+            void poll() { if (sorted != null) sorted.poll(); else fifo.poll(); }
+        }
+
+        static class Pending implements Comparable<Pending> {
+            final Suggestion s;
+            final long seq;
+            Pending(Suggestion s, long seq) { this.s = s; this.seq = seq; }
+
+            @Override
+            public int compareTo(Pending o) {
+                return s.line != o.s.line ? Integer.compare(s.line, o.s.line) : Long.compare(seq, o.seq);
+            }
+        }
+    }
+
+    /** Passes on only the findings on accepted lines. */
+    static class LineFilter implements SuggestionSink {
+        private final SuggestionSink out;
+        private final IntPredicate lines;
+
+        LineFilter(SuggestionSink out, IntPredicate lines) {
+            this.out = out;
+            this.lines = lines;
+        }
+
+        @Override
+        public void accept(Suggestion s) {
+            if (lines.test(s.line)) out.accept(s);
+        }
+
+        @Override
+        public void advance(int pos) { out.advance(pos); }
+
+        @Override
+        public void incomplete(String reason) { out.incomplete(reason); }
+    }
+
+    /** Renders a file's report to an {@link Appendable} as findings arrive. */
+    static class Report implements SuggestionSink {
+        private final String name;
+        private final Appendable out;
+        private int count;
+        private final List<String> incomplete = new ArrayList<>();
+
+        Report(String name, Appendable out) {
+            this.name = name;
+            this.out = out;
+        }
+
+        @Override
+        public void accept(Suggestion s) {
+            try {
+                if (count++ == 0) {
+                    out.append("Suggestions for ").append(name).append(":").append(System.lineSeparator());
+                }
+                out.append(String.format("  Line %d: %s%n", s.line, s.msg));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void incomplete(String reason) {
+            incomplete.add(reason);
+        }
+
+        int count() { return count; }
+
+        void finish() throws IOException {
+            if (count == 0) {
+                out.append("No quick suggestions for ").append(name).append(System.lineSeparator());
+            }
+            for (String reason : incomplete) {
+                out.append("Partially reviewed ").append(name).append(": ").append(reason)
+                    .append(System.lineSeparator());
+            }
+        }
+    }
+
+    /** Passes findings on while keeping them, with their severity, for the {@link FindingsStore}. */
+    static class Recorder implements SuggestionSink {
+        private final SuggestionSink out;
+        final List<FindingsStore.Finding> found = new ArrayList<>();
+        boolean partial;
+
+        Recorder(SuggestionSink out) { this.out = out; }
+
+        @Override
+        public void accept(Suggestion s) {
+            found.add(new FindingsStore.Finding(s.rule, SuggestionTable.severityOf(s.rule), s.line, s.msg));
+            out.accept(s);
+        }
+
+        @Override
+        public void incomplete(String reason) {
+            partial = true;
+            out.incomplete(reason);
+        }
     }
 
     static class Suggestion {
         final int line;
         final String msg;
-        Suggestion(int line, String msg) { this.line = line; this.msg = msg; }
+        /** Simple name of the rule that reported it; set by the {@link OrderedMerge} if the rule did not. */
+        final String rule;
+        Suggestion(int line, String msg) { this(line, msg, null); }
+        Suggestion(int line, String msg, String rule) { this.line = line; this.msg = msg; this.rule = rule; }
+
+        /** One {@code line<TAB>rule<TAB>msg} entry per line; messages never contain newlines. */
+        static String encode(List<Suggestion> suggestions) {
+            StringBuilder sb = new StringBuilder();
+            for (Suggestion s : suggestions) {
+                sb.append(s.line).append('\t').append(s.rule == null ? "" : s.rule).append('\t').append(s.msg).append('\n');
+            }
+            return sb.toString();
+        }
+
+        static SuggestionTable decode(String payload) {
+            SuggestionTable out = new SuggestionTable();
+            for (String entry : payload.split("\n")) {
+                if (entry.isEmpty()) continue;
+                int tab = entry.indexOf('\t');
+                int tab2 = entry.indexOf('\t', tab + 1);
+                String rule = entry.substring(tab + 1, tab2);
+                out.accept(new Suggestion(Integer.parseInt(entry.substring(0, tab)), entry.substring(tab2 + 1),
+                    rule.isEmpty() ? null : rule));
+            }
+            return out;
+        }
     }
 
+    /**
+     * Findings kept column-wise: parallel {@code int[]}s of line, rule and
+     * message id, with each distinct rule name and message stored once. On
+     * generated or vendored code, where the same few messages repeat tens of
+     * thousands of times, this is a fraction of the heap one
+     * {@link Suggestion} plus message String per finding takes.
+     *
+     * Elements are read back as fresh {@link Suggestion} views, so it works
+     * wherever a {@code List<Suggestion>} did. Row ids are also bucketed by
+     * the severity of their rule as they arrive, so {@link #bySeverity} is a
+     * view, not a filter over all findings.
+     */
+    static final class SuggestionTable extends AbstractList<Suggestion> implements SuggestionSink {
+        /** {@code ReviewSeverity} names, most severe first; bucket order. */
+        static final List<String> SEVERITIES = List.of("CRITICAL", "MAJOR", "MINOR", "INFO");
+
+        private static final Map<String, String> RULE_SEVERITIES = new HashMap<>();
+        static {
+            // a discovered rule may name a severity there is no bucket for
+            for (Rule r : rules()) RULE_SEVERITIES.put(r.name(), SEVERITIES.contains(r.severity()) ? r.severity() : "MAJOR");
+        }
+
+        private int[] lines = new int[16];
+        private int[] rules = new int[16];
+        private int[] messages = new int[16];
+        private int size;
+        private final Strings ruleNames = new Strings();
+        private final Strings texts = new Strings();
+        private final int[][] bySeverity = new int[SEVERITIES.size()][];
+        private final int[] severityCounts = new int[SEVERITIES.size()];
+        /** Severity bucket per rule id. */
+        private int[] ruleSeverity = new int[4];
+
+        /** The severity name findings of {@code rule} are recorded with. */
+        static String severityOf(String rule) {
+            return RULE_SEVERITIES.getOrDefault(rule, "MAJOR");
+        }
+
+        @Override
+        public void accept(Suggestion s) {
+            if (size == lines.length) {
+                lines = Arrays.copyOf(lines, size * 2);
+                rules = Arrays.copyOf(rules, size * 2);
+                messages = Arrays.copyOf(messages, size * 2);
+            }
+            int known = ruleNames.size();
+            int rule = ruleNames.id(s.rule);
+            if (rule == known) {
+                if (rule == ruleSeverity.length) ruleSeverity = Arrays.copyOf(ruleSeverity, rule * 2);
+                ruleSeverity[rule] = SEVERITIES.indexOf(severityOf(s.rule));
+            }
+            lines[size] = s.line;
+            rules[size] = rule;
+            messages[size] = texts.id(s.msg);
+
+            int bucket = ruleSeverity[rule];
+            int[] ids = bySeverity[bucket];
+            if (ids == null) {
+                ids = bySeverity[bucket] = new int[16];
+            } else if (severityCounts[bucket] == ids.length) {
+                ids = bySeverity[bucket] = Arrays.copyOf(ids, ids.length * 2);
+            }
+            ids[severityCounts[bucket]++] = size;
+            size++;
+        }
+
+        @Override
+        public boolean add(Suggestion s) {
+            accept(s);
+            return true;
+        }
+
+        @Override
+        public Suggestion get(int i) {
+            Objects.checkIndex(i, size);
+            return new Suggestion(lines[i], texts.get(messages[i]), ruleNames.get(rules[i]));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /** Line of finding {@code i}, without building a view. */
+        int line(int i) {
+            Objects.checkIndex(i, size);
+            return lines[i];
+        }
+
+        /** Findings of the given {@code ReviewSeverity} name, in report order; a live view. */
+        List<Suggestion> bySeverity(String severity) {
+            int bucket = SEVERITIES.indexOf(severity);
+            if (bucket < 0) throw new IllegalArgumentException("Unknown severity: " + severity);
+            return new AbstractList<>() {
+                @Override
+                public Suggestion get(int i) {
+                    Objects.checkIndex(i, severityCounts[bucket]);
+                    return SuggestionTable.this.get(bySeverity[bucket][i]);
+                }
+
+                @Override
+                public int size() {
+                    return severityCounts[bucket];
+                }
+            };
+        }
+
+        int count(String severity) {
+            int bucket = SEVERITIES.indexOf(severity);
+            return bucket < 0 ? 0 : severityCounts[bucket];
+        }
+
+        /** Distinct messages held; a measure of how well the table deduplicates. */
+        int distinctMessages() {
+            return texts.size();
+        }
+
+        /** Interns strings to dense ids; null is a value of its own. */
+        private static final class Strings {
+            private final Map<String, Integer> ids = new HashMap<>();
+            private final List<String> values = new ArrayList<>();
+
+            int id(String s) {
+                Integer id = ids.get(s);
+                if (id == null) {
+                    id = values.size();
+                    ids.put(s, id);
+                    values.add(s);
+                }
+                return id;
+            }
+
+            String get(int id) { return values.get(id); }
+            int size() { return values.size(); }
+        }
+    }
+
+    /**
+     * Line starts kept in a growable {@code int[]}, so building it boxes
+     * nothing. Text can be appended in chunks, and {@link #reset()} lets one
+     * instance be reused for file after file on the same thread.
+     *
+     * Lookups remember the last line they hit. Queries in ascending order,
+     * which is what the rules issue, usually land on the same or the next few
+     * lines and need no binary search.
+     */
     static class LineIndex {
-        private final int[] lineStarts;
-        LineIndex(String text) {
-            List<Integer> starts = new ArrayList<>();
-            starts.add(0);
-            for (int i = 0; i < text.length(); i++) {
-                if (text.charAt(i) == '\n') starts.add(i + 1);
+        /** How far a lookup walks forward from the last hit before bisecting. */
+        private static final int MAX_WALK = 8;
+
+        private int[] starts = new int[256];
+        private int count;   // lines so far; starts[0..count) are valid
+        private int length;  // chars appended so far
+        private int cursor;  // 0-based line of the last lookup
+
+        LineIndex() {
+            reset();
+        }
+
+        LineIndex(CharSequence text) {
+            this();
+            append(text);
+        }
+
+        /** Forgets all text but keeps the backing array. */
+        LineIndex reset() {
+            count = 1;
+            length = 0;
+            cursor = 0;
+            return this;
+        }
+
+        LineIndex reset(CharSequence text) {
+            return reset().append(text);
+        }
+
+        /** Appends the next chunk of the text. */
+        LineIndex append(CharSequence chunk) {
+            int base = length;
+            int n = chunk.length();
+            for (int i = 0; i < n; i++) {
+                if (chunk.charAt(i) == '\n') add(base + i + 1);
+            }
+            length = base + n;
+            return this;
+        }
+
+        int lineCount() { return count; }
+
+        /** Length of the text indexed so far. */
+        int length() { return length; }
+
+        /**
+         * Updates the index in place for replacing {@code removed} chars at
+         * {@code offset} with {@code inserted}. Returns the change in line count.
+         */
+        int edit(int offset, int removed, CharSequence inserted) {
+            int first = search(0, count, offset) + 1;           // first start > offset
+            int last = search(0, count, offset + removed) + 1;  // first start > offset + removed
+            int added = 0;
+            for (int i = 0; i < inserted.length(); i++) {
+                if (inserted.charAt(i) == '\n') added++;
+            }
+            int delta = inserted.length() - removed;
+            int tail = count - last;
+            int newCount = first + added + tail;
+            if (newCount > starts.length) starts = Arrays.copyOf(starts, Math.max(newCount, starts.length * 2));
+            System.arraycopy(starts, last, starts, first + added, tail);
+            for (int i = first + added; i < newCount; i++) starts[i] += delta;
+            int k = first;
+            for (int i = 0; i < inserted.length(); i++) {
+                if (inserted.charAt(i) == '\n') starts[k++] = offset + i + 1;
             }
-            lineStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+            count = newCount;
+            length += delta;
+            cursor = 0;
+            return added - (last - first);
         }
+
+        /** Position where the 1-based {@code line} starts. */
+        int lineStart(int line) { return starts[line - 1]; }
+
+        /** 1-based line containing {@code pos}. */
         int lineOf(int pos) {
-            int idx = Arrays.binarySearch(lineStarts, pos);
-            if (idx < 0) idx = -idx - 2;
-            return idx + 1;
+            int c = cursor;
+            if (pos >= starts[c]) {
+                int limit = Math.min(count, c + MAX_WALK);
+                while (c + 1 < limit && pos >= starts[c + 1]) c++;
+                if (c + 1 < count && pos >= starts[c + 1]) c = search(c + 1, count, pos);
+            } else {
+                c = search(0, c, pos);
+            }
+            cursor = c;
+            return c + 1;
+        }
+
+        /** 1-based column of {@code pos} within its line. */
+        int columnOf(int pos) {
+            int line = lineOf(pos);
+            return pos - starts[line - 1] + 1;
+        }
+
+        private int search(int from, int to, int pos) {
+            int idx = Arrays.binarySearch(starts, from, to, pos);
+            return idx >= 0 ? idx : -idx - 2;
+        }
+
+        private void add(int start) {
+            if (count == starts.length) starts = Arrays.copyOf(starts, count * 2);
+            starts[count++] = start;
         }
     }
 
     // ---------- Rules ----------
-    static class MissingDotRule implements Rule {
-        private static final Pattern P = Pattern.compile(
-            "\\b([A-Za-z_][A-Za-z0-9_]*)\\s+([A-Za-z_][A-Za-z0-9_]*)\\b"
-        );
+    public static class MissingDotRule implements PatternRule {
         private static final Set<String> KEYWORDS = Set.of(
             "new","return","if","for","while","switch","case","throws",
             "throw","import","package","class","interface"
         );
 
         @Override
-        public List<Suggestion> apply(String text, LineIndex index) {
-            List<Suggestion> out = new ArrayList<>();
-            Matcher m = P.matcher(text);
-            while (m.find()) {
-                String lhs = m.group(1), rhs = m.group(2);
-                if (KEYWORDS.contains(lhs)) continue;
-                // Heuristic: only warn if followed by '(' (method call)
-                int end = m.end();
-                if (end < text.length() && text.charAt(end) == '(') {
-                    out.add(new Suggestion(index.lineOf(m.start()),
-                        "Possible missing '.' between '" + lhs + "' and '" + rhs + "'"));
+        public String pattern() { return "* *"; }
+
+        /** Only a heuristic; two adjacent identifiers are often fine. */
+        @Override
+        public String severity() { return "MINOR"; }
+
+        @Override
+        public void onMatch(CharSequence text, LineIndex index, Match m, SuggestionSink out) {
+            // Heuristic: only warn if followed by '(' (method call)
+            int end = m.end(1);
+            if (end < text.length() && text.charAt(end) == '(') {
+                String lhs = text.subSequence(m.start(0), m.end(0)).toString();
+                if (!KEYWORDS.contains(lhs)) {
+                    out.accept(new Suggestion(index.lineOf(m.start(0)),
+                        "Possible missing '.' between '" + lhs + "' and '"
+                            + text.subSequence(m.start(1), end) + "'"));
                 }
             }
-            return out;
         }
     }
 
-    static class SystemOutRule implements Rule {
-        private static final Pattern P = Pattern.compile(
-            "\\bSystem\\s+out\\s+println\\b"
-        );
+    public static class SystemOutRule implements PatternRule {
         @Override
-        public List<Suggestion> apply(String text, LineIndex index) {
-            List<Suggestion> out = new ArrayList<>();
-            Matcher m = P.matcher(text);
-            while (m.find()) {
-                out.add(new Suggestion(index.lineOf(m.start()),
-                    "Replace 'System out println' with 'System.out.println'"));
-            }
-            return out;
+        public String pattern() { return "System out println"; }
+
+        @Override
+        public void onMatch(CharSequence text, LineIndex index, Match m, SuggestionSink out) {
+            out.accept(new Suggestion(index.lineOf(m.start(0)),
+                "Replace 'System out println' with 'System.out.println'"));
         }
     }
 
-    static class UnclosedConstructRule implements Rule {
-        private static final Map<Character,Character> PAIRS = Map.of(
-            '(', ')', '{', '}', '[', ']'
-        );
+    public static class UnclosedConstructRule implements TokenRule {
         @Override
-        public List<Suggestion> apply(String text, LineIndex index) {
-            List<Suggestion> out = new ArrayList<>();
-            Deque<Frame> stack = new ArrayDeque<>();
-            for (int i = 0; i < text.length(); i++) {
-                char c = text.charAt(i);
-                if (c == '/' && i+1 < text.length()) {
-                    if (text.charAt(i+1) == '/') { // line comment
-                        while (i < text.length() && text.charAt(i) != '\n') i++;
-                        continue;
-                    } else if (text.charAt(i+1) == '*') { // block comment
-                        int j = text.indexOf("*/", i+2);
-                        i = (j == -1 ? text.length() : j+1);
-                        continue;
-                    }
+        public String severity() { return "CRITICAL"; }
+
+        @Override
+        public Set<TokenKind> kinds() {
+            return EnumSet.of(TokenKind.OPEN_BRACKET, TokenKind.CLOSE_BRACKET,
+                TokenKind.STRING, TokenKind.CHAR);
+        }
+
+        @Override
+        public ResumableListener listener(CharSequence text, LineIndex index, SuggestionSink out) {
+            return new Listener(index, out);
+        }
+
+        /** Past this many open brackets the input is not code worth tracking; the rule gives up. */
+        static final int MAX_OPEN = 10_000;
+
+        /** Stack state once the rule has given up; nothing is tracked or reported after it. */
+        static final Frame GAVE_UP = new Frame('\0', -1, null);
+
+        /** The open brackets live in a persistent stack, so saving the state is free. */
+        static class Listener implements ResumableListener {
+            private final LineIndex index;
+            private final SuggestionSink out;
+            private Frame top;
+
+            Listener(LineIndex index, SuggestionSink out) {
+                this.index = index;
+                this.out = out;
+            }
+
+            @Override
+            public void onToken(Token t) {
+                if (top == GAVE_UP) {
+                    out.advance(t.end());
+                    return;
                 }
-                if (PAIRS.containsKey(c)) {
-                    stack.push(new Frame(c, i));
-                } else if (PAIRS.containsValue(c)) {
-                    if (!stack.isEmpty() && PAIRS.get(stack.peek().ch) == c) {
-                        stack.pop();
-                    } else {
-                        out.add(new Suggestion(index.lineOf(i), "Unmatched '" + c + "'"));
-                    }
-                } else if (c == '"' || c == '\'') {
-                    int j = skipString(text, i, c);
-                    if (j == -1) {
-                        out.add(new Suggestion(index.lineOf(i),
-                            "Unclosed " + (c=='"'?"string":"char") + " literal"));
+                char c = t.firstChar();
+                switch (t.kind()) {
+                    case OPEN_BRACKET:
+                        if (top != null && top.depth >= MAX_OPEN) {
+                            top = GAVE_UP;
+                            out.incomplete("UnclosedConstructRule gave up after " + MAX_OPEN
+                                + " open brackets at line " + index.lineOf(t.start()));
+                            out.advance(t.end());
+                            return;
+                        }
+                        top = new Frame(c, t.start(), top);
                         break;
-                    } else i = j;
+                    case CLOSE_BRACKET:
+                        if (top != null && closer(top.ch) == c) {
+                            top = top.parent;
+                        } else {
+                            out.accept(new Suggestion(index.lineOf(t.start()), "Unmatched '" + c + "'"));
+                        }
+                        break;
+                    default: // string or char literal
+                        if (!t.terminated()) {
+                            out.accept(new Suggestion(index.lineOf(t.start()),
+                                "Unclosed " + (c=='"'?"string":"char") + " literal"));
+                        }
                 }
+                // the oldest open bracket may still be reported at the end
+                out.advance(top == null ? t.end() : top.root.pos);
             }
-            while (!stack.isEmpty()) {
-                Frame f = stack.pop();
-                out.add(new Suggestion(index.lineOf(f.pos), "Unclosed '" + f.ch + "'"));
+
+            @Override
+            public void onEnd(int length) {
+                if (top == GAVE_UP) return;
+                for (Frame f = top; f != null; f = f.parent) {
+                    out.accept(new Suggestion(index.lineOf(f.pos), "Unclosed '" + f.ch + "'"));
+                }
+            }
+
+            @Override
+            public Object save() { return top; }
+
+            @Override
+            public void restore(Object state) { top = (Frame) state; }
+
+            @Override
+            public boolean sameState(Object state, Object old, Shift shift) {
+                Frame a = (Frame) state, b = (Frame) old;
+                // frames pushed before the resume point are shared, so this stops early
+                while (a != b) {
+                    if (a == null || b == null || a.depth != b.depth || a.ch != b.ch
+                            || a.pos != shift.pos(b.pos)) {
+                        return false;
+                    }
+                    a = a.parent;
+                    b = b.parent;
+                }
+                return true;
+            }
+
+            @Override
+            public Object shift(Object old, Shift shift) {
+                // frames are shared between snapshots; move each one once
+                for (Frame f = (Frame) old; f != null && f.shiftedBy != shift && f.pos >= shift.from; f = f.parent) {
+                    f.pos += shift.delta;
+                    f.shiftedBy = shift;
+                }
+                return old;
+            }
+        }
+
+        static char closer(char open) {
+            return open == '(' ? ')' : open == '{' ? '}' : ']';
+        }
+
+        static class Frame {
+            final char ch;
+            int pos;
+            final Frame parent;
+            final Frame root;
+            final int depth;
+            Shift shiftedBy;
+
+            Frame(char ch, int pos, Frame parent) {
+                this.ch = ch;
+                this.pos = pos;
+                this.parent = parent;
+                this.root = parent == null ? this : parent.root;
+                this.depth = parent == null ? 1 : parent.depth + 1;
+            }
+        }
+    }
+
+    public static class EmptyCatchRule implements TreeRule {
+        @Override
+        public boolean enabledByDefault() { return false; }
+
+        @Override
+        public String severity() { return "CRITICAL"; }
+
+        @Override
+        public Set<SyntaxTree.Kind> kinds() { return EnumSet.of(SyntaxTree.Kind.CATCH); }
+
+        @Override
+        public void onNode(SyntaxTree tree, int node, LineIndex index, SuggestionSink out) {
+            // a comment inside counts: it says why the exception is ignored
+            if (tree.tokens(node) == 0) {
+                out.accept(new Suggestion(index.lineOf(tree.start(node)), "Empty catch block"));
             }
-            return out;
         }
-        private int skipString(String s, int start, char quote) {
-            int i = start+1;
-            while (i < s.length()) {
-                char c = s.charAt(i);
-                if (c == '\\') { i+=2; continue; }
-                if (c == quote) return i;
-                i++;
+    }
+
+    public static class NestedLoopRule implements TreeRule {
+        @Override
+        public boolean enabledByDefault() { return false; }
+
+        @Override
+        public Set<SyntaxTree.Kind> kinds() { return EnumSet.of(SyntaxTree.Kind.LOOP); }
+
+        @Override
+        public void onNode(SyntaxTree tree, int node, LineIndex index, SuggestionSink out) {
+            // once per nest, at its second level; deeper loops are part of the same finding
+            if (tree.loopDepth(node) == 2) {
+                out.accept(new Suggestion(index.lineOf(tree.start(node)),
+                    "Nested loop; consider extracting the inner loop into a method"));
+            }
+        }
+    }
+
+    public static class LongMethodRule implements TreeRule {
+        @Override
+        public boolean enabledByDefault() { return false; }
+
+        /** Lines from the method's opening brace to its closing one; set with {@code -Dreview.max.method.lines}. */
+        static final int MAX_LINES = Integer.getInteger("review.max.method.lines", 30);
+
+        @Override
+        public String severity() { return "MINOR"; }
+
+        @Override
+        public String settings() { return "review.max.method.lines=" + MAX_LINES; }
+
+        @Override
+        public Set<SyntaxTree.Kind> kinds() { return EnumSet.of(SyntaxTree.Kind.METHOD); }
+
+        @Override
+        public void onNode(SyntaxTree tree, int node, LineIndex index, SuggestionSink out) {
+            int first = index.lineOf(tree.bodyStart(node));
+            int lines = index.lineOf(tree.end(node) - 1) - first + 1;
+            if (lines > MAX_LINES) {
+                out.accept(new Suggestion(first, "Method '" + tree.name(node) + "' is " + lines
+                    + " lines long (limit " + MAX_LINES + ")"));
+            }
+        }
+    }
+
+    public static class NamingRule implements TreeRule {
+        @Override
+        public boolean enabledByDefault() { return false; }
+
+        @Override
+        public String severity() { return "MINOR"; }
+
+        @Override
+        public Set<SyntaxTree.Kind> kinds() { return EnumSet.of(SyntaxTree.Kind.TYPE, SyntaxTree.Kind.METHOD); }
+
+        @Override
+        public void onNode(SyntaxTree tree, int node, LineIndex index, SuggestionSink out) {
+            String name = tree.name(node);
+            if (name == null) return;
+            if (tree.kind(node) == SyntaxTree.Kind.TYPE) {
+                if (!Character.isUpperCase(name.charAt(0))) {
+                    out.accept(new Suggestion(index.lineOf(tree.start(node)),
+                        "Type '" + name + "' should start with an upper-case letter"));
+                }
+                return;
+            }
+            // a constructor is named after its type
+            int type = tree.parent(node);
+            if (type >= 0 && name.equals(tree.name(type))) return;
+            if (!Character.isLowerCase(name.charAt(0))) {
+                out.accept(new Suggestion(index.lineOf(tree.start(node)),
+                    "Method '" + name + "' should start with a lower-case letter"));
             }
-            return -1;
         }
-        static class Frame { final char ch; final int pos; Frame(char c,int p){ch=c;pos=p;} }
     }
 }
\ No newline at end of file
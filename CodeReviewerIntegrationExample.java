@@ -5,13 +5,24 @@
  * Copy and modify as needed for your use case
  */
 
+import com.ai.reviewer.agent.CachingReviewer;
 import com.ai.reviewer.agent.CodeReviewerAgent;
+import com.ai.reviewer.agent.ParallelReviewEngine;
+import com.ai.reviewer.agent.ReviewCache;
 import com.ai.reviewer.model.ReviewComment;
+import com.ai.reviewer.model.ReviewIndex;
 import com.ai.reviewer.model.ReviewResult;
 import com.ai.reviewer.model.ReviewSeverity;
 import com.ai.reviewer.util.ConfigManager;
 import com.ai.reviewer.util.FileReader;
+import com.ai.reviewer.util.GitDiff;
+import com.ai.reviewer.util.ReviewStatistics;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class CodeReviewerIntegrationExample {
 
@@ -43,34 +54,63 @@ public class CodeReviewerIntegrationExample {
     }
 
     /**
-     * Example 2: Batch review multiple files
+     * Example 2: Batch review multiple files in parallel. Workers record their
+     * results per module as they finish, so the summaries can be read while
+     * the batch is still running. An interrupt ends it early, without the
+     * summaries, and leaves the thread interrupted.
      */
     public static void batchReview(String[] filePaths) {
-        CodeReviewerAgent agent = new CodeReviewerAgent("Batch Reviewer", "1.0.0");
+        ThreadLocal<CodeReviewerAgent> agent =
+            ThreadLocal.withInitial(() -> new CodeReviewerAgent("Batch Reviewer", "1.0.0"));
         
-        double totalScore = 0;
-        int fileCount = 0;
+        ReviewStatistics.Groups stats = new ReviewStatistics.Groups();
         
+        List<Path> files = new ArrayList<>();
         for (String filePath : filePaths) {
-            try {
-                String code = FileReader.readFile(filePath);
-                String fileName = FileReader.getFileName(filePath);
-                
-                ReviewResult result = agent.reviewCode(fileName, code);
-                totalScore += result.getOverallScore();
-                fileCount++;
-                
-                System.out.println(result);
-                System.out.println("\n");
-                
-            } catch (Exception e) {
-                System.err.println("Error reviewing " + filePath + ": " + e.getMessage());
-            }
+            files.add(Path.of(filePath));
+        }
+        
+        try (ParallelReviewEngine engine = new ParallelReviewEngine(ParallelReviewEngine.defaultParallelism())) {
+            // Results arrive on this thread, in the order the files were given
+            engine.reviewAll(files,
+                file -> {
+                    ReviewStatistics module = stats.group(moduleOf(file));
+                    try {
+                        ReviewResult result = agent.get().reviewCode(FileReader.getFileName(file.toString()),
+                            FileReader.readFile(file.toString()));
+                        module.add(result);
+                        return result;
+                    } catch (Exception e) {
+                        module.addFailure();
+                        throw e;
+                    }
+                },
+                (file, result, error) -> {
+                    if (error != null) {
+                        System.err.println("Error reviewing " + file + ": " + error.getMessage());
+                        return;
+                    }
+                    System.out.println(result);
+                    System.out.println("\n");
+                });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
         }
         
-        if (fileCount > 0) {
-            System.out.println("Average Score: " + (totalScore / fileCount) + "%");
+        for (Map.Entry<String, ReviewStatistics.Snapshot> e : stats.snapshot().entrySet()) {
+            System.out.printf("%-30s %s%n", e.getKey(), e.getValue());
         }
+        ReviewStatistics.Snapshot total = stats.total();
+        if (total.getFiles() > 0) {
+            System.out.println("Average Score: " + total.getAverageScore() + "%");
+        }
+    }
+
+    /** The directory a file sits in, standing in for its module. */
+    private static String moduleOf(Path file) {
+        Path parent = file.toAbsolutePath().getParent();
+        return parent == null || parent.getFileName() == null ? "" : parent.getFileName().toString();
     }
 
     /**
@@ -98,9 +138,10 @@ public class CodeReviewerIntegrationExample {
         
         ReviewResult result = agent.reviewCode("Example.java", code);
         
-        // Show only critical and major issues
-        List<ReviewComment> criticalIssues = result.getCommentsBySeverity(ReviewSeverity.CRITICAL);
-        List<ReviewComment> majorIssues = result.getCommentsBySeverity(ReviewSeverity.MAJOR);
+        // Show only critical and major issues, from buckets built in one pass
+        ReviewIndex index = ReviewIndex.of(result);
+        List<ReviewComment> criticalIssues = index.getCommentsBySeverity(ReviewSeverity.CRITICAL);
+        List<ReviewComment> majorIssues = index.getCommentsBySeverity(ReviewSeverity.MAJOR);
         
         System.out.println("CRITICAL ISSUES: " + criticalIssues.size());
         for (ReviewComment comment : criticalIssues) {
@@ -150,29 +191,131 @@ public class CodeReviewerIntegrationExample {
      * Example 5: CI/CD Pipeline Integration
      */
     public static int reviewCodeForCIPipeline(String[] sourceFiles, double minScore) {
-        CodeReviewerAgent agent = new CodeReviewerAgent("CI Pipeline Reviewer", "1.0.0");
+        return reviewCodeForCIPipeline(sourceFiles, minScore, null);
+    }
+
+    /**
+     * Same as above, but results are cached in {@code cacheDir} across runs, so
+     * files unchanged since the last pipeline run are not reviewed again. If
+     * the cache cannot be opened, every file is reviewed. Files left
+     * unreviewed by an interrupt count as failed.
+     */
+    public static int reviewCodeForCIPipeline(String[] sourceFiles, double minScore, Path cacheDir) {
+        ConfigManager config = new ConfigManager();
+        ReviewCache cache = openCache(cacheDir);
+        ThreadLocal<CodeReviewerAgent> agent =
+            ThreadLocal.withInitial(() -> new CodeReviewerAgent("CI Pipeline Reviewer", "1.0.0"));
+        ThreadLocal<CachingReviewer> cached = ThreadLocal.withInitial(() ->
+            new CachingReviewer(agent.get(), cache, "JavaCodeAnalyzer", config));
         
-        int failedFiles = 0;
+        int[] failedFiles = {0};
+        int[] doneFiles = {0};
         
+        List<Path> files = new ArrayList<>();
         for (String filePath : sourceFiles) {
-            try {
-                String code = FileReader.readFile(filePath);
-                ReviewResult result = agent.reviewCode(filePath, code);
-                
-                if (result.getOverallScore() < minScore) {
-                    System.out.println("FAIL: " + filePath);
-                    System.out.println("Score: " + result.getOverallScore() + "% (minimum: " + minScore + "%)");
-                    System.out.println("Critical Issues: " + result.getCriticalIssues());
-                    System.out.println("Major Issues: " + result.getMajorIssues());
-                    failedFiles++;
-                }
-            } catch (Exception e) {
-                System.err.println("Error reviewing: " + filePath);
-                failedFiles++;
-            }
+            files.add(Path.of(filePath));
+        }
+        
+        try (ParallelReviewEngine engine = new ParallelReviewEngine(ParallelReviewEngine.defaultParallelism())) {
+            engine.reviewAll(files,
+                file -> cache == null
+                    ? agent.get().reviewCode(file.toString(), FileReader.readFile(file.toString()))
+                    : cached.get().reviewCode(file.toString(), FileReader.readFile(file.toString())),
+                (file, result, error) -> {
+                    doneFiles[0]++;
+                    if (error != null) {
+                        System.err.println("Error reviewing: " + file);
+                        failedFiles[0]++;
+                    } else if (result.getOverallScore() < minScore) {
+                        System.out.println("FAIL: " + file);
+                        System.out.println("Score: " + result.getOverallScore() + "% (minimum: " + minScore + "%)");
+                        System.out.println("Critical Issues: " + result.getCriticalIssues());
+                        System.out.println("Major Issues: " + result.getMajorIssues());
+                        failedFiles[0]++;
+                    }
+                });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Review interrupted; " + (files.size() - doneFiles[0]) + " files not reviewed");
+            failedFiles[0] += files.size() - doneFiles[0];
         }
         
-        return failedFiles;
+        if (cache != null) {
+            System.out.println("Cache: " + cache.hits() + " hits, " + cache.misses() + " misses");
+        }
+        return failedFiles[0];
+    }
+
+    /** The review cache in {@code dir}; null if there is none or it cannot be opened. */
+    private static ReviewCache openCache(Path dir) {
+        if (dir == null) return null;
+        try {
+            return new ReviewCache(dir);
+        } catch (IOException e) {
+            System.err.println("Review cache unavailable, reviewing everything: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Example 5b: CI/CD on a pull request, reviewing only what changed between
+     * {@code base} and {@code head} (the work tree if null), plus
+     * {@code context} lines around each hunk. Files the change does not touch
+     * are never read. Scores count only the comments on changed lines, scored
+     * by a {@link ReviewResult} as for a whole file. Files left unreviewed by
+     * an interrupt count as failed.
+     */
+    public static int reviewChangesForCIPipeline(Path repo, String base, String head, int context,
+                                                 double minScore) throws IOException {
+        Path root = GitDiff.root(repo);
+        Map<Path, GitDiff.ChangedLines> changed = new HashMap<>();
+        List<Path> files = new ArrayList<>();
+        for (Map.Entry<String, GitDiff.ChangedLines> e : GitDiff.changedLines(root, base, head, context).entrySet()) {
+            if (!e.getKey().endsWith(".java")) continue;
+            Path file = root.resolve(e.getKey());
+            files.add(file);
+            changed.put(file, e.getValue());
+        }
+        ThreadLocal<CodeReviewerAgent> agent =
+            ThreadLocal.withInitial(() -> new CodeReviewerAgent("CI Pipeline Reviewer", "1.0.0"));
+        
+        int[] failedFiles = {0};
+        int[] doneFiles = {0};
+        
+        try (ParallelReviewEngine engine = new ParallelReviewEngine(ParallelReviewEngine.defaultParallelism())) {
+            engine.reviewAll(files,
+                file -> {
+                    String path = root.relativize(file).toString();
+                    String code = head == null ? FileReader.readFile(file.toString()) : GitDiff.show(root, head, path);
+                    ReviewResult whole = agent.get().reviewCode(path, code);
+                    // the agent's own scoring, over the comments on changed lines only
+                    GitDiff.ChangedLines lines = changed.get(file);
+                    ReviewResult result = new ReviewResult(path, code);
+                    for (ReviewComment c : whole.getComments()) {
+                        if (lines.contains(c.getLineNumber())) result.addComment(c);
+                    }
+                    return result;
+                },
+                (file, result, error) -> {
+                    doneFiles[0]++;
+                    if (error != null) {
+                        System.err.println("Error reviewing: " + file);
+                        failedFiles[0]++;
+                    } else if (result.getOverallScore() < minScore) {
+                        System.out.println("FAIL: " + file + " (lines " + changed.get(file) + ")");
+                        System.out.println("Score on changed lines: " + result.getOverallScore()
+                            + "% (minimum: " + minScore + "%)");
+                        System.out.println("Critical Issues: " + result.getCriticalIssues());
+                        System.out.println("Major Issues: " + result.getMajorIssues());
+                        failedFiles[0]++;
+                    }
+                });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Review interrupted; " + (files.size() - doneFiles[0]) + " files not reviewed");
+            failedFiles[0] += files.size() - doneFiles[0];
+        }
+        return failedFiles[0];
     }
 
     /**
@@ -229,16 +372,10 @@ public class CodeReviewerIntegrationExample {
         System.out.println("╚════════════════════════════════════════════════════════╝");
         System.out.println();
         
-        double totalScore = 0;
-        int totalIssues = 0;
-        int totalCritical = 0;
-        int totalMajor = 0;
+        ReviewStatistics stats = new ReviewStatistics();
         
         for (ReviewResult result : results) {
-            totalScore += result.getOverallScore();
-            totalIssues += result.getTotalIssues();
-            totalCritical += result.getCriticalIssues();
-            totalMajor += result.getMajorIssues();
+            stats.add(result);
             
             String status = result.getOverallScore() >= 80 ? "✓ PASS" : "✗ FAIL";
             System.out.printf("%s | %-30s | Score: %6.1f%% | Issues: %3d\n",
@@ -250,11 +387,12 @@ public class CodeReviewerIntegrationExample {
         }
         
         System.out.println();
+        ReviewStatistics.Snapshot summary = stats.snapshot();
         System.out.println("SUMMARY STATISTICS:");
-        System.out.printf("Average Score:     %.1f%%\n", totalScore / results.size());
-        System.out.printf("Total Issues:      %d\n", totalIssues);
-        System.out.printf("Critical Issues:   %d\n", totalCritical);
-        System.out.printf("Major Issues:      %d\n", totalMajor);
+        System.out.printf("Average Score:     %.1f%%\n", summary.getAverageScore());
+        System.out.printf("Total Issues:      %d\n", summary.getTotalIssues());
+        System.out.printf("Critical Issues:   %d\n", summary.getCriticalIssues());
+        System.out.printf("Major Issues:      %d\n", summary.getMajorIssues());
         System.out.println();
     }
 
@@ -0,0 +1,877 @@
+package com.ai.reviewer.agent;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append-only store of review findings, kept on disk so dashboards and CI
+ * can ask "all CRITICAL findings under module X" or "what is new since
+ * commit Y" without reviewing anything again.
+ *
+ * Findings are recorded per reviewed file and commit. They are buffered and
+ * sealed into an immutable segment file on {@link #flush()}, or once
+ * {@link #FLUSH_ROWS} are pending; queries only see sealed segments. A
+ * segment holds the (commit, file) pairs it covers, fixed-width rows of
+ * string ids, one deduplicated string table sorted by bytes, and postings
+ * of the rows under each rule and severity and of the pairs under each
+ * commit and file; it is memory-mapped when opened. A query looks its
+ * filter values up in each segment's string table by binary search and
+ * reads only the rows the postings give for them; messages are only
+ * decoded for rows it returns.
+ *
+ * Reviewing a file again at the same commit replaces its earlier findings:
+ * the newest segment covering a (commit, file) pair wins, including when it
+ * recorded no findings. Segments are written to a temporary file and linked
+ * into place under a number above every segment on disk, so readers in
+ * other processes never see a partial one and pick new ones up on
+ * {@link #refresh()}. Where the file system has no hard links the
+ * temporary file is renamed instead, which only fails on a taken number
+ * when it is taken before the rename.
+ *
+ * Safe to share between threads, and between processes appending to and
+ * compacting the same directory. Compaction rewrites each run of segments
+ * under the number of the run's newest one, so segments other processes
+ * write meanwhile stay newer than its output; one store at a time compacts
+ * a directory.
+ */
+public class FindingsStore implements AutoCloseable {
+
+    /** Pending rows that trigger a flush on their own. */
+    public static final int FLUSH_ROWS = 64 * 1024;
+
+    /** Past this many segments a flush also compacts. */
+    public static final int MAX_SEGMENTS = 256;
+
+    private static final String SUFFIX = ".seg";
+    private static final String LOCK = "compact.lock";
+    private static final int MAGIC = 0x52465331; // "RFS1"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 32;
+    private static final int ENTRY_BYTES = 12;
+    private static final int ROW_BYTES = 20;
+    private static final int KEY_BYTES = 8;
+    /** Rows per segment written by {@link #compact()}. */
+    private static final int COMPACT_ROWS = 1 << 20;
+
+    private final Path dir;
+    /** Sealed segments, oldest first, with which of their entries are live; replaced whole. */
+    private volatile View view = new View(List.of());
+    private SegmentWriter pending = new SegmentWriter();
+    private long nextSeq;
+
+    public FindingsStore(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        refresh();
+    }
+
+    /** One finding; commit and file are filled in on the way out of a query. */
+    public static final class Finding {
+        private final String commit;
+        private final String file;
+        private final String rule;
+        private final String severity;
+        private final int line;
+        private final String message;
+
+        public Finding(String rule, String severity, int line, String message) {
+            this(null, null, rule, severity, line, message);
+        }
+
+        Finding(String commit, String file, String rule, String severity, int line, String message) {
+            this.commit = commit;
+            this.file = file;
+            this.rule = rule == null ? "" : rule;
+            this.severity = severity == null ? "" : severity;
+            this.line = line;
+            this.message = message == null ? "" : message;
+        }
+
+        public String getCommit() { return commit; }
+        public String getFile() { return file; }
+        public String getRule() { return rule; }
+        public String getSeverity() { return severity; }
+        public int getLine() { return line; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return commit + " " + file + ":" + line + " [" + severity + "] " + rule + ": " + message;
+        }
+    }
+
+    /** Which findings a query wants; unset fields match everything. */
+    public static final class Query {
+        private String commit;
+        private String pathPrefix;
+        private String rule;
+        private String severity;
+        private int limit = Integer.MAX_VALUE;
+
+        public Query commit(String commit) { this.commit = commit; return this; }
+        /** Files whose path starts with {@code prefix}, e.g. {@code "billing/"} for one module. */
+        public Query pathPrefix(String prefix) { this.pathPrefix = prefix == null ? null : normalize(prefix); return this; }
+        public Query rule(String rule) { this.rule = rule; return this; }
+        public Query severity(String severity) { this.severity = severity; return this; }
+        /** At most this many findings from {@link #find}; counts are not limited. */
+        public Query limit(int limit) { this.limit = limit; return this; }
+    }
+
+    // ---------- Writing ----------
+
+    /**
+     * Records the findings of one review of {@code file} at {@code commit}.
+     * An empty list still records that the file was reviewed clean.
+     */
+    public synchronized void add(String commit, String file, List<Finding> findings) throws IOException {
+        String path = normalize(file);
+        if (pending.hasEntry(commit, path)) {
+            // the later review replaces the earlier one, which needs a newer segment
+            flush();
+        }
+        int entry = pending.entry(commit, path);
+        for (Finding f : findings) pending.row(entry, f.rule, f.severity, f.line, f.message);
+        if (pending.rows >= FLUSH_ROWS) flush();
+    }
+
+    /** Seals what was added since the last flush into a new segment. */
+    public synchronized void flush() throws IOException {
+        if (pending.entries == 0) return;
+        SegmentWriter sealed = pending;
+        pending = new SegmentWriter();
+        Segment segment = write(sealed);
+        List<Segment> segments = new ArrayList<>(view.segments);
+        segments.add(segment);
+        view = new View(segments);
+        if (segments.size() > MAX_SEGMENTS) compact();
+    }
+
+    /** Picks up segments written, or compacted away, by other processes. */
+    public synchronized void refresh() throws IOException {
+        Map<Long, Segment> open = new HashMap<>();
+        for (Segment s : view.segments) open.put(s.seq, s);
+        List<Segment> segments = new ArrayList<>();
+        for (Path p : list()) {
+            long seq = seq(p);
+            Segment s = open.get(seq);
+            try {
+                // compaction replaces a segment in place, under the same number
+                if (s == null || !s.sameFile(p)) s = Segment.open(p, seq);
+            } catch (NoSuchFileException e) {
+                // compacted away since the listing; a newer segment holds what was live in it
+                continue;
+            }
+            segments.add(s);
+            nextSeq = Math.max(nextSeq, seq + 1);
+        }
+        view = new View(segments);
+    }
+
+    /**
+     * Rewrites the live findings of all segments on disk into as few
+     * segments as possible and deletes the old ones. Does nothing while
+     * another store compacts the same directory.
+     */
+    public synchronized void compact() throws IOException {
+        try (FileChannel lockFile = FileChannel.open(dir.resolve(LOCK), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+             FileLock lock = tryLock(lockFile)) {
+            if (lock == null) return;
+            // segments other processes wrote decide what is live, so start from the directory
+            refresh();
+            compact(view);
+        }
+    }
+
+    private void compact(View old) throws IOException {
+        if (old.segments.size() < 2) return;
+        List<Segment> segments = new ArrayList<>();
+        SegmentWriter out = new SegmentWriter();
+        int first = 0;
+        for (int i = 0; i < old.segments.size(); i++) {
+            Segment s = old.segments.get(i);
+            boolean[] live = old.live[i];
+            // split between old segments only, so an entry and its rows stay together
+            if (out.rows >= COMPACT_ROWS) {
+                segments.add(replace(out, old.segments.subList(first, i)));
+                out = new SegmentWriter();
+                first = i;
+            }
+            int[] target = new int[s.entries];
+            for (int e = 0; e < s.entries; e++) {
+                if (live[e]) target[e] = out.entry(s.string(s.entryCommit(e)), s.string(s.entryFile(e)));
+            }
+            for (int r = 0; r < s.rows; r++) {
+                int e = s.rowEntry(r);
+                if (!live[e]) continue;
+                out.row(target[e], s.string(s.rowRule(r)), s.string(s.rowSeverity(r)), s.rowLine(r),
+                    s.string(s.rowMessage(r)));
+            }
+        }
+        Segment last = replace(out, old.segments.subList(first, old.segments.size()));
+        if (last != null) segments.add(last);
+        view = new View(segments);
+    }
+
+    /**
+     * Puts {@code writer}'s segment in place of the newest of {@code run},
+     * then deletes the rest of the run. At every step the live findings on
+     * disk are the same: the output only holds what was live in the run, at
+     * a number no newer segment comes before. Null if nothing in the run
+     * was live.
+     */
+    private Segment replace(SegmentWriter writer, List<Segment> run) throws IOException {
+        Segment newest = run.get(run.size() - 1);
+        Segment out = null;
+        if (writer.entries > 0) {
+            Path tmp = temp(writer);
+            try {
+                Files.move(tmp, newest.path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            out = Segment.open(newest.path, newest.seq);
+        }
+        for (Segment s : run) {
+            if (s != newest || out == null) Files.deleteIfExists(s.path);
+        }
+        return out;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    // ---------- Queries ----------
+
+    /** Findings matching {@code q}, oldest segment first, in review order within a file. */
+    public List<Finding> find(Query q) {
+        List<Finding> out = new ArrayList<>();
+        View v = view;
+        for (int i = 0; i < v.segments.size() && out.size() < q.limit; i++) {
+            Segment s = v.segments.get(i);
+            scan(s, v.live[i], q, r -> {
+                int e = s.rowEntry(r);
+                out.add(new Finding(s.string(s.entryCommit(e)), s.string(s.entryFile(e)), s.string(s.rowRule(r)),
+                    s.string(s.rowSeverity(r)), s.rowLine(r), s.string(s.rowMessage(r))));
+                return out.size() < q.limit;
+            });
+        }
+        return out;
+    }
+
+    /** Number of findings matching {@code q}; no message is decoded. */
+    public long count(Query q) {
+        long[] n = {0};
+        View v = view;
+        for (int i = 0; i < v.segments.size(); i++) {
+            scan(v.segments.get(i), v.live[i], q, r -> {
+                n[0]++;
+                return true;
+            });
+        }
+        return n[0];
+    }
+
+    /**
+     * Findings at {@code head} matching {@code q} that were not there at
+     * {@code base}. A finding is the same across commits when its file, rule
+     * and message are, whatever line it moved to; if one occurs more often at
+     * head, the later occurrences count as new. Files not reviewed at
+     * {@code base} count as entirely new.
+     */
+    public List<Finding> newSince(String base, String head, Query q) {
+        Map<String, Integer> before = new HashMap<>();
+        Query baseQuery = new Query().commit(base).pathPrefix(q.pathPrefix).rule(q.rule).severity(q.severity);
+        for (Finding f : find(baseQuery)) before.merge(key(f), 1, Integer::sum);
+        Query headQuery = new Query().commit(head).pathPrefix(q.pathPrefix).rule(q.rule).severity(q.severity);
+        List<Finding> added = new ArrayList<>();
+        for (Finding f : find(headQuery)) {
+            if (added.size() >= q.limit) break;
+            // each finding at base accounts for one identical finding at head
+            String key = key(f);
+            Integer n = before.get(key);
+            if (n == null) {
+                added.add(f);
+            } else if (n > 1) {
+                before.put(key, n - 1);
+            } else {
+                before.remove(key);
+            }
+        }
+        return added;
+    }
+
+    public int segmentCount() { return view.segments.size(); }
+
+    private interface RowVisitor {
+        /** Returns false to stop the scan. */
+        boolean visit(int row);
+    }
+
+    /**
+     * Visits the live rows of {@code s} matching {@code q}, in row order.
+     * The commit or path prefix picks the entries through the segment's
+     * index, and each entry's rows are cut out of the shorter of the rule
+     * and severity postings; only a query without filters reads every row.
+     */
+    private static void scan(Segment s, boolean[] live, Query q, RowVisitor visitor) {
+        int rule = -1, severity = -1;
+        Postings rows = null;
+        if (q.rule != null) {
+            if ((rule = s.find(q.rule)) < 0 || (rows = s.ruleRows(rule)) == null) return;
+        }
+        if (q.severity != null) {
+            Postings p;
+            if ((severity = s.find(q.severity)) < 0 || (p = s.severityRows(severity)) == null) return;
+            if (rows == null || p.size() < rows.size()) rows = p;
+        }
+        int[] files = null;
+        if (q.pathPrefix != null && (files = s.prefixRange(q.pathPrefix))[0] == files[1]) return;
+
+        int[] selected = null;
+        int count = 0;
+        if (q.commit != null) {
+            int commit = s.find(q.commit);
+            Postings p = commit < 0 ? null : s.commitEntries(commit);
+            if (p == null) return;
+            selected = new int[p.size()];
+            for (int i = 0; i < p.size(); i++) {
+                int e = p.get(i);
+                if (live[e] && (files == null || inRange(s.entryFile(e), files))) selected[count++] = e;
+            }
+        } else if (files != null) {
+            selected = new int[s.entries];
+            for (int i = s.firstByFile(files[0]); i < s.entries; i++) {
+                int e = s.byFile(i);
+                if (s.entryFile(e) >= files[1]) break;
+                if (live[e]) selected[count++] = e;
+            }
+            // file order; rows are visited in entry order
+            Arrays.sort(selected, 0, count);
+        }
+
+        if (selected == null) {
+            int n = rows == null ? s.rows : rows.size();
+            for (int i = 0; i < n; i++) {
+                int r = rows == null ? i : rows.get(i);
+                if (live[s.rowEntry(r)] && matches(s, r, rule, severity) && !visitor.visit(r)) return;
+            }
+            return;
+        }
+        for (int k = 0; k < count; k++) {
+            int e = selected[k];
+            int from = s.entryFirstRow(e), to = s.entryFirstRow(e + 1);
+            int i = rows == null ? from : rows.lowerBound(from);
+            int n = rows == null ? to : rows.size();
+            for (; i < n; i++) {
+                int r = rows == null ? i : rows.get(i);
+                if (r >= to) break;
+                if (matches(s, r, rule, severity) && !visitor.visit(r)) return;
+            }
+        }
+    }
+
+    private static boolean matches(Segment s, int r, int rule, int severity) {
+        return (rule < 0 || s.rowRule(r) == rule) && (severity < 0 || s.rowSeverity(r) == severity);
+    }
+
+    private static boolean inRange(int id, int[] range) {
+        return id >= range[0] && id < range[1];
+    }
+
+    // ---------- Segments ----------
+
+    /** Segments plus, per segment, which entries no newer segment replaces. */
+    private static final class View {
+        final List<Segment> segments;
+        final boolean[][] live;
+
+        View(List<Segment> segments) {
+            this.segments = List.copyOf(segments);
+            this.live = new boolean[segments.size()][];
+            Set<String> seen = new HashSet<>();
+            for (int i = segments.size() - 1; i >= 0; i--) {
+                Segment s = segments.get(i);
+                live[i] = new boolean[s.entries];
+                for (int e = 0; e < s.entries; e++) {
+                    live[i][e] = seen.add(s.string(s.entryCommit(e)) + '\0' + s.string(s.entryFile(e)));
+                }
+            }
+        }
+    }
+
+    /** Ascending row or entry numbers, one key's run of a segment's postings. */
+    private static final class Postings {
+        private final ByteBuffer buf;
+        private final int base;
+        private final int from;
+        private final int to;
+
+        Postings(ByteBuffer buf, int base, int from, int to) {
+            this.buf = buf;
+            this.base = base;
+            this.from = from;
+            this.to = to;
+        }
+
+        int size() { return to - from; }
+
+        int get(int i) { return buf.getInt(base + (from + i) * 4); }
+
+        /** Index of the first number not below {@code n}. */
+        int lowerBound(int n) {
+            int lo = 0, hi = size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (get(mid) < n) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    /**
+     * A sealed segment, mapped read-only. Layout, big-endian:
+     * <pre>
+     * header     magic, version, entries, rows, strings, rule keys, severity keys, commit keys
+     * entries    commit id, file id, first row
+     * rows       entry, rule id, severity id, line, message id
+     * by file    entry numbers ordered by file id
+     * rules      rule keys of (rule id, first posting), then each rule's rows
+     * severities severity keys of (severity id, first posting), then each severity's rows
+     * commits    commit keys of (commit id, first posting), then each commit's entries
+     * offsets    strings + 1 offsets into the string data
+     * data       UTF-8 bytes of each string, ordered by bytes
+     * </pre>
+     * Rows are grouped by entry and postings list numbers in ascending
+     * order, so each key's findings come out in the order they were added.
+     * The string table being sorted, ids compare like the strings, and all
+     * paths under a prefix hold one range of ids.
+     */
+    private static final class Segment {
+        final Path path;
+        final long seq;
+        /** The file's identity when opened, so {@link #refresh()} sees it replaced. */
+        private final Object fileKey;
+        private final long size;
+        private final long modified;
+        final MappedByteBuffer buf;
+        final int entries;
+        final int rows;
+        final int strings;
+        private final int ruleKeys;
+        private final int severityKeys;
+        private final int commitKeys;
+        private final int rowBase;
+        private final int byFileBase;
+        private final int ruleBase;
+        private final int severityBase;
+        private final int commitBase;
+        private final int offsetBase;
+        private final int dataBase;
+        /** Decoded strings, filled lazily; racing threads decode the same value. */
+        private final String[] decoded;
+
+        private Segment(Path path, long seq, BasicFileAttributes attrs, MappedByteBuffer buf) throws IOException {
+            this.path = path;
+            this.seq = seq;
+            this.fileKey = attrs.fileKey();
+            this.size = attrs.size();
+            this.modified = attrs.lastModifiedTime().toMillis();
+            this.buf = buf;
+            if (buf.limit() < HEADER_BYTES || buf.getInt(0) != MAGIC) {
+                throw new IOException("Not a findings segment: " + path);
+            }
+            if (buf.getInt(4) != VERSION) {
+                throw new IOException("Findings segment of version " + buf.getInt(4) + ", not " + VERSION
+                    + ": " + path + "; delete the store and review again");
+            }
+            entries = buf.getInt(8);
+            rows = buf.getInt(12);
+            strings = buf.getInt(16);
+            ruleKeys = buf.getInt(20);
+            severityKeys = buf.getInt(24);
+            commitKeys = buf.getInt(28);
+            if ((entries | rows | strings | ruleKeys | severityKeys | commitKeys) < 0) {
+                throw new IOException("Corrupt findings segment: " + path);
+            }
+            long at = HEADER_BYTES + (long) entries * ENTRY_BYTES;
+            long rowAt = at;
+            long byFileAt = at += (long) rows * ROW_BYTES;
+            long ruleAt = at += entries * 4L;
+            long severityAt = at += ruleKeys * (long) KEY_BYTES + rows * 4L;
+            long commitAt = at += severityKeys * (long) KEY_BYTES + rows * 4L;
+            long offsetAt = at += commitKeys * (long) KEY_BYTES + entries * 4L;
+            long dataAt = at + (strings + 1) * 4L;
+            if (dataAt > buf.limit() || dataAt + buf.getInt((int) offsetAt + strings * 4) != buf.limit()) {
+                throw new IOException("Corrupt findings segment: " + path);
+            }
+            rowBase = (int) rowAt;
+            byFileBase = (int) byFileAt;
+            ruleBase = (int) ruleAt;
+            severityBase = (int) severityAt;
+            commitBase = (int) commitAt;
+            offsetBase = (int) offsetAt;
+            dataBase = (int) dataAt;
+            decoded = new String[strings];
+        }
+
+        static Segment open(Path path, long seq) throws IOException {
+            // before opening: if the file is replaced in between, the next refresh reopens it
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Findings segment too large to map: " + path);
+                }
+                return new Segment(path, seq, attrs, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+        }
+
+        /** Whether {@code p} is still the file this segment was opened from. */
+        boolean sameFile(Path p) throws IOException {
+            BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+            if (fileKey != null) return fileKey.equals(attrs.fileKey());
+            return attrs.size() == size && attrs.lastModifiedTime().toMillis() == modified;
+        }
+
+        int entryCommit(int e) { return buf.getInt(HEADER_BYTES + e * ENTRY_BYTES); }
+        int entryFile(int e) { return buf.getInt(HEADER_BYTES + e * ENTRY_BYTES + 4); }
+        /** First row of entry {@code e}; {@code e == entries} gives the row count. */
+        int entryFirstRow(int e) { return e == entries ? rows : buf.getInt(HEADER_BYTES + e * ENTRY_BYTES + 8); }
+        int rowEntry(int r) { return buf.getInt(rowBase + r * ROW_BYTES); }
+        int rowRule(int r) { return buf.getInt(rowBase + r * ROW_BYTES + 4); }
+        int rowSeverity(int r) { return buf.getInt(rowBase + r * ROW_BYTES + 8); }
+        int rowLine(int r) { return buf.getInt(rowBase + r * ROW_BYTES + 12); }
+        int rowMessage(int r) { return buf.getInt(rowBase + r * ROW_BYTES + 16); }
+        /** The {@code i}th entry in file order. */
+        int byFile(int i) { return buf.getInt(byFileBase + i * 4); }
+
+        /** Index in file order of the first entry whose file id is not below {@code file}. */
+        int firstByFile(int file) {
+            int lo = 0, hi = entries;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (entryFile(byFile(mid)) < file) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        Postings ruleRows(int id) { return postings(ruleBase, ruleKeys, rows, id); }
+        Postings severityRows(int id) { return postings(severityBase, severityKeys, rows, id); }
+        Postings commitEntries(int id) { return postings(commitBase, commitKeys, entries, id); }
+
+        /** The numbers posted under {@code id} in the directory at {@code base}, or null if none are. */
+        private Postings postings(int base, int keys, int total, int id) {
+            int lo = 0, hi = keys - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int key = buf.getInt(base + mid * KEY_BYTES);
+                if (key < id) {
+                    lo = mid + 1;
+                } else if (key > id) {
+                    hi = mid - 1;
+                } else {
+                    int to = mid + 1 < keys ? buf.getInt(base + (mid + 1) * KEY_BYTES + 4) : total;
+                    return new Postings(buf, base + keys * KEY_BYTES, buf.getInt(base + mid * KEY_BYTES + 4), to);
+                }
+            }
+            return null;
+        }
+
+        String string(int id) {
+            String s = decoded[id];
+            if (s == null) {
+                int from = buf.getInt(offsetBase + id * 4);
+                byte[] bytes = new byte[buf.getInt(offsetBase + id * 4 + 4) - from];
+                buf.get(dataBase + from, bytes);
+                decoded[id] = s = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return s;
+        }
+
+        /** The id of {@code value} in this segment, or -1; compares bytes without decoding. */
+        int find(String value) {
+            byte[] want = value.getBytes(StandardCharsets.UTF_8);
+            int id = lowerBound(want, false);
+            return id < strings && compare(id, want, false) == 0 ? id : -1;
+        }
+
+        /** The ids {@code [from, to)} of the strings starting with {@code prefix}. */
+        int[] prefixRange(String prefix) {
+            byte[] want = prefix.getBytes(StandardCharsets.UTF_8);
+            return new int[] {lowerBound(want, false), lowerBound(want, true) };
+        }
+
+        /**
+         * The first id whose string is not below {@code want}; with
+         * {@code past}, the first whose string is above every string
+         * starting with {@code want}.
+         */
+        private int lowerBound(byte[] want, boolean past) {
+            int lo = 0, hi = strings;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = compare(mid, want, past);
+                if (c < 0 || (past && c == 0)) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        /**
+         * Compares string {@code id} with {@code want} as unsigned bytes; with
+         * {@code prefix}, any string starting with {@code want} is equal.
+         */
+        private int compare(int id, byte[] want, boolean prefix) {
+            int from = buf.getInt(offsetBase + id * 4);
+            int length = buf.getInt(offsetBase + id * 4 + 4) - from;
+            int at = dataBase + from;
+            int n = Math.min(length, want.length);
+            for (int i = 0; i < n; i++) {
+                int c = Integer.compare(buf.get(at + i) & 0xFF, want[i] & 0xFF);
+                if (c != 0) return c;
+            }
+            return prefix && length >= want.length ? 0 : Integer.compare(length, want.length);
+        }
+    }
+
+    /** Builds one segment in memory. */
+    private static final class SegmentWriter {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<byte[]> strings = new ArrayList<>();
+        private final Set<String> covered = new HashSet<>();
+        private int[] entryData = new int[64];
+        private int[] rowData = new int[320];
+        int entries;
+        int rows;
+
+        boolean hasEntry(String commit, String file) {
+            return covered.contains(commit + '\0' + file);
+        }
+
+        int entry(String commit, String file) {
+            covered.add(commit + '\0' + file);
+            if ((entries + 1) * 2 > entryData.length) entryData = Arrays.copyOf(entryData, entryData.length * 2);
+            entryData[entries * 2] = id(commit);
+            entryData[entries * 2 + 1] = id(file);
+            return entries++;
+        }
+
+        void row(int entry, String rule, String severity, int line, String message) {
+            if ((rows + 1) * 5 > rowData.length) rowData = Arrays.copyOf(rowData, rowData.length * 2);
+            int at = rows++ * 5;
+            rowData[at] = entry;
+            rowData[at + 1] = id(rule);
+            rowData[at + 2] = id(severity);
+            rowData[at + 3] = line;
+            rowData[at + 4] = id(message);
+        }
+
+        private int id(String s) {
+            return ids.computeIfAbsent(s, k -> {
+                strings.add(k.getBytes(StandardCharsets.UTF_8));
+                return strings.size() - 1;
+            });
+        }
+
+        void writeTo(OutputStream stream) throws IOException {
+            // renumber the strings in byte order
+            int n = strings.size();
+            Integer[] byBytes = new Integer[n];
+            for (int i = 0; i < n; i++) byBytes[i] = i;
+            Arrays.sort(byBytes, (a, b) -> Arrays.compareUnsigned(strings.get(a), strings.get(b)));
+            int[] id = new int[n];
+            for (int i = 0; i < n; i++) id[byBytes[i]] = i;
+
+            // rows grouped by entry, in the order they were added
+            int[] rowOrder = sortBy(rows, r -> rowData[r * 5], entries);
+            int[] row = new int[rows * 5];
+            for (int r = 0; r < rows; r++) {
+                int at = rowOrder[r] * 5;
+                row[r * 5] = rowData[at];
+                row[r * 5 + 1] = id[rowData[at + 1]];
+                row[r * 5 + 2] = id[rowData[at + 2]];
+                row[r * 5 + 3] = rowData[at + 3];
+                row[r * 5 + 4] = id[rowData[at + 4]];
+            }
+            int[] firstRow = new int[entries + 1];
+            for (int r = 0; r < rows; r++) firstRow[rowData[r * 5] + 1]++;
+            for (int e = 0; e < entries; e++) firstRow[e + 1] += firstRow[e];
+            IntUnaryOperator commit = e -> id[entryData[e * 2]];
+            IntUnaryOperator file = e -> id[entryData[e * 2 + 1]];
+            IntUnaryOperator rule = r -> row[r * 5 + 1];
+            IntUnaryOperator severity = r -> row[r * 5 + 2];
+            int[] byFile = sortBy(entries, file, n);
+            int[] ruleRows = sortBy(rows, rule, n);
+            int[] severityRows = sortBy(rows, severity, n);
+            int[] commitEntries = sortBy(entries, commit, n);
+            int[] ruleKeys = directory(ruleRows, rule);
+            int[] severityKeys = directory(severityRows, severity);
+            int[] commitKeys = directory(commitEntries, commit);
+
+            long data = 0;
+            for (byte[] s : strings) data += s.length;
+            if (HEADER_BYTES + (long) entries * (ENTRY_BYTES + 8) + (long) rows * (ROW_BYTES + 8)
+                    + (ruleKeys.length + severityKeys.length + commitKeys.length) * 4L
+                    + (n + 1) * 4L + data > Integer.MAX_VALUE) {
+                throw new IOException("Findings segment would exceed 2 GB");
+            }
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries);
+            out.writeInt(rows);
+            out.writeInt(n);
+            out.writeInt(ruleKeys.length / 2);
+            out.writeInt(severityKeys.length / 2);
+            out.writeInt(commitKeys.length / 2);
+            for (int e = 0; e < entries; e++) {
+                out.writeInt(commit.applyAsInt(e));
+                out.writeInt(file.applyAsInt(e));
+                out.writeInt(firstRow[e]);
+            }
+            for (int v : row) out.writeInt(v);
+            for (int e : byFile) out.writeInt(e);
+            for (int[] postings : List.of(ruleKeys, ruleRows, severityKeys, severityRows, commitKeys, commitEntries)) {
+                for (int v : postings) out.writeInt(v);
+            }
+            int offset = 0;
+            for (int i = 0; i < n; i++) {
+                out.writeInt(offset);
+                offset += strings.get(byBytes[i]).length;
+            }
+            out.writeInt(offset);
+            for (int i = 0; i < n; i++) out.write(strings.get(byBytes[i]));
+            out.flush();
+        }
+
+        /** {@code 0..count-1} stably sorted by {@code key}, whose values are below {@code keys}. */
+        private static int[] sortBy(int count, IntUnaryOperator key, int keys) {
+            int[] start = new int[keys + 1];
+            for (int i = 0; i < count; i++) start[key.applyAsInt(i) + 1]++;
+            for (int k = 0; k < keys; k++) start[k + 1] += start[k];
+            int[] order = new int[count];
+            for (int i = 0; i < count; i++) order[start[key.applyAsInt(i)]++] = i;
+            return order;
+        }
+
+        /** (key, first posting) for each distinct key of {@code sorted}, which is ordered by it. */
+        private static int[] directory(int[] sorted, IntUnaryOperator key) {
+            int[] dir = new int[16];
+            int n = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                int k = key.applyAsInt(sorted[i]);
+                if (n > 0 && dir[n - 2] == k) continue;
+                if (n + 2 > dir.length) dir = Arrays.copyOf(dir, dir.length * 2);
+                dir[n++] = k;
+                dir[n++] = i;
+            }
+            return Arrays.copyOf(dir, n);
+        }
+    }
+
+    // ---------- Helpers ----------
+
+    private Segment write(SegmentWriter writer) throws IOException {
+        Path tmp = temp(writer);
+        try {
+            // numbers freed by compaction are below a live segment, so never reuse one
+            List<Path> existing = list();
+            if (!existing.isEmpty()) nextSeq = Math.max(nextSeq, seq(existing.get(existing.size() - 1)) + 1);
+            while (true) {
+                long seq = nextSeq++;
+                Path target = dir.resolve(String.format("%016d", seq) + SUFFIX);
+                try {
+                    // a link fails if another process took this number; a rename would replace its segment
+                    Files.createLink(target, tmp);
+                } catch (FileAlreadyExistsException e) {
+                    continue;
+                } catch (UnsupportedOperationException | FileSystemException e) {
+                    // no hard links here (FAT, some network shares): a move without
+                    // REPLACE_EXISTING refuses a target that is already there
+                    try {
+                        Files.move(tmp, target);
+                    } catch (FileAlreadyExistsException taken) {
+                        continue;
+                    }
+                }
+                return Segment.open(target, seq);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private Path temp(SegmentWriter writer) throws IOException {
+        Path tmp = Files.createTempFile(dir, "segment", ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            writer.writeTo(out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        return tmp;
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // another store in this JVM holds it
+            return null;
+        }
+    }
+
+    private List<Path> list() throws IOException {
+        try (Stream<Path> list = Files.list(dir)) {
+            return list.filter(p -> p.getFileName().toString().endsWith(SUFFIX))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    private static long seq(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static String normalize(String path) {
+        String p = path.replace('\\', '/');
+        return p.startsWith("./") ? p.substring(2) : p;
+    }
+
+    private static String key(Finding f) {
+        return f.file + '\0' + f.rule + '\0' + f.message;
+    }
+}
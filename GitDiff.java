@@ -0,0 +1,246 @@
+package com.ai.reviewer.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntPredicate;
+
+/**
+ * Reads what changed between two revisions from the local {@code git}, as
+ * line ranges of the new version of each file, so a review can stay inside
+ * the hunks of a change instead of covering the whole tree.
+ */
+public final class GitDiff {
+
+    private GitDiff() {}
+
+    /** Changed lines of one file (1-based, in the new version), widened by the context. */
+    public static final class ChangedLines implements IntPredicate {
+        /** Sorted, non-overlapping [from, to] pairs. */
+        private final int[] ranges;
+
+        ChangedLines(int[] ranges) {
+            this.ranges = ranges;
+        }
+
+        public boolean contains(int line) {
+            int lo = 0, hi = ranges.length / 2 - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (line < ranges[2 * mid]) hi = mid - 1;
+                else if (line > ranges[2 * mid + 1]) lo = mid + 1;
+                else return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean test(int line) {
+            return contains(line);
+        }
+
+        public int rangeCount() {
+            return ranges.length / 2;
+        }
+
+        /** Number of lines covered. */
+        public int lineCount() {
+            int n = 0;
+            for (int i = 0; i < ranges.length; i += 2) n += ranges[i + 1] - ranges[i] + 1;
+            return n;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (i > 0) sb.append(',');
+                sb.append(ranges[i]).append('-').append(ranges[i + 1]);
+            }
+            return sb.toString();
+        }
+    }
+
+    /** The top-level directory of the work tree containing {@code path}. */
+    public static Path root(Path path) throws IOException {
+        Path dir = Files.isDirectory(path) ? path : path.toAbsolutePath().getParent();
+        return Path.of(run(dir, "rev-parse", "--show-toplevel").trim());
+    }
+
+    /**
+     * Files added, modified or renamed between {@code base} and {@code head}
+     * (the work tree if {@code head} is null), keyed by their path relative
+     * to the repository root, in diff order.
+     */
+    public static Map<String, ChangedLines> changedLines(Path repo, String base, String head, int context)
+            throws IOException {
+        List<String> cmd = new ArrayList<>(List.of("-c", "core.quotePath=false", "diff", "--no-color",
+            "--no-ext-diff", "--unified=0", "--diff-filter=AMR", base));
+        if (head != null) cmd.add(head);
+        cmd.add("--");
+        Process p = start(repo, cmd);
+        CompletableFuture<String> errors = drain(p.getErrorStream());
+        Map<String, ChangedLines> changed;
+        try (Reader out = new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8)) {
+            changed = parse(out, context);
+        }
+        finish(p, cmd, errors);
+        return changed;
+    }
+
+    /**
+     * The base and head that {@link #changedLines} takes for a range as
+     * {@code git diff} reads it: {@code A} (head null, the work tree),
+     * {@code A..B}, or {@code A...B}, which starts from the merge base of
+     * the two. An empty side means HEAD.
+     */
+    public static String[] range(Path repo, String spec) throws IOException {
+        int three = spec.indexOf("...");
+        int dots = three >= 0 ? three : spec.indexOf("..");
+        if (dots < 0) return new String[] {spec, null};
+        String base = spec.substring(0, dots);
+        String head = spec.substring(dots + (three >= 0 ? 3 : 2));
+        if (base.isEmpty()) base = "HEAD";
+        if (head.isEmpty()) head = "HEAD";
+        if (three >= 0) base = run(repo, "merge-base", base, head).trim();
+        return new String[] {base, head};
+    }
+
+    /** The full object name {@code rev} resolves to, e.g. a commit id for {@code HEAD}. */
+    public static String revParse(Path repo, String rev) throws IOException {
+        return run(repo, "rev-parse", "--verify", "--quiet", rev + "^{commit}").trim();
+    }
+
+    /**
+     * Whether {@code paths}, or the whole work tree if empty, have changes
+     * not in HEAD, untracked files included.
+     */
+    public static boolean dirty(Path repo, List<Path> paths) throws IOException {
+        List<String> cmd = new ArrayList<>(List.of("status", "--porcelain", "--"));
+        for (Path p : paths) cmd.add(p.toString());
+        return !run(repo, cmd.toArray(new String[0])).isEmpty();
+    }
+
+    /** The content of {@code path} at {@code rev}. */
+    public static String show(Path repo, String rev, String path) throws IOException {
+        return run(repo, "show", rev + ":" + path);
+    }
+
+    /** Parses a unified diff; only the {@code +++} paths and hunk headers are read. */
+    static Map<String, ChangedLines> parse(Reader diff, int context) throws IOException {
+        Map<String, ChangedLines> files = new LinkedHashMap<>();
+        BufferedReader in = new BufferedReader(diff);
+        String file = null;
+        int[] ranges = new int[16];
+        int count = 0;
+        // an added line "++ x" also starts with "+++ ", so paths are only read in a file header
+        boolean header = false;
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.startsWith("diff ")) {
+                header = true;
+            } else if (header && line.startsWith("+++ ")) {
+                if (file != null) files.put(file, merge(ranges, count, context));
+                file = path(line.substring(4));
+                count = 0;
+            } else if (line.startsWith("@@ ") && file != null) {
+                header = false;
+                // @@ -a[,b] +c[,d] @@
+                int plus = line.indexOf('+', 3);
+                int end = line.indexOf(' ', plus);
+                String[] spec = line.substring(plus + 1, end).split(",");
+                int start = Integer.parseInt(spec[0]);
+                int length = spec.length > 1 ? Integer.parseInt(spec[1]) : 1;
+                if (count + 2 > ranges.length) ranges = Arrays.copyOf(ranges, ranges.length * 2);
+                // a pure deletion sits between line start and start + 1
+                ranges[count++] = Math.max(1, start);
+                ranges[count++] = length == 0 ? start + 1 : start + length - 1;
+            }
+        }
+        if (file != null) files.put(file, merge(ranges, count, context));
+        files.remove(null);
+        return files;
+    }
+
+    private static ChangedLines merge(int[] ranges, int count, int context) {
+        int[] out = new int[count];
+        int n = 0;
+        // hunks come in order, so widening and merging is one pass
+        for (int i = 0; i < count; i += 2) {
+            int from = Math.max(1, ranges[i] - context);
+            int to = ranges[i + 1] + context;
+            if (n > 0 && from <= out[n - 1] + 1) {
+                out[n - 1] = Math.max(out[n - 1], to);
+            } else {
+                out[n++] = from;
+                out[n++] = to;
+            }
+        }
+        return new ChangedLines(Arrays.copyOf(out, n));
+    }
+
+    /** {@code b/path}, possibly quoted; null for {@code /dev/null}. */
+    private static String path(String spec) {
+        if (spec.startsWith("\"") && spec.endsWith("\"")) {
+            spec = spec.substring(1, spec.length() - 1).replace("\\\"", "\"").replace("\\\\", "\\");
+        }
+        if (spec.equals("/dev/null")) return null;
+        return spec.startsWith("b/") ? spec.substring(2) : spec;
+    }
+
+    // ---------- Process helpers ----------
+
+    private static String run(Path dir, String... args) throws IOException {
+        List<String> cmd = List.of(args);
+        Process p = start(dir, cmd);
+        CompletableFuture<String> errors = drain(p.getErrorStream());
+        String out;
+        try (InputStream in = p.getInputStream()) {
+            out = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        finish(p, cmd, errors);
+        return out;
+    }
+
+    private static Process start(Path dir, List<String> args) throws IOException {
+        List<String> cmd = new ArrayList<>(args.size() + 1);
+        cmd.add("git");
+        cmd.addAll(args);
+        return new ProcessBuilder(cmd).directory(dir.toFile()).start();
+    }
+
+    private static CompletableFuture<String> drain(InputStream err) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (err) {
+                return new String(err.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                return "";
+            }
+        });
+    }
+
+    private static void finish(Process p, List<String> cmd, CompletableFuture<String> errors) throws IOException {
+        int exit;
+        try {
+            exit = p.waitFor();
+        } catch (InterruptedException e) {
+            p.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for git", e);
+        }
+        if (exit != 0) {
+            throw new IOException("git " + String.join(" ", cmd) + " failed (" + exit + "): " + errors.join().trim());
+        }
+    }
+}
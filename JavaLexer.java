@@ -0,0 +1,276 @@
+package com.ai.reviewer.analyzer;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Single-pass tokenizer for Java source.
+ *
+ * The lexer walks the text exactly once, classifying comments, string and
+ * char literals, identifiers, numbers and brackets, and hands each token to
+ * the listeners that subscribed to its kind. Whitespace is skipped and never
+ * reported, so two tokens with consecutive {@link Token#index()} values are
+ * separated by whitespace only.
+ */
+public final class JavaLexer {
+
+    public enum TokenKind {
+        LINE_COMMENT,
+        BLOCK_COMMENT,
+        STRING,
+        CHAR,
+        IDENTIFIER,
+        NUMBER,
+        OPEN_BRACKET,
+        CLOSE_BRACKET,
+        OPERATOR
+    }
+
+    /**
+     * Receives tokens of the kinds it subscribed to, in source order.
+     */
+    public interface TokenListener {
+        void onToken(Token token);
+
+        /** Called once after the last token; {@code length} is the text length. */
+        default void onEnd(int length) {}
+    }
+
+    /**
+     * Flyweight describing the current token. The same instance is reused for
+     * every token, so listeners must copy out whatever they want to keep.
+     */
+    public static final class Token {
+        private CharSequence text;
+        private TokenKind kind;
+        private int start;
+        private int end;
+        private int index;
+        private boolean terminated;
+
+        public TokenKind kind() { return kind; }
+        public int start() { return start; }
+        public int end() { return end; }
+        public int length() { return end - start; }
+        /** Position of this token in the stream, counting every kind. */
+        public int index() { return index; }
+        /** False for a string, char literal or block comment that runs off the end of the text. */
+        public boolean terminated() { return terminated; }
+        public CharSequence text() { return text; }
+        public char firstChar() { return text.charAt(start); }
+
+        public boolean is(String s) {
+            if (s.length() != end - start) return false;
+            for (int i = 0; i < s.length(); i++) {
+                if (text.charAt(start + i) != s.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        public String image() {
+            return text.subSequence(start, end).toString();
+        }
+    }
+
+    private static final TokenListener[] NONE = new TokenListener[0];
+
+    private final TokenListener[][] byKind = new TokenListener[TokenKind.values().length][];
+    private TokenListener[] all = NONE;
+    private boolean stopped;
+
+    public JavaLexer() {
+        Arrays.fill(byKind, NONE);
+    }
+
+    public JavaLexer subscribe(TokenListener listener, Set<TokenKind> kinds) {
+        for (TokenKind kind : kinds) {
+            byKind[kind.ordinal()] = append(byKind[kind.ordinal()], listener);
+        }
+        all = append(all, listener);
+        return this;
+    }
+
+    public JavaLexer subscribeAll(TokenListener listener) {
+        return subscribe(listener, EnumSet.allOf(TokenKind.class));
+    }
+
+    /**
+     * Tokenizes {@code text} and dispatches every token to its subscribers.
+     */
+    public void scan(CharSequence text) {
+        scan(text, 0, 0);
+    }
+
+    /**
+     * Tokenizes {@code text} from {@code from}, which must be a token boundary
+     * (not inside a comment or literal), numbering tokens from
+     * {@code firstIndex}. Returns false if a listener called {@link #stop()},
+     * in which case {@link TokenListener#onEnd} is not delivered.
+     */
+    public boolean scan(CharSequence text, int from, int firstIndex) {
+        stopped = false;
+        Token token = new Token();
+        token.text = text;
+        int n = text.length();
+        int i = from;
+        int index = firstIndex;
+        while (i < n) {
+            char c = text.charAt(i);
+            if (c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f') {
+                i++;
+                continue;
+            }
+            int start = i;
+            boolean terminated = true;
+            TokenKind kind;
+            char next = i + 1 < n ? text.charAt(i + 1) : 0;
+            if (c == '/' && next == '/') {
+                kind = TokenKind.LINE_COMMENT;
+                i += 2;
+                while (i < n && text.charAt(i) != '\n') i++;
+            } else if (c == '/' && next == '*') {
+                kind = TokenKind.BLOCK_COMMENT;
+                int j = indexOf(text, "*/", i + 2);
+                terminated = j != -1;
+                i = terminated ? j + 2 : n;
+            } else if (c == '"') {
+                kind = TokenKind.STRING;
+                int j = next == '"' && i + 2 < n && text.charAt(i + 2) == '"'
+                    ? skipTextBlock(text, i)
+                    : skipQuoted(text, i, c);
+                terminated = j != -1;
+                i = terminated ? j : n;
+            } else if (c == '\'') {
+                kind = TokenKind.CHAR;
+                int j = skipQuoted(text, i, c);
+                terminated = j != -1;
+                i = terminated ? j : n;
+            } else if (isIdentifierStart(c)) {
+                kind = TokenKind.IDENTIFIER;
+                i++;
+                while (i < n && isIdentifierPart(text.charAt(i))) i++;
+            } else if (isDigit(c) || (c == '.' && isDigit(next))) {
+                kind = TokenKind.NUMBER;
+                i = skipNumber(text, i);
+            } else if (c == '(' || c == '{' || c == '[') {
+                kind = TokenKind.OPEN_BRACKET;
+                i++;
+            } else if (c == ')' || c == '}' || c == ']') {
+                kind = TokenKind.CLOSE_BRACKET;
+                i++;
+            } else {
+                kind = TokenKind.OPERATOR;
+                i++;
+            }
+
+            TokenListener[] listeners = byKind[kind.ordinal()];
+            if (listeners.length > 0) {
+                token.kind = kind;
+                token.start = start;
+                token.end = i;
+                token.index = index;
+                token.terminated = terminated;
+                for (TokenListener l : listeners) {
+                    l.onToken(token);
+                    if (stopped) return false;
+                }
+            }
+            index++;
+        }
+        for (TokenListener l : all) l.onEnd(n);
+        return true;
+    }
+
+    /**
+     * Ends the current scan. Listeners subscribed after the one calling this
+     * do not see the current token.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    // ---------- Helpers ----------
+
+    /** Returns the index just past the closing quote, or -1 if the literal is never closed. */
+    private static int skipQuoted(CharSequence s, int start, char quote) {
+        int i = start + 1;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c == '\\') { i += 2; continue; }
+            if (c == quote) return i + 1;
+            i++;
+        }
+        return -1;
+    }
+
+    private static int skipTextBlock(CharSequence s, int start) {
+        int i = start + 3;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c == '\\') { i += 2; continue; }
+            if (c == '"' && i + 2 < s.length() && s.charAt(i + 1) == '"' && s.charAt(i + 2) == '"') {
+                return i + 3;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static int skipNumber(CharSequence s, int start) {
+        int i = start;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (isDigit(c) || Character.isLetter(c) || c == '_' || c == '.') {
+                i++;
+            } else if ((c == '+' || c == '-') && isExponent(s.charAt(i - 1), s, start)) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static boolean isExponent(char prev, CharSequence s, int start) {
+        boolean hex = s.length() > start + 1 && s.charAt(start) == '0'
+            && (s.charAt(start + 1) == 'x' || s.charAt(start + 1) == 'X');
+        return hex ? (prev == 'p' || prev == 'P') : (prev == 'e' || prev == 'E');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Outside literals and comments Java only allows non-ASCII in names, so
+     * every char from {@code 0x80} up counts: the chars of a String and the
+     * raw UTF-8 bytes of a {@link com.ai.reviewer.util.MappedSource} then
+     * split into the same tokens.
+     */
+    private static boolean isIdentifierStart(char c) {
+        return c >= 0x80 || Character.isJavaIdentifierStart(c);
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return c >= 0x80 || Character.isJavaIdentifierPart(c);
+    }
+
+    private static int indexOf(CharSequence s, String needle, int from) {
+        int last = s.length() - needle.length();
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int k = 0; k < needle.length(); k++) {
+                if (s.charAt(i + k) != needle.charAt(k)) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static TokenListener[] append(TokenListener[] arr, TokenListener l) {
+        TokenListener[] copy = Arrays.copyOf(arr, arr.length + 1);
+        copy[arr.length] = l;
+        return copy;
+    }
+}
@@ -0,0 +1,66 @@
+package com.ai.reviewer.util;
+
+import com.google.gson.Gson;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes an object field by field as Gson's reflective adapter would: the
+ * same names, after {@code @SerializedName} and the Gson's naming strategy,
+ * in the same order, but through getters instead of reflection per value.
+ *
+ * The writers are keyed by Java field name. If the class serializes a field
+ * no writer covers, or a writer names a field the class does not have,
+ * {@link #of} returns null and the caller should keep Gson's own adapter, so
+ * a hand-written adapter can never drift from the model's wire format.
+ */
+public final class JsonFields<T> {
+
+    /** Writes one field's value of {@code owner}. */
+    public interface Value<T> {
+        void write(JsonWriter out, T owner) throws IOException;
+    }
+
+    private final String[] names;
+    private final List<Value<T>> values;
+
+    private JsonFields(String[] names, List<Value<T>> values) {
+        this.names = names;
+        this.values = values;
+    }
+
+    /** Null if {@code writers} do not cover exactly the fields Gson serializes for {@code type}. */
+    @SuppressWarnings("deprecation") // excluder() is the only way to ask which fields this Gson skips
+    public static <T> JsonFields<T> of(Gson gson, Class<T> type, Map<String, Value<T>> writers) {
+        List<String> names = new ArrayList<>();
+        List<Value<T>> values = new ArrayList<>();
+        Map<String, Value<T>> left = new HashMap<>(writers);
+        // Gson's order: the class's own fields, then each superclass's
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field f : c.getDeclaredFields()) {
+                if (gson.excluder().excludeField(f, true)) continue;
+                Value<T> value = left.remove(f.getName());
+                if (value == null) return null;
+                SerializedName annotation = f.getAnnotation(SerializedName.class);
+                names.add(annotation != null ? annotation.value() : gson.fieldNamingStrategy().translateName(f));
+                values.add(value);
+            }
+        }
+        return left.isEmpty() ? new JsonFields<>(names.toArray(new String[0]), values) : null;
+    }
+
+    public void write(JsonWriter out, T value) throws IOException {
+        out.beginObject();
+        for (int i = 0; i < names.length; i++) {
+            out.name(names[i]);
+            values.get(i).write(out, value);
+        }
+        out.endObject();
+    }
+}
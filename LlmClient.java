@@ -0,0 +1,17 @@
+package com.ai.reviewer.agent;
+
+import java.io.IOException;
+
+/**
+ * A chat model the {@link LlmReviewStage} sends its prompts to. Implement it
+ * directly to run the stage without a network, or point an
+ * {@link OpenAiClient} at a local stub server.
+ */
+public interface LlmClient {
+
+    /** Names the model; part of every cache key, so switching models misses. */
+    String model();
+
+    /** Returns the model's reply to {@code prompt} under the {@code system} instructions. */
+    String complete(String system, String prompt) throws IOException, InterruptedException;
+}
@@ -0,0 +1,298 @@
+package com.ai.reviewer.agent;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Second opinion from a chat model on the code the static rules flagged.
+ *
+ * Only flagged lines are sent, each with a few lines of context, so the
+ * model's cost follows the number of findings rather than the size of the
+ * tree. Identical snippets (same code, same findings) are sent once however
+ * many files they appear in, and answers are cached by snippet hash in a
+ * {@link ReviewCache}, so an unchanged snippet is never sent again. The
+ * rest are packed several to a prompt up to a token budget, and the
+ * prompts run a few at a time.
+ */
+public class LlmReviewStage {
+
+    public static final int DEFAULT_PROMPT_TOKENS = 3000;
+    public static final int DEFAULT_CONTEXT = 3;
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    /** Bump whenever the prompt or the answer format changes, so cached answers are dropped. */
+    private static final String PROMPT_VERSION = "1";
+    /** A snippet grown past this many lines by merging nearby findings is split. */
+    private static final int MAX_SNIPPET_LINES = 40;
+    /** Prompt tokens per snippet besides its text: header, fences, findings. */
+    private static final int SNIPPET_OVERHEAD = 24;
+
+    static final String SYSTEM = "You are a senior Java code reviewer. Each numbered snippet below was flagged"
+        + " by a static checker; its findings are listed above it. For each snippet, write one short review"
+        + " comment on the real problem, if there is one, or an empty string if the code is fine."
+        + " Answer with a single JSON object mapping each snippet number, as a string, to its comment.";
+
+    private final LlmClient client;
+    private final ReviewCache cache;
+    private final int promptTokens;
+    private final int context;
+    private final int concurrency;
+
+    public LlmReviewStage(LlmClient client, ReviewCache cache) {
+        this(client, cache, DEFAULT_PROMPT_TOKENS, DEFAULT_CONTEXT, DEFAULT_CONCURRENCY);
+    }
+
+    /** {@code cache} may be null; snippets are then still deduplicated within one call. */
+    public LlmReviewStage(LlmClient client, ReviewCache cache, int promptTokens, int context, int concurrency) {
+        if (promptTokens < 1 || context < 0 || concurrency < 1) {
+            throw new IllegalArgumentException("promptTokens and concurrency must be positive, context not negative");
+        }
+        this.client = client;
+        this.cache = cache;
+        this.promptTokens = promptTokens;
+        this.context = context;
+        this.concurrency = concurrency;
+    }
+
+    /** Reviews the flagged lines of all {@code sources} together. */
+    public Result review(List<Source> sources) throws InterruptedException {
+        Result result = new Result();
+        Map<String, Snippet> unique = new LinkedHashMap<>();
+        for (Source source : sources) {
+            for (Snippet s : snippets(source)) {
+                result.snippets++;
+                Snippet seen = unique.putIfAbsent(s.key, s);
+                (seen == null ? s : seen).places.add(new Note(source.path, s.firstLine, s.lastLine, null));
+            }
+        }
+        result.unique = unique.size();
+
+        List<Snippet> pending = new ArrayList<>();
+        for (Snippet s : unique.values()) {
+            s.answer = cache == null ? null : cache.get(s.key);
+            if (s.answer != null) {
+                result.cached++;
+            } else {
+                pending.add(s);
+            }
+        }
+
+        List<List<Snippet>> batches = pack(pending);
+        result.requests = batches.size();
+        if (!batches.isEmpty()) {
+            try (ParallelReviewEngine engine = new ParallelReviewEngine(Math.min(concurrency, batches.size()))) {
+                engine.reviewAsCompleted(batches, batch -> client.complete(SYSTEM, prompt(batch)),
+                    (index, batch, reply, error) -> {
+                        if (error != null) {
+                            result.errors.add(error.getClass().getSimpleName() + ": " + error.getMessage());
+                        } else {
+                            accept(batch, reply, result);
+                        }
+                    });
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                // the handler records errors itself and never throws
+                throw new IllegalStateException(e);
+            }
+        }
+
+        for (Snippet s : unique.values()) {
+            if (s.answer == null || s.answer.isEmpty()) continue;
+            for (Note place : s.places) {
+                result.notes.add(new Note(place.path, place.firstLine, place.lastLine, s.answer));
+            }
+        }
+        result.notes.sort(Comparator.comparing(Note::path).thenComparingInt(Note::firstLine));
+        return result;
+    }
+
+    /** Windows of {@code context} lines around the flagged lines, merged where they touch. */
+    private List<Snippet> snippets(Source source) {
+        List<Snippet> out = new ArrayList<>();
+        if (source.flags.isEmpty()) return out;
+        String[] lines = source.text.split("\n", -1);
+        int first = -1, last = -1;
+        List<String> findings = new ArrayList<>();
+        for (Map.Entry<Integer, List<String>> e : source.flags.entrySet()) {
+            int line = e.getKey();
+            if (line < 1 || line > lines.length) continue;
+            int from = Math.max(1, line - context), to = Math.min(lines.length, line + context);
+            if (first >= 0 && (from > last + 1 || to - first >= MAX_SNIPPET_LINES)) {
+                out.add(snippet(lines, first, last, findings));
+                first = -1;
+                findings = new ArrayList<>();
+            }
+            if (first < 0) first = from;
+            last = Math.max(last, to);
+            for (String message : e.getValue()) findings.add("line " + (line - first + 1) + ": " + message);
+        }
+        if (first >= 0) out.add(snippet(lines, first, last, findings));
+        return out;
+    }
+
+    private Snippet snippet(String[] lines, int first, int last, List<String> findings) {
+        StringBuilder code = new StringBuilder();
+        for (int i = first; i <= last; i++) code.append(lines[i - 1]).append('\n');
+        // findings are numbered from the snippet's first line, so moved code still hits
+        String findingText = String.join("\n", findings);
+        String key = ReviewCache.key(code, "llm:" + client.model() + "\n" + findingText, PROMPT_VERSION);
+        return new Snippet(key, first, last, code.toString(), findingText);
+    }
+
+    /** Consecutive runs of snippets whose estimated size fits the budget; a larger one goes alone. */
+    private List<List<Snippet>> pack(List<Snippet> pending) {
+        List<List<Snippet>> batches = new ArrayList<>();
+        List<Snippet> batch = new ArrayList<>();
+        int tokens = estimateTokens(SYSTEM);
+        int base = tokens;
+        for (Snippet s : pending) {
+            int size = estimateTokens(s.code) + estimateTokens(s.findings) + SNIPPET_OVERHEAD;
+            if (!batch.isEmpty() && tokens + size > promptTokens) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                tokens = base;
+            }
+            batch.add(s);
+            tokens += size;
+        }
+        if (!batch.isEmpty()) batches.add(batch);
+        return batches;
+    }
+
+    /** Rough count for budgeting: about four characters per token for code and English. */
+    static int estimateTokens(CharSequence text) {
+        return (text.length() + 3) / 4;
+    }
+
+    private static String prompt(List<Snippet> batch) {
+        StringBuilder p = new StringBuilder();
+        for (int i = 0; i < batch.size(); i++) {
+            Snippet s = batch.get(i);
+            p.append("Snippet ").append(i + 1).append("\nFindings:\n").append(s.findings)
+                .append("\n```java\n").append(s.code).append("```\n\n");
+        }
+        return p.toString();
+    }
+
+    /** Takes the answers out of {@code reply}; snippets it leaves out stay unanswered and uncached. */
+    private void accept(List<Snippet> batch, String reply, Result result) {
+        JsonObject answers;
+        try {
+            answers = JsonParser.parseString(stripFence(reply)).getAsJsonObject();
+        } catch (RuntimeException e) {
+            result.errors.add("unreadable reply: " + e.getMessage());
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            JsonElement answer = answers.get(String.valueOf(i + 1));
+            if (answer == null || !answer.isJsonPrimitive()) continue;
+            Snippet s = batch.get(i);
+            s.answer = answer.getAsString().trim();
+            if (cache == null) continue;
+            try {
+                cache.put(s.key, s.answer);
+            } catch (IOException e) {
+                result.errors.add("cache write failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Models asked for JSON still sometimes wrap it in a Markdown fence. */
+    private static String stripFence(String reply) {
+        String r = reply.trim();
+        if (!r.startsWith("```")) return r;
+        int start = r.indexOf('\n');
+        int end = r.lastIndexOf("```");
+        return start < 0 || end <= start ? r : r.substring(start + 1, end);
+    }
+
+    /** A file's text and the lines the static rules flagged in it. */
+    public static final class Source {
+        private final String path;
+        private final String text;
+        private final TreeMap<Integer, List<String>> flags = new TreeMap<>();
+
+        public Source(String path, String text) {
+            this.path = path;
+            this.text = text;
+        }
+
+        /** Records a static finding on 1-based {@code line}. */
+        public Source flag(int line, String message) {
+            flags.computeIfAbsent(line, l -> new ArrayList<>()).add(message);
+            return this;
+        }
+
+        public String path() { return path; }
+    }
+
+    private static final class Snippet {
+        final String key;
+        final int firstLine, lastLine;
+        final String code;
+        final String findings;
+        final List<Note> places = new ArrayList<>();
+        /** Null until answered; empty when the model found nothing. */
+        String answer;
+
+        Snippet(String key, int firstLine, int lastLine, String code, String findings) {
+            this.key = key;
+            this.firstLine = firstLine;
+            this.lastLine = lastLine;
+            this.code = code;
+            this.findings = findings;
+        }
+    }
+
+    /** The model's comment on lines {@code firstLine..lastLine} of {@code path}. */
+    public static final class Note {
+        private final String path;
+        private final int firstLine, lastLine;
+        private final String comment;
+
+        Note(String path, int firstLine, int lastLine, String comment) {
+            this.path = path;
+            this.firstLine = firstLine;
+            this.lastLine = lastLine;
+            this.comment = comment;
+        }
+
+        public String path() { return path; }
+        public int firstLine() { return firstLine; }
+        public int lastLine() { return lastLine; }
+        public String comment() { return comment; }
+    }
+
+    /** Notes of one {@link #review} call, with how much work the model was spared. */
+    public static final class Result {
+        private final List<Note> notes = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+        private int snippets, unique, cached, requests;
+
+        public List<Note> notes() { return notes; }
+        /** Failed requests and unreadable replies; their snippets have no notes. */
+        public List<String> errors() { return errors; }
+        /** Snippets cut from all sources, duplicates included. */
+        public int snippets() { return snippets; }
+        public int unique() { return unique; }
+        /** Unique snippets answered from the cache. */
+        public int cached() { return cached; }
+        /** Prompts sent to the model. */
+        public int requests() { return requests; }
+
+        @Override
+        public String toString() {
+            return String.format("snippets=%d unique=%d cached=%d requests=%d errors=%d",
+                snippets, unique, cached, requests, errors.size());
+        }
+    }
+}
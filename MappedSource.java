@@ -0,0 +1,108 @@
+package com.ai.reviewer.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A source file memory-mapped through NIO and exposed as a {@link CharSequence},
+ * so the lexer, rules and line index can run over it without the file ever
+ * being copied onto the heap.
+ *
+ * Each byte is one char (ISO-8859-1). Positions are therefore byte offsets,
+ * and everything structural in Java source (brackets, quotes, newlines,
+ * ASCII identifiers) reads exactly as it would from a String. Non-ASCII
+ * characters show up as their individual UTF-8 bytes, all at or above
+ * {@code 0x80}, which the lexer takes as identifier parts just as it takes
+ * the chars they encode. {@link #toString()} decodes, so a snippet cut out
+ * with {@link #subSequence} reads as written.
+ *
+ * Malformed UTF-8 is replaced when decoded, never reported; {@link #read}
+ * reads small files the same way, so a file reviews alike on both paths.
+ *
+ * The mapping stays valid until the buffer is garbage collected. Closing
+ * the source releases the file channel.
+ */
+public final class MappedSource implements CharSequence, AutoCloseable {
+
+    private final FileChannel channel;
+    private final ByteBuffer bytes;
+
+    private MappedSource(FileChannel channel, ByteBuffer bytes) {
+        this.channel = channel;
+        this.bytes = bytes;
+    }
+
+    public static MappedSource map(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to map: " + file + " (" + size + " bytes)");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new MappedSource(channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int length() {
+        return bytes.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes.get(index) & 0xFF);
+    }
+
+    /** A view over {@code [start, end)} sharing the same mapping. */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length() || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length());
+        }
+        return new MappedSource(null, bytes.duplicate().position(start).limit(end).slice());
+    }
+
+    /**
+     * Reads {@code file} onto the heap as UTF-8, replacing malformed input
+     * like {@link #decode} rather than failing like {@link Files#readString}.
+     */
+    public static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    /** The file as text to review: the mapping itself, never a decoded copy. */
+    public CharSequence text() {
+        return this;
+    }
+
+    /** The raw bytes of the file, as a read-only view. */
+    public ByteBuffer bytes() {
+        return bytes.asReadOnlyBuffer();
+    }
+
+    /** Decodes {@code [start, end)} as UTF-8, replacing malformed input. */
+    public String decode(int start, int end) {
+        return StandardCharsets.UTF_8.decode(bytes.duplicate().position(start).limit(end)).toString();
+    }
+
+    /** The bytes decoded as UTF-8; shorter than {@link #length()} when any are not ASCII. */
+    @Override
+    public String toString() {
+        return decode(0, length());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) channel.close();
+    }
+}
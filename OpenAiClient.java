@@ -0,0 +1,90 @@
+package com.ai.reviewer.agent;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * {@link LlmClient} for an OpenAI-compatible chat completions endpoint. The
+ * endpoint and the {@link HttpClient} are both supplied by the caller, so a
+ * local stub server or a proxy can stand in for the real API.
+ */
+public class OpenAiClient implements LlmClient {
+
+    public static final URI DEFAULT_ENDPOINT = URI.create("https://api.openai.com/v1/chat/completions");
+    /** The model the n8n review workflow uses. */
+    public static final String DEFAULT_MODEL = "gpt-4.1-mini";
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+    private final HttpClient http;
+    private final URI endpoint;
+    private final String apiKey;
+    private final String model;
+
+    public OpenAiClient(URI endpoint, String apiKey, String model) {
+        this(HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build(), endpoint, apiKey, model);
+    }
+
+    /** {@code apiKey} may be null for endpoints that need none. */
+    public OpenAiClient(HttpClient http, URI endpoint, String apiKey, String model) {
+        this.http = http;
+        this.endpoint = endpoint;
+        this.apiKey = apiKey;
+        this.model = model;
+    }
+
+    @Override
+    public String model() {
+        return model;
+    }
+
+    @Override
+    public String complete(String system, String prompt) throws IOException, InterruptedException {
+        JsonObject body = new JsonObject();
+        body.addProperty("model", model);
+        body.addProperty("temperature", 0);
+        JsonArray messages = new JsonArray();
+        messages.add(message("system", system));
+        messages.add(message("user", prompt));
+        body.add("messages", messages);
+        JsonObject format = new JsonObject();
+        format.addProperty("type", "json_object");
+        body.add("response_format", format);
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(endpoint)
+            .timeout(TIMEOUT)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body.toString()));
+        if (apiKey != null) request.header("Authorization", "Bearer " + apiKey);
+        HttpResponse<String> response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            String text = response.body();
+            throw new IOException(endpoint + " answered " + response.statusCode() + ": "
+                + (text.length() > 200 ? text.substring(0, 200) + "..." : text));
+        }
+        try {
+            JsonElement content = JsonParser.parseString(response.body()).getAsJsonObject()
+                .getAsJsonArray("choices").get(0).getAsJsonObject()
+                .getAsJsonObject("message").get("content");
+            if (content == null || content.isJsonNull()) throw new IOException("empty reply from " + endpoint);
+            return content.getAsString();
+        } catch (RuntimeException e) {
+            throw new IOException("unexpected reply from " + endpoint + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static JsonObject message(String role, String content) {
+        JsonObject m = new JsonObject();
+        m.addProperty("role", role);
+        m.addProperty("content", content);
+        return m;
+    }
+}
@@ -0,0 +1,181 @@
+package com.ai.reviewer.agent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reviews many files in parallel on a work-stealing pool.
+ *
+ * At most {@code maxInFlight} files are being read, reviewed or waiting to be
+ * reported at any time, so a slow file cannot cause the rest of the tree to
+ * pile up in memory. Results are handed to the caller on the calling thread
+ * in the same order as the input list, regardless of completion order.
+ */
+public class ParallelReviewEngine implements AutoCloseable {
+
+    /** Reviews one file; called concurrently from pool threads. */
+    public interface FileReviewer<R> {
+        R review(Path file) throws Exception;
+    }
+
+    /** Receives each outcome in input order; exactly one of result/error is non-null. */
+    public interface ResultHandler<R> {
+        void handle(Path file, R result, Exception error);
+    }
+
+    /** Reviews one item of any kind, e.g. an inline source; called from pool threads. */
+    public interface ItemReviewer<T, R> {
+        R review(T item) throws Exception;
+    }
+
+    /** Receives each outcome as it completes, with the item's position in the input. */
+    public interface CompletionHandler<T, R> {
+        void handle(int index, T item, R result, Exception error) throws Exception;
+    }
+
+    private final ForkJoinPool pool;
+    private final int maxInFlight;
+
+    public ParallelReviewEngine(int parallelism) {
+        this(parallelism, parallelism * 2);
+    }
+
+    public ParallelReviewEngine(int parallelism, int maxInFlight) {
+        if (parallelism < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("parallelism and maxInFlight must be positive");
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.maxInFlight = maxInFlight;
+    }
+
+    public static int defaultParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Lists the regular files under {@code root} whose path relative to the
+     * root matches {@code glob}, in a stable order. A plain file is returned
+     * as is.
+     */
+    public static List<Path> collect(Path root, String glob) throws IOException {
+        if (Files.isRegularFile(root)) return List.of(root);
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        try (Stream<Path> walk = Files.walk(root)) {
+            return walk.filter(Files::isRegularFile)
+                .filter(p -> matcher.matches(root.relativize(p)))
+                .sorted()
+                .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public <R> void reviewAll(List<Path> files, FileReviewer<R> reviewer, ResultHandler<R> handler)
+            throws InterruptedException {
+        Deque<Pending<R>> window = new ArrayDeque<>();
+        for (Path file : files) {
+            while (window.size() >= maxInFlight
+                    || (!window.isEmpty() && window.peek().task.isDone())) {
+                window.poll().deliver(handler);
+            }
+            window.add(new Pending<>(file, pool.submit(() -> reviewer.review(file))));
+        }
+        while (!window.isEmpty()) {
+            window.poll().deliver(handler);
+        }
+    }
+
+    /**
+     * Like {@link #reviewAll}, but hands each outcome over as soon as it is
+     * ready instead of in input order, for callers that stream results. The
+     * same in-flight bound applies. An exception from the handler stops
+     * the run; reviews already submitted still finish on the pool.
+     */
+    public <T, R> void reviewAsCompleted(List<T> items, ItemReviewer<T, R> reviewer,
+                                         CompletionHandler<T, R> handler) throws Exception {
+        CompletionService<Done<T, R>> done = new ExecutorCompletionService<>(pool);
+        int submitted = 0;
+        int delivered = 0;
+        while (delivered < items.size()) {
+            while (submitted < items.size() && submitted - delivered < maxInFlight) {
+                int index = submitted++;
+                T item = items.get(index);
+                done.submit(() -> {
+                    try {
+                        return new Done<>(index, item, reviewer.review(item), null);
+                    } catch (Exception e) {
+                        return new Done<>(index, item, null, e);
+                    }
+                });
+            }
+            Future<Done<T, R>> next = done.take();
+            Done<T, R> d;
+            try {
+                d = next.get();
+            } catch (ExecutionException e) {
+                // only Errors escape the task; let them surface here
+                Throwable cause = e.getCause();
+                if (cause instanceof Error) throw (Error) cause;
+                throw e;
+            }
+            delivered++;
+            handler.handle(d.index, d.item, d.result, d.error);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private static class Pending<R> {
+        final Path file;
+        final ForkJoinTask<R> task;
+
+        Pending(Path file, ForkJoinTask<R> task) {
+            this.file = file;
+            this.task = task;
+        }
+
+        void deliver(ResultHandler<R> handler) throws InterruptedException {
+            R result;
+            try {
+                result = task.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                handler.handle(file, null, cause instanceof Exception ? (Exception) cause : e);
+                return;
+            }
+            handler.handle(file, result, null);
+        }
+    }
+
+    private static class Done<T, R> {
+        final int index;
+        final T item;
+        final R result;
+        final Exception error;
+
+        Done(int index, T item, R result, Exception error) {
+            this.index = index;
+            this.item = item;
+            this.result = result;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lightweight entry point for pre-commit hooks, where a review takes a few
+ * milliseconds and JVM startup is most of the run. It reviews the given
+ * files one after another on the main thread and prints the same report as
+ * {@link CodeReviewerAgent1}, but starts no thread pool and never touches
+ * the cache, findings store, git or the web server's classes.
+ * Non-Java and missing paths are skipped, so a hook can pass the staged
+ * file list as is. When a {@link ReviewDaemon} runs on a directory
+ * holding all the files, e.g. {@code src/} of the current one, the reports
+ * come from it instead, already warm.
+ *
+ * Exits with 0 when nothing was found, 1 when there are findings and 2 when
+ * a file could not be read. For the fastest start, run it on the AppCDS
+ * archive the {@code appcds} Maven profile builds, with the same jar on the
+ * class path it was built from (CDS does not accept class directories):
+ * <pre>
+ * java -XX:SharedArchiveFile=target/quick-review.jsa -XX:TieredStopAtLevel=1 \
+ *     -cp target/code-reviewer-1.0-SNAPSHOT.jar QuickReview $(git diff --cached --name-only)
+ * </pre>
+ */
+public class QuickReview {
+
+    public static void main(String[] args) throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            Path p = Path.of(arg);
+            if (arg.endsWith(".java") && Files.isRegularFile(p)) files.add(p);
+        }
+        int status = files.isEmpty() ? 0 : viaDaemon(files, out);
+        if (status >= 0) {
+            out.flush();
+            System.exit(status);
+        }
+        status = 0;
+        for (Path p : files) {
+            try {
+                if (CodeReviewerAgent1.reviewFile(p, out) > 0) status = Math.max(status, 1);
+            } catch (IOException e) {
+                out.write("Error reviewing " + p + ": " + e.getMessage() + System.lineSeparator());
+                status = 2;
+            }
+        }
+        out.flush();
+        System.exit(status);
+    }
+
+    /**
+     * Has the daemon of the nearest directory above the first file that has
+     * a daemon socket review {@code files}, copying its reports to {@code out}.
+     * Returns the exit status, or -1 when no daemon there covers all the
+     * files or none answered, and nothing was written.
+     */
+    private static int viaDaemon(List<Path> files, Writer out) {
+        Path socketFile = socketFile(files.get(0).toAbsolutePath().normalize());
+        if (socketFile == null) return -1;
+        Path root = socketFile.getParent();
+        for (Path p : files) {
+            // the daemon refuses files outside its workspace
+            if (!p.toAbsolutePath().normalize().startsWith(root)) return -1;
+        }
+        try (SocketChannel socket = SocketChannel.open(UnixDomainSocketAddress.of(socketFile))) {
+            Writer request = new OutputStreamWriter(Channels.newOutputStream(socket), StandardCharsets.UTF_8);
+            request.write("REVIEW\n");
+            for (Path p : files) request.write(p.toAbsolutePath() + "\n");
+            request.write("\n");
+            request.flush();
+            BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(socket), StandardCharsets.UTF_8));
+            // OK <findings> <errors>
+            String[] status = String.valueOf(in.readLine()).split(" ");
+            if (status.length != 3 || !status[0].equals("OK")) return -1;
+            in.transferTo(out);
+            return Integer.parseInt(status[2]) > 0 ? 2 : Integer.parseInt(status[1]) > 0 ? 1 : 0;
+        } catch (IOException | NumberFormatException e) {
+            // a socket left by a daemon that died, or one going down: review here instead
+            return -1;
+        }
+    }
+
+    /** The daemon socket in the nearest directory above {@code file}, or null. */
+    private static Path socketFile(Path file) {
+        for (Path dir = file.getParent(); dir != null; dir = dir.getParent()) {
+            Path p = dir.resolve(ReviewDaemon.SOCKET_FILE);
+            if (Files.exists(p, LinkOption.NOFOLLOW_LINKS)) return p;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,202 @@
+package com.ai.reviewer.agent;
+
+import com.ai.reviewer.util.MappedSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Persistent, size-bounded cache of serialized review results.
+ *
+ * Entries live as one file per key under a cache directory, so the cache
+ * survives between CI runs. A key is the SHA-256 of the reviewed content
+ * together with the rule set and config version that produced the result;
+ * changing any of them simply misses. When the total size exceeds
+ * {@code maxBytes}, the least recently used entries are deleted. Recency is
+ * kept in the files' modification times so it carries over to the next run.
+ *
+ * Safe to share between the worker threads of a {@link ParallelReviewEngine}.
+ */
+public class ReviewCache {
+
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final String SUFFIX = ".entry";
+
+    private final Path dir;
+    private final long maxBytes;
+    /** Entry name to size in bytes, least recently used first. */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private long hits;
+    private long misses;
+
+    public ReviewCache(Path dir) throws IOException {
+        this(dir, DEFAULT_MAX_BYTES);
+    }
+
+    public ReviewCache(Path dir, long maxBytes) throws IOException {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir);
+        load();
+    }
+
+    /**
+     * Builds the cache key for {@code content} reviewed under the given rule
+     * set and config version. Any of the parts changing gives a new key.
+     */
+    public static String key(CharSequence content, String ruleSet, String configVersion) {
+        MessageDigest md = sha256();
+        if (content instanceof MappedSource) {
+            // Same bytes a String read of the file would encode back to
+            md.update(((MappedSource) content).bytes());
+        } else {
+            md.update(content.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        md.update((byte) 0);
+        md.update(ruleSet.getBytes(StandardCharsets.UTF_8));
+        md.update((byte) 0);
+        md.update(configVersion.getBytes(StandardCharsets.UTF_8));
+        return hex(md.digest());
+    }
+
+    /** Returns the cached payload for {@code key}, or null on a miss. */
+    public String get(String key) {
+        String name = key + SUFFIX;
+        synchronized (this) {
+            if (entries.get(name) == null) {
+                misses++;
+                return null;
+            }
+        }
+        Path file = dir.resolve(name);
+        try {
+            String payload = Files.readString(file, StandardCharsets.UTF_8);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            synchronized (this) {
+                hits++;
+            }
+            return payload;
+        } catch (IOException e) {
+            // Deleted or corrupted behind our back: treat it as a miss
+            synchronized (this) {
+                forget(name);
+                misses++;
+            }
+            return null;
+        }
+    }
+
+    /** Stores {@code payload} under {@code key}, evicting old entries if needed. */
+    public void put(String key, String payload) throws IOException {
+        String name = key + SUFFIX;
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        Path tmp = Files.createTempFile(dir, key, ".tmp");
+        try {
+            Files.write(tmp, bytes);
+            Files.move(tmp, dir.resolve(name), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        synchronized (this) {
+            forget(name);
+            entries.put(name, (long) bytes.length);
+            totalBytes += bytes.length;
+            evict();
+        }
+    }
+
+    /**
+     * Returns the cached payload for {@code key}, computing and storing it on
+     * a miss. Two threads missing on the same key may both compute it.
+     */
+    public String computeIfAbsent(String key, Callable<String> compute) throws Exception {
+        String payload = get(key);
+        if (payload == null) {
+            payload = compute.call();
+            put(key, payload);
+        }
+        return payload;
+    }
+
+    public synchronized long hits() { return hits; }
+    public synchronized long misses() { return misses; }
+    public synchronized int size() { return entries.size(); }
+    public synchronized long totalBytes() { return totalBytes; }
+
+    // ---------- Helpers ----------
+
+    private void load() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(p -> p.getFileName().toString().endsWith(SUFFIX))
+                .collect(Collectors.toCollection(ArrayList::new));
+        }
+        Map<Path, Long> modified = new LinkedHashMap<>();
+        for (Path p : files) {
+            modified.put(p, Files.getLastModifiedTime(p).toMillis());
+        }
+        files.sort(Comparator.comparingLong(modified::get));
+        for (Path p : files) {
+            long size = Files.size(p);
+            entries.put(p.getFileName().toString(), size);
+            totalBytes += size;
+        }
+        evict();
+    }
+
+    private void forget(String name) {
+        Long size = entries.remove(name);
+        if (size != null) totalBytes -= size;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            try {
+                Files.deleteIfExists(dir.resolve(eldest.getKey()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            totalBytes -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,443 @@
+import com.ai.reviewer.agent.ParallelReviewEngine;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.net.ExtendedSocketOptions;
+
+/**
+ * Resident reviewer for a workspace, so hooks and editors get reports
+ * without paying for JVM startup and JIT warm-up on every run.
+ *
+ * On start it reviews every matching file under the workspace and keeps
+ * each file's report. A {@link WatchService} then follows the tree; events
+ * are collected until the tree has been quiet for {@link #DEBOUNCE_MILLIS}
+ * and only the files they touched are reviewed again, so a save or a
+ * branch switch costs one batch instead of one review per event. Version
+ * control and build output directories ({@link #SKIPPED}) are neither
+ * watched nor reviewed, so commits and builds do not wake the daemon.
+ *
+ * Reports are served on a Unix domain socket, {@value #SOCKET_FILE} in the
+ * workspace, that only its owner can use: the socket file is readable and
+ * writable by the owner alone, and where the platform reports the peer's
+ * user, a connection from anyone else is closed unanswered. A request is
+ * a command line, then
+ * for {@code REVIEW} one path per line, absolute or relative to the
+ * workspace, ended by an empty line or end of input; a path that leads
+ * out of the workspace, also through a symbolic link, counts as an error
+ * and is not read. The reply starts with
+ * {@code OK <findings> <errors>} followed by the same report
+ * {@link CodeReviewerAgent1} prints; a file changed since its last review
+ * is reviewed before answering. {@code STATUS} answers with counters.
+ * {@link QuickReview} asks the daemon when the files it is given are under
+ * a directory with the socket:
+ * <pre>
+ * java ReviewDaemon src/ &amp;
+ * printf 'REVIEW\nFoo.java\n' | nc -U src/.review-daemon
+ * </pre>
+ */
+public class ReviewDaemon implements AutoCloseable {
+
+    static final String SOCKET_FILE = ".review-daemon";
+    static final long DEBOUNCE_MILLIS = 150;
+    /** Directory names skipped anywhere below the workspace. */
+    static final Set<String> SKIPPED = Set.of(".git", ".hg", ".svn", ".idea", ".gradle", "target", "build",
+        "node_modules");
+
+    private final Path root;
+    /** {@link #root} with symbolic links resolved, to check where requested paths really lead. */
+    private final Path realRoot;
+    private final PathMatcher matcher;
+    private final ParallelReviewEngine engine;
+    private final WatchService watcher;
+    /** Bound once the workspace has been reviewed. */
+    private volatile ServerSocketChannel server;
+    /** Who may connect: the owner of the socket file, i.e. the user running the daemon. */
+    private UserPrincipal owner;
+    private final ExecutorService clients;
+    private final Map<WatchKey, Path> dirs = new ConcurrentHashMap<>();
+    /** Last review per absolute, normalized path. */
+    private final Map<Path, Entry> state = new ConcurrentHashMap<>();
+    private final LongAdder reviews = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private volatile boolean closed;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int parallelism = ParallelReviewEngine.defaultParallelism();
+        String glob = "**.java";
+        Path root = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--parallelism") && i + 1 < args.length) {
+                parallelism = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--glob") && i + 1 < args.length) {
+                glob = args[++i];
+            } else {
+                root = Path.of(args[i]);
+            }
+        }
+        if (root == null || !Files.isDirectory(root)) {
+            System.out.println("Usage: java ReviewDaemon [--parallelism N] [--glob PATTERN] <dir>");
+            return;
+        }
+        ReviewDaemon daemon = new ReviewDaemon(root, glob, parallelism);
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+        daemon.run();
+    }
+
+    public ReviewDaemon(Path root, String glob, int parallelism) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.realRoot = root.toRealPath();
+        this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        this.engine = new ParallelReviewEngine(parallelism);
+        this.watcher = FileSystems.getDefault().newWatchService();
+        AtomicInteger threads = new AtomicInteger();
+        this.clients = Executors.newFixedThreadPool(2, r -> {
+            Thread t = new Thread(r, "daemon-client-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Reviews the workspace, binds the socket and serves until closed. */
+    public void run() throws IOException, InterruptedException {
+        List<Path> files = new ArrayList<>();
+        watchTree(root, files);
+        reviewAll(files);
+        Thread watch = new Thread(this::watchLoop, "daemon-watch");
+        watch.setDaemon(true);
+        watch.start();
+        server = bind(socketFile());
+        owner = Files.getOwner(socketFile());
+        // closed while binding: close() may have missed the new socket
+        if (closed) closeServer();
+        System.out.println("Reviewed " + files.size() + " files; listening on " + socketFile());
+        while (!closed) {
+            SocketChannel socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                if (closed) break;
+                throw e;
+            }
+            clients.execute(() -> serve(socket));
+        }
+    }
+
+    public Path socketFile() {
+        return root.resolve(SOCKET_FILE);
+    }
+
+    /**
+     * Binds a socket at {@code path} for its owner only. A socket file no
+     * daemon answers on is left from one that died, and is replaced.
+     */
+    private static ServerSocketChannel bind(Path path) throws IOException {
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(path);
+        if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            if (answers(address)) throw new IOException("A daemon already serves " + path.getParent());
+            Files.delete(path);
+        }
+        // bound and locked down under a private name first, so clients never
+        // find a socket that is not yet listening or still open to others
+        Path pending = path.resolveSibling(path.getFileName() + "." + ProcessHandle.current().pid());
+        Files.deleteIfExists(pending);
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            server.bind(UnixDomainSocketAddress.of(pending));
+            if (Files.getFileStore(path.getParent()).supportsFileAttributeView("posix")) {
+                Files.setPosixFilePermissions(pending, PosixFilePermissions.fromString("rw-------"));
+            }
+            Files.move(pending, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            server.close();
+            Files.deleteIfExists(pending);
+            throw e;
+        }
+        return server;
+    }
+
+    private static boolean answers(UnixDomainSocketAddress address) {
+        try (SocketChannel socket = SocketChannel.open(address)) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** Whether {@code socket}'s peer runs as the daemon's user; true where the platform cannot tell. */
+    private boolean trusted(SocketChannel socket) {
+        try {
+            return socket.getOption(ExtendedSocketOptions.SO_PEERCRED).user().equals(owner);
+        } catch (UnsupportedOperationException | IOException e) {
+            // the socket file's permissions still apply
+            return true;
+        }
+    }
+
+    /** Registers {@code dir} and every directory below it, adding matching files to {@code files}. */
+    private void watchTree(Path dir, List<Path> files) throws IOException {
+        walk(dir, true, files);
+    }
+
+    /**
+     * Adds the matching files in {@code dir} and below to {@code files},
+     * leaving out {@link #SKIPPED} directories; with {@code register}, also
+     * watches every directory it enters.
+     */
+    private void walk(Path dir, boolean register, List<Path> files) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+                if (!d.equals(root) && SKIPPED.contains(d.getFileName().toString())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                if (register) {
+                    WatchKey key = d.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                    dirs.put(key, d);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path p, BasicFileAttributes attrs) {
+                if (matches(p)) files.add(p);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private boolean matches(Path p) {
+        return matcher.matches(root.relativize(p)) && Files.isRegularFile(p);
+    }
+
+    /** Collects events until the tree is quiet, then re-reviews what they touched. */
+    private void watchLoop() {
+        try {
+            while (!closed) {
+                Set<Path> touched = new LinkedHashSet<>();
+                boolean overflow = drain(watcher.take(), touched);
+                WatchKey key;
+                while ((key = watcher.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    overflow |= drain(key, touched);
+                }
+                if (overflow) {
+                    // events were lost: compare the whole tree against what was reviewed
+                    List<Path> files = new ArrayList<>();
+                    walk(root, false, files);
+                    touched.addAll(files);
+                    touched.addAll(state.keySet());
+                }
+                List<Path> changed = new ArrayList<>();
+                for (Path p : touched) {
+                    if (matches(p)) {
+                        changed.add(p);
+                    } else if (!Files.exists(p)) {
+                        // a deleted directory takes everything reviewed under it
+                        state.keySet().removeIf(k -> k.startsWith(p));
+                    }
+                }
+                reviewAll(changed);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closing
+        } catch (IOException e) {
+            System.err.println("Watching " + root + " failed: " + e.getMessage());
+        }
+    }
+
+    /** Adds the paths {@code key}'s events name to {@code touched}; true if events were lost. */
+    private boolean drain(WatchKey key, Set<Path> touched) throws IOException {
+        Path dir = dirs.get(key);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                overflow = true;
+                continue;
+            }
+            Path p = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                    && Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)) {
+                // a new directory may already hold files created before it was registered
+                List<Path> files = new ArrayList<>();
+                watchTree(p, files);
+                touched.addAll(files);
+            } else {
+                touched.add(p);
+            }
+        }
+        if (!key.reset()) dirs.remove(key);
+        return overflow;
+    }
+
+    /** Reviews {@code files} on the engine, skipping those unchanged since their last review. */
+    private void reviewAll(List<Path> files) throws InterruptedException {
+        List<Path> stale = new ArrayList<>();
+        for (Path p : files) {
+            if (stale(p)) stale.add(p);
+        }
+        engine.reviewAll(stale, this::review, (file, entry, error) -> {
+            if (error != null) System.err.println("Error reviewing " + file + ": " + error.getMessage());
+        });
+    }
+
+    private boolean stale(Path p) {
+        Entry e = state.get(p);
+        if (e == null) return true;
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+            return attrs.size() != e.size || attrs.lastModifiedTime().toMillis() != e.modified;
+        } catch (IOException ex) {
+            return true;
+        }
+    }
+
+    private Entry review(Path p) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+        StringBuilder report = new StringBuilder();
+        int findings = CodeReviewerAgent1.reviewFile(p, report);
+        Entry e = new Entry(attrs.size(), attrs.lastModifiedTime().toMillis(), report.toString(), findings);
+        state.put(p, e);
+        reviews.increment();
+        return e;
+    }
+
+    private void serve(SocketChannel socket) {
+        requests.increment();
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(socket), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(socket), StandardCharsets.UTF_8))) {
+            if (!trusted(socket)) return;
+            String command = in.readLine();
+            if ("STATUS".equals(command)) {
+                out.write("OK files=" + state.size() + " reviews=" + reviews.sum() + " requests=" + requests.sum()
+                    + " watched=" + dirs.size() + "\n");
+            } else if ("REVIEW".equals(command)) {
+                List<Path> paths = new ArrayList<>();
+                String line;
+                while ((line = in.readLine()) != null && !line.isEmpty()) {
+                    paths.add(root.resolve(line).toAbsolutePath().normalize());
+                }
+                answer(paths, out);
+            } else {
+                out.write("ERROR unknown command: " + command + "\n");
+            }
+        } catch (IOException e) {
+            // the client went away
+        }
+    }
+
+    /** Writes the status line and the reports of {@code paths}, reviewing stale ones first. */
+    private void answer(List<Path> paths, Writer out) throws IOException {
+        StringBuilder reports = new StringBuilder();
+        int findings = 0;
+        int errors = 0;
+        Map<Path, Entry> seen = new HashMap<>();
+        for (Path p : paths) {
+            if (seen.containsKey(p)) continue;
+            if (outside(p)) {
+                reports.append("Error reviewing ").append(p).append(": not in the workspace")
+                    .append(System.lineSeparator());
+                errors++;
+                continue;
+            }
+            Entry e = state.get(p);
+            try {
+                if (stale(p)) e = review(p);
+            } catch (IOException ex) {
+                reports.append("Error reviewing ").append(p).append(": ").append(ex.getMessage())
+                    .append(System.lineSeparator());
+                errors++;
+                continue;
+            }
+            seen.put(p, e);
+            reports.append(e.report);
+            findings += e.findings;
+        }
+        out.write("OK " + findings + " " + errors + "\n");
+        out.write(reports.toString());
+    }
+
+    /** Whether {@code p}, absolute and normalized, is outside the workspace or links out of it. */
+    private boolean outside(Path p) {
+        if (!p.startsWith(root)) return true;
+        try {
+            return !p.toRealPath().startsWith(realRoot);
+        } catch (IOException e) {
+            // a missing file is reported when reviewing it
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            closeServer();
+            watcher.close();
+        } catch (IOException e) {
+            // shutting down anyway
+        }
+        clients.shutdown();
+        engine.close();
+    }
+
+    private void closeServer() throws IOException {
+        ServerSocketChannel s = server;
+        if (s != null && s.isOpen()) {
+            s.close();
+            Files.deleteIfExists(socketFile());
+        }
+    }
+
+    private static final class Entry {
+        final long size;
+        final long modified;
+        final String report;
+        final int findings;
+
+        Entry(long size, long modified, String report, int findings) {
+            this.size = size;
+            this.modified = modified;
+            this.report = report;
+            this.findings = findings;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.ai.reviewer.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * A finished {@link ReviewResult}'s comments bucketed by severity and by
+ * category in one pass, so a report that goes severity by severity reads
+ * prebuilt lists instead of filtering every comment once per level.
+ *
+ * Build it once the result is complete; later comments are not seen. All
+ * returned lists are immutable and keep the result's comment order.
+ */
+public final class ReviewIndex {
+
+    private static final ReviewSeverity[] SEVERITIES = ReviewSeverity.values();
+
+    private final ReviewResult result;
+    private final Map<ReviewSeverity, List<ReviewComment>> bySeverity;
+    private final Map<String, List<ReviewComment>> byCategory;
+
+    private ReviewIndex(ReviewResult result) {
+        this.result = result;
+        Map<ReviewSeverity, List<ReviewComment>> severities = new EnumMap<>(ReviewSeverity.class);
+        Map<String, List<ReviewComment>> categories = new LinkedHashMap<>();
+        List<ReviewComment> comments = result.getComments();
+        if (comments != null) {
+            for (ReviewComment c : comments) {
+                if (c.getSeverity() != null) {
+                    severities.computeIfAbsent(c.getSeverity(), s -> new ArrayList<>()).add(c);
+                }
+                if (c.getCategory() != null) {
+                    categories.computeIfAbsent(c.getCategory(), k -> new ArrayList<>()).add(c);
+                }
+            }
+        }
+        severities.replaceAll((s, list) -> Collections.unmodifiableList(list));
+        categories.replaceAll((k, list) -> Collections.unmodifiableList(list));
+        this.bySeverity = Collections.unmodifiableMap(severities);
+        this.byCategory = Collections.unmodifiableMap(categories);
+    }
+
+    public static ReviewIndex of(ReviewResult result) {
+        return new ReviewIndex(result);
+    }
+
+    public ReviewResult getResult() { return result; }
+
+    /** Same comments as {@link ReviewResult#getCommentsBySeverity}, without a scan. */
+    public List<ReviewComment> getCommentsBySeverity(ReviewSeverity severity) {
+        return bySeverity.getOrDefault(severity, List.of());
+    }
+
+    public List<ReviewComment> getCommentsByCategory(String category) {
+        return byCategory.getOrDefault(category, List.of());
+    }
+
+    public int count(ReviewSeverity severity) {
+        return getCommentsBySeverity(severity).size();
+    }
+
+    /** Categories with at least one comment, in order of first appearance. */
+    public Set<String> getCategories() {
+        return byCategory.keySet();
+    }
+
+    /** Visits each severity that has comments, most severe first, with its comments. */
+    public void forEachSeverity(BiConsumer<ReviewSeverity, List<ReviewComment>> visitor) {
+        for (ReviewSeverity severity : SEVERITIES) {
+            List<ReviewComment> comments = bySeverity.get(severity);
+            if (comments != null) visitor.accept(severity, comments);
+        }
+    }
+
+    /** Visits each category with its comments, in order of first appearance. */
+    public void forEachCategory(BiConsumer<String, List<ReviewComment>> visitor) {
+        byCategory.forEach(visitor);
+    }
+}
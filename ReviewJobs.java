@@ -0,0 +1,239 @@
+package com.ai.reviewer;
+
+import com.ai.reviewer.agent.CodeReviewerAgent;
+import com.ai.reviewer.agent.FindingsStore;
+import com.ai.reviewer.model.ReviewComment;
+import com.ai.reviewer.model.ReviewResult;
+import com.ai.reviewer.util.ReviewMetrics;
+import java.nio.file.Files;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs file reviews off the request threads, on a fixed pool with a bounded
+ * queue.
+ *
+ * {@link #submit} never blocks: when the queue is full it returns null and
+ * the caller sheds the request, with {@link #retryAfterSeconds()} as a hint
+ * for when to come back. Each worker thread has its own agent, so requests do
+ * not share analyzer state. Finished jobs can be polled until they expire.
+ */
+public class ReviewJobs implements AutoCloseable {
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+    /** Latency buckets in seconds, shared by the server's histograms. */
+    public static final double[] LATENCY_BUCKETS = {
+        0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60
+    };
+
+    /** One submitted review; fields are published through the volatile status. */
+    public static final class Job {
+        private final String id;
+        private final Path file;
+        private final String commit;
+        private final long submittedNanos = System.nanoTime();
+        private ReviewResult result;
+        private String error;
+        private long finishedAt;
+        private volatile Status status = Status.QUEUED;
+
+        private Job(String id, Path file, String commit) {
+            this.id = id;
+            this.file = file;
+            this.commit = commit;
+        }
+
+        public String getId() { return id; }
+        public Path getFile() { return file; }
+        /** The commit its findings are recorded under, or null if they are not recorded. */
+        public String getCommit() { return commit; }
+        public Status getStatus() { return status; }
+        /** Set once the status is DONE. */
+        public ReviewResult getResult() { return result; }
+        /** Set once the status is FAILED. */
+        public String getError() { return error; }
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final ThreadLocal<CodeReviewerAgent> agents;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    /** Finished jobs, oldest first, for expiry. */
+    private final Queue<Job> finished = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger finishedCount = new AtomicInteger();
+    private final long retainMillis;
+    private final int maxRetained;
+    /** Moving average of review time, for the Retry-After estimate. */
+    private volatile double averageMillis = 100;
+    private final ReviewMetrics.Histogram queueWait;
+    private final ReviewMetrics.Histogram runTime;
+    private volatile FindingsStore store;
+
+    public ReviewJobs(int workers, int queueCapacity, Supplier<CodeReviewerAgent> agentFactory) {
+        this(workers, queueCapacity, agentFactory, TimeUnit.MINUTES.toMillis(10), 10_000);
+    }
+
+    public ReviewJobs(int workers, int queueCapacity, Supplier<CodeReviewerAgent> agentFactory,
+                      long retainMillis, int maxRetained) {
+        if (workers < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("workers and queueCapacity must be positive");
+        }
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), r -> {
+                Thread t = new Thread(r, "review-worker-" + threads.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        this.agents = ThreadLocal.withInitial(agentFactory);
+        this.retainMillis = retainMillis;
+        this.maxRetained = maxRetained;
+
+        ReviewMetrics metrics = ReviewMetrics.GLOBAL;
+        metrics.gauge("reviewer_review_queue_depth", "Reviews waiting for a worker.", this::queued);
+        metrics.gauge("reviewer_review_active", "Reviews running right now.", executor::getActiveCount);
+        queueWait = metrics.histogram("reviewer_review_queue_wait_seconds",
+            "Time from submission until a worker picks the review up.", "", LATENCY_BUCKETS);
+        runTime = metrics.histogram("reviewer_review_run_seconds",
+            "Time to read and review one file on a worker.", "", LATENCY_BUCKETS);
+    }
+
+    /** Runs the agent over one file, booking it in the metrics as the "CodeReviewerAgent" analyzer. */
+    public static ReviewResult review(CodeReviewerAgent agent, String fileName, String code) {
+        ReviewMetrics metrics = ReviewMetrics.GLOBAL;
+        if (!metrics.enabled()) return agent.reviewCode(fileName, code);
+        long start = System.nanoTime();
+        long allocated = ReviewMetrics.allocatedBytes();
+        ReviewResult result = agent.reviewCode(fileName, code);
+        metrics.recordRule("CodeReviewerAgent", System.nanoTime() - start,
+            result == null ? 0 : result.getTotalIssues(), code.length(),
+            allocated < 0 ? -1 : ReviewMetrics.allocatedBytes() - allocated);
+        return result;
+    }
+
+    /**
+     * Records the findings of one result in {@code store}, keyed by the
+     * comments' category as the rule and their severity.
+     */
+    public static void record(FindingsStore store, String commit, String file, ReviewResult result)
+            throws IOException {
+        List<FindingsStore.Finding> findings = new ArrayList<>();
+        if (result.getComments() != null) {
+            for (ReviewComment c : result.getComments()) {
+                findings.add(new FindingsStore.Finding(c.getCategory(),
+                    c.getSeverity() == null ? null : c.getSeverity().name(), c.getLineNumber(), c.getMessage()));
+            }
+        }
+        store.add(commit, file, findings);
+    }
+
+    /** Where finished jobs submitted with a commit record their findings; null to not record. */
+    public void setStore(FindingsStore store) {
+        this.store = store;
+    }
+
+    /** Queues a review of {@code file}, or returns null if the queue is full. */
+    public Job submit(Path file) {
+        return submit(file, null);
+    }
+
+    /**
+     * As above; once done, the findings are recorded under {@code commit}
+     * if a {@linkplain #setStore store} is set.
+     */
+    public Job submit(Path file, String commit) {
+        expire();
+        Job job = new Job(UUID.randomUUID().toString(), file, commit);
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            return null;
+        }
+        return job;
+    }
+
+    /** The job with that id, or null if unknown or expired. */
+    public Job get(String id) {
+        expire();
+        return jobs.get(id);
+    }
+
+    /** Rough time until a queued job would start, in whole seconds (at least 1). */
+    public long retryAfterSeconds() {
+        return retryAfterSeconds(executor.getQueue().size() + 1);
+    }
+
+    /** Rough time for {@code reviews} reviews to get through a pool this size, in whole seconds (at least 1). */
+    public long retryAfterSeconds(long reviews) {
+        double waitMillis = averageMillis * reviews / executor.getMaximumPoolSize();
+        return Math.max(1, (long) Math.ceil(waitMillis / 1000));
+    }
+
+    public int queued() {
+        return executor.getQueue().size();
+    }
+
+    private void run(Job job) {
+        job.status = Status.RUNNING;
+        long start = System.nanoTime();
+        queueWait.observeNanos(start - job.submittedNanos);
+        try {
+            String code = Files.readString(job.file);
+            job.result = review(agents.get(), job.file.getFileName().toString(), code);
+            FindingsStore findings = store;
+            if (findings != null && job.commit != null && job.result != null) {
+                try {
+                    record(findings, job.commit, job.file.toString(), job.result);
+                } catch (IOException e) {
+                    // the review itself is fine; only the history misses it
+                    System.err.println("Could not record findings for " + job.file + ": " + e.getMessage());
+                }
+            }
+            job.finishedAt = System.currentTimeMillis();
+            job.status = Status.DONE;
+        } catch (Exception e) {
+            job.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+            job.finishedAt = System.currentTimeMillis();
+            job.status = Status.FAILED;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            runTime.observeNanos(nanos);
+            double millis = nanos / 1e6;
+            averageMillis = averageMillis * 0.9 + millis * 0.1;
+            finished.add(job);
+            finishedCount.incrementAndGet();
+        }
+    }
+
+    private void expire() {
+        long cutoff = System.currentTimeMillis() - retainMillis;
+        Job oldest;
+        while ((oldest = finished.peek()) != null
+                && (oldest.finishedAt < cutoff || finishedCount.get() > maxRetained)) {
+            if (finished.remove(oldest)) {
+                finishedCount.decrementAndGet();
+                jobs.remove(oldest.id);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,125 @@
+package com.ai.reviewer;
+
+import com.ai.reviewer.model.ReviewComment;
+import com.ai.reviewer.model.ReviewResult;
+import com.ai.reviewer.model.ReviewSeverity;
+import com.ai.reviewer.util.JsonFields;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hand-written Gson adapters for review results, so responses are streamed
+ * field by field through a {@link JsonWriter} with getters instead of
+ * reflection per value.
+ *
+ * The JSON is the same as Gson's reflective output for the model: names
+ * and order come from the model's fields through {@link JsonFields}, and a
+ * model whose fields the writers below do not cover exactly is left to
+ * Gson's reflective adapter. Reading always goes to the adapter Gson would
+ * have used without these, so a client can share the same Gson to parse
+ * the responses back.
+ */
+public final class ReviewJson {
+
+    private ReviewJson() {}
+
+    /** Registers the adapters; build the Gson once at startup and share it. */
+    public static GsonBuilder register(GsonBuilder builder) {
+        return builder.registerTypeAdapterFactory(FACTORY);
+    }
+
+    public static Gson gson() {
+        return register(new GsonBuilder()).create();
+    }
+
+    /** A UTF-8 JsonWriter over {@code out}; flush or close it when done. */
+    public static JsonWriter writer(Gson gson, OutputStream out) throws IOException {
+        return gson.newJsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    public static void writeResult(Gson gson, JsonWriter out, ReviewResult r) throws IOException {
+        gson.getAdapter(ReviewResult.class).write(out, r);
+    }
+
+    /** Writes the model types below; reads them through the delegate Gson finds after this factory. */
+    private static final TypeAdapterFactory FACTORY = new TypeAdapterFactory() {
+        @Override
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            Class<? super T> raw = type.getRawType();
+            FieldWriter<?> writer = raw == ReviewResult.class ? writer(JsonFields.of(gson, ReviewResult.class, result(gson)))
+                : raw == ReviewComment.class ? writer(JsonFields.of(gson, ReviewComment.class, comment(gson)))
+                : null;
+            if (writer == null) return null;
+            @SuppressWarnings("unchecked")
+            FieldWriter<T> typed = (FieldWriter<T>) writer;
+            TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+            return new TypeAdapter<T>() {
+                @Override
+                public void write(JsonWriter out, T value) throws IOException {
+                    if (value == null) out.nullValue(); else typed.write(out, value);
+                }
+
+                @Override
+                public T read(JsonReader in) throws IOException {
+                    return delegate.read(in);
+                }
+            };
+        }
+    };
+
+    private static <T> FieldWriter<T> writer(JsonFields<T> fields) {
+        return fields == null ? null : fields::write;
+    }
+
+    private static Map<String, JsonFields.Value<ReviewComment>> comment(Gson gson) {
+        // Gson's enum adapter, so constant names follow any @SerializedName
+        TypeAdapter<ReviewSeverity> severity = gson.getAdapter(ReviewSeverity.class);
+        Map<String, JsonFields.Value<ReviewComment>> w = new HashMap<>();
+        w.put("lineNumber", (out, c) -> out.value(c.getLineNumber()));
+        w.put("severity", (out, c) -> severity.write(out, c.getSeverity()));
+        w.put("category", (out, c) -> out.value(c.getCategory()));
+        w.put("message", (out, c) -> out.value(c.getMessage()));
+        w.put("code", (out, c) -> out.value(c.getCode()));
+        w.put("suggestion", (out, c) -> out.value(c.getSuggestion()));
+        return w;
+    }
+
+    private static Map<String, JsonFields.Value<ReviewResult>> result(Gson gson) {
+        Map<String, JsonFields.Value<ReviewResult>> w = new HashMap<>();
+        w.put("fileName", (out, r) -> out.value(r.getFileName()));
+        w.put("overallScore", (out, r) -> out.value(r.getOverallScore()));
+        w.put("totalIssues", (out, r) -> out.value(r.getTotalIssues()));
+        w.put("criticalIssues", (out, r) -> out.value(r.getCriticalIssues()));
+        w.put("majorIssues", (out, r) -> out.value(r.getMajorIssues()));
+        w.put("minorIssues", (out, r) -> out.value(r.getMinorIssues()));
+        w.put("infoIssues", (out, r) -> out.value(r.getInfoIssues()));
+        w.put("reviewTimeMs", (out, r) -> out.value(r.getReviewTimeMs()));
+        w.put("comments", (out, r) -> {
+            if (r.getComments() == null) {
+                out.nullValue();
+                return;
+            }
+            TypeAdapter<ReviewComment> comments = gson.getAdapter(ReviewComment.class);
+            out.beginArray();
+            for (ReviewComment c : r.getComments()) comments.write(out, c);
+            out.endArray();
+        });
+        return w;
+    }
+
+    private interface FieldWriter<T> {
+        void write(JsonWriter out, T value) throws IOException;
+    }
+}
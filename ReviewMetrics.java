@@ -0,0 +1,281 @@
+package com.ai.reviewer.util;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Process-wide counters for the review hot path: per-rule time, findings,
+ * bytes scanned and allocation, plus histograms and gauges registered by the
+ * servers. {@link #writePrometheus} renders everything in the Prometheus text
+ * format.
+ *
+ * Every rule execution is also emitted as a {@link RuleEvent} JFR event when
+ * a recording has it enabled, so a flight recording shows the same split
+ * without extra tooling.
+ *
+ * Counters are {@link LongAdder}s, so recording from many review threads does
+ * not contend. Per-rule timing wraps every token callback, so callers check
+ * {@link #enabled()} once per file and skip it when metrics are off.
+ */
+public final class ReviewMetrics {
+
+    public static final ReviewMetrics GLOBAL = new ReviewMetrics(Boolean.getBoolean("reviewer.metrics"));
+
+    private volatile boolean enabled;
+    private final Map<String, RuleStats> rules = new ConcurrentSkipListMap<>();
+    private final List<Histogram> histograms = new CopyOnWriteArrayList<>();
+    private final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+
+    public ReviewMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean enabled() { return enabled; }
+
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    /** Totals for one rule or analyzer, by name; created on first use. */
+    public RuleStats rule(String name) {
+        return rules.computeIfAbsent(name, n -> new RuleStats());
+    }
+
+    /**
+     * Records one execution of a rule over a file, and emits it as a JFR
+     * event. {@code allocatedBytes} is -1 when it was not measured.
+     */
+    public void recordRule(String name, long nanos, long findings, long bytes, long allocatedBytes) {
+        rule(name).record(nanos, findings, bytes, allocatedBytes);
+        RuleEvent event = new RuleEvent();
+        if (event.isEnabled()) {
+            event.rule = name;
+            event.time = nanos;
+            event.findings = findings;
+            event.bytes = bytes;
+            event.allocated = allocatedBytes;
+            event.commit();
+        }
+    }
+
+    /** CPU time used so far by the current thread, or -1 if the JVM cannot tell. */
+    public static long cpuTimeNanos() {
+        return Threads.CPU != null ? Threads.CPU.getThreadCpuTime(Thread.currentThread().getId()) : -1;
+    }
+
+    /** Bytes allocated so far by the current thread, or -1 if the JVM cannot tell. */
+    public static long allocatedBytes() {
+        return Threads.ALLOCATION != null
+            ? Threads.ALLOCATION.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+    }
+
+    /**
+     * Looked up on first use: the platform MXBeans pull in the management
+     * and JFR providers, which costs a short CLI run tens of milliseconds.
+     * Each counter is null where the JVM lacks it; one does not need the other.
+     */
+    private static final class Threads {
+        static final ThreadMXBean CPU = cpu(ManagementFactory.getThreadMXBean());
+        static final com.sun.management.ThreadMXBean ALLOCATION = allocation(ManagementFactory.getThreadMXBean());
+    }
+
+    /** Registers a histogram over the given upper bounds, in seconds. */
+    public Histogram histogram(String name, String help, String labels, double... bounds) {
+        Histogram h = new Histogram(name, help, labels, bounds);
+        histograms.add(h);
+        return h;
+    }
+
+    public void gauge(String name, String help, LongSupplier value) {
+        gauges.add(new Gauge(name, help, value));
+    }
+
+    // ---------- Types ----------
+
+    public static final class RuleStats {
+        final LongAdder invocations = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder findings = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder allocated = new LongAdder();
+
+        public void record(long nanos, long findings, long bytes, long allocatedBytes) {
+            this.invocations.increment();
+            this.nanos.add(nanos);
+            this.findings.add(findings);
+            this.bytes.add(bytes);
+            if (allocatedBytes > 0) this.allocated.add(allocatedBytes);
+        }
+
+        public long invocations() { return invocations.sum(); }
+        public long nanos() { return nanos.sum(); }
+        public long findings() { return findings.sum(); }
+        public long bytes() { return bytes.sum(); }
+        public long allocatedBytes() { return allocated.sum(); }
+    }
+
+    /** Cumulative-bucket histogram; one series, with fixed labels. */
+    public static final class Histogram {
+        private final String name;
+        private final String help;
+        private final String labels;
+        private final double[] bounds;
+        private final LongAdder[] buckets;
+        private final LongAdder sumNanos = new LongAdder();
+
+        private Histogram(String name, String help, String labels, double[] bounds) {
+            this.name = name;
+            this.help = help;
+            this.labels = labels;
+            this.bounds = bounds.clone();
+            this.buckets = new LongAdder[bounds.length + 1];
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        public void observeNanos(long nanos) {
+            double seconds = nanos / 1e9;
+            int i = 0;
+            while (i < bounds.length && seconds > bounds[i]) i++;
+            buckets[i].increment();
+            sumNanos.add(nanos);
+        }
+
+        public long count() {
+            long n = 0;
+            for (LongAdder b : buckets) n += b.sum();
+            return n;
+        }
+    }
+
+    private static final class Gauge {
+        final String name;
+        final String help;
+        final LongSupplier value;
+
+        Gauge(String name, String help, LongSupplier value) {
+            this.name = name;
+            this.help = help;
+            this.value = value;
+        }
+    }
+
+    @Name("com.ai.reviewer.RuleExecution")
+    @Label("Rule Execution")
+    @Category({"Code Reviewer"})
+    @StackTrace(false)
+    static class RuleEvent extends Event {
+        @Label("Rule")
+        String rule;
+
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+
+        @Label("Findings")
+        long findings;
+
+        @Label("Bytes Scanned")
+        @DataAmount
+        long bytes;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    // ---------- Prometheus ----------
+
+    public void writePrometheus(Appendable out) throws IOException {
+        List<Map.Entry<String, RuleStats>> entries = new ArrayList<>(rules.entrySet());
+        family(out, "reviewer_rule_invocations_total", "counter", "Rule executions, one per reviewed file.",
+            entries, s -> s.invocations());
+        family(out, "reviewer_rule_seconds_total", "counter", "Time spent in each rule.",
+            entries, null);
+        family(out, "reviewer_rule_findings_total", "counter", "Findings reported by each rule.",
+            entries, s -> s.findings());
+        family(out, "reviewer_rule_scanned_bytes_total", "counter", "Source bytes each rule scanned.",
+            entries, s -> s.bytes());
+        family(out, "reviewer_rule_allocated_bytes_total", "counter",
+            "Heap allocated by each rule; the shared lexer pass is booked on JavaLexer.", entries, s -> s.allocatedBytes());
+
+        for (Gauge g : gauges) {
+            header(out, g.name, "gauge", g.help);
+            out.append(g.name).append(' ').append(Long.toString(g.value.getAsLong())).append('\n');
+        }
+        // series of one family (e.g. one per route) must sit under a single header
+        List<Histogram> sorted = new ArrayList<>(histograms);
+        sorted.sort(Comparator.comparing(h -> h.name));
+        String family = null;
+        for (Histogram h : sorted) {
+            if (!h.name.equals(family)) header(out, h.name, "histogram", h.help);
+            family = h.name;
+            String sep = h.labels.isEmpty() ? "" : h.labels + ",";
+            long cumulative = 0;
+            for (int i = 0; i < h.buckets.length; i++) {
+                cumulative += h.buckets[i].sum();
+                String le = i < h.bounds.length ? number(h.bounds[i]) : "+Inf";
+                out.append(h.name).append("_bucket{").append(sep).append("le=\"").append(le).append("\"} ")
+                    .append(Long.toString(cumulative)).append('\n');
+            }
+            String labels = h.labels.isEmpty() ? "" : "{" + h.labels + "}";
+            out.append(h.name).append("_sum").append(labels).append(' ')
+                .append(number(h.sumNanos.sum() / 1e9)).append('\n');
+            out.append(h.name).append("_count").append(labels).append(' ')
+                .append(Long.toString(cumulative)).append('\n');
+        }
+    }
+
+    private interface Field {
+        long get(RuleStats s);
+    }
+
+    /** One metric family over all rules; a null field means the time in seconds. */
+    private static void family(Appendable out, String name, String type, String help,
+                               List<Map.Entry<String, RuleStats>> entries, Field field) throws IOException {
+        header(out, name, type, help);
+        for (Map.Entry<String, RuleStats> e : entries) {
+            String value = field == null
+                ? number(e.getValue().nanos() / 1e9)
+                : Long.toString(field.get(e.getValue()));
+            out.append(name).append("{rule=\"").append(escape(e.getKey())).append("\"} ")
+                .append(value).append('\n');
+        }
+    }
+
+    private static void header(Appendable out, String name, String type, String help) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String number(double v) {
+        return Double.toString(v);
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static ThreadMXBean cpu(ThreadMXBean bean) {
+        return bean.isThreadCpuTimeSupported() && bean.isThreadCpuTimeEnabled() ? bean : null;
+    }
+
+    private static com.sun.management.ThreadMXBean allocation(ThreadMXBean bean) {
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        return threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled() ? threads : null;
+    }
+}
@@ -0,0 +1,362 @@
+import com.ai.reviewer.analyzer.JavaLexer;
+import com.ai.reviewer.analyzer.JavaLexer.Token;
+import com.ai.reviewer.analyzer.JavaLexer.TokenKind;
+import com.ai.reviewer.analyzer.JavaLexer.TokenListener;
+import com.ai.reviewer.analyzer.TokenPatternMatcher;
+import java.util.*;
+
+/**
+ * Keeps one file's review alive across edits, for IDE and pre-commit use.
+ *
+ * The initial review records a checkpoint at every line: the lexer position
+ * and token index of the first token on or after the line start, plus the
+ * state of every rule (for {@link CodeReviewerAgent1.UnclosedConstructRule},
+ * its bracket stack). An {@link #edit} updates the text and the
+ * {@link CodeReviewerAgent1.LineIndex} in place, then resumes the scan from
+ * the last checkpoint before the edit instead of position 0. It stops as
+ * soon as it reaches a checkpoint past the edit whose state matches the old
+ * one; everything after that point is kept, shifted to the new coordinates.
+ * A typing edit therefore re-lexes a few lines, not the file.
+ *
+ * Rules whose listener is not resumable, and plain rules, are re-run over the
+ * whole text after every edit. Not thread-safe.
+ */
+public class ReviewSession {
+
+    private final List<CodeReviewerAgent1.Rule> rules;
+    private final StringBuilder text;
+    private final CodeReviewerAgent1.LineIndex index = new CodeReviewerAgent1.LineIndex();
+    private final JavaLexer lexer = new JavaLexer();
+    private final Tracker tracker = new Tracker();
+    private final List<CodeReviewerAgent1.ResumableListener> listeners = new ArrayList<>();
+    /** Rules re-run over the whole text on every edit. */
+    private final List<Integer> wholeFileRules = new ArrayList<>();
+
+    /** Per rule: findings from tokens, in report order, tagged with the token that reported them. */
+    private final List<List<Found>> found = new ArrayList<>();
+    /** Per rule: findings reported at end of text (or by a whole-file rule). */
+    private final List<List<CodeReviewerAgent1.Suggestion>> atEnd = new ArrayList<>();
+
+    /** checkpoints[0] is the initial state; checkpoints[line] is the state at that line. */
+    private Checkpoint[] checkpoints;
+    private Object[] finalStates;
+    private int lastRescan;
+
+    public ReviewSession(CharSequence text) {
+        this(text, CodeReviewerAgent1.rules());
+    }
+
+    public ReviewSession(CharSequence text, List<CodeReviewerAgent1.Rule> rules) {
+        this.rules = rules;
+        this.text = new StringBuilder(text);
+        index.reset(this.text);
+
+        lexer.subscribeAll(tracker);
+        for (int r = 0; r < rules.size(); r++) {
+            found.add(new ArrayList<>());
+            atEnd.add(new ArrayList<>());
+        }
+        TokenPatternMatcher.Scan patterns =
+            CodeReviewerAgent1.patternScan(this.text, index, rules, RuleSink::new);
+        if (patterns != null) {
+            PatternListener l = new PatternListener(patterns);
+            listeners.add(l);
+            lexer.subscribe(l, EnumSet.of(TokenKind.IDENTIFIER));
+        }
+        for (int r = 0; r < rules.size(); r++) {
+            CodeReviewerAgent1.Rule rule = rules.get(r);
+            if (rule instanceof CodeReviewerAgent1.PatternRule) continue;
+            if (rule instanceof CodeReviewerAgent1.TokenRule) {
+                CodeReviewerAgent1.TokenRule tr = (CodeReviewerAgent1.TokenRule) rule;
+                TokenListener l = tr.listener(this.text, index, new RuleSink(r));
+                if (l instanceof CodeReviewerAgent1.ResumableListener) {
+                    listeners.add((CodeReviewerAgent1.ResumableListener) l);
+                    lexer.subscribe(l, tr.kinds());
+                    continue;
+                }
+            }
+            wholeFileRules.add(r);
+        }
+
+        Checkpoint initial = new Checkpoint(0, 0, saveAll());
+        checkpoints = new Checkpoint[] { initial };
+        rescan(0, -1, 0, 0, 0);
+    }
+
+    /**
+     * Replaces {@code removedLength} chars at {@code offset} with
+     * {@code inserted} and brings the findings up to date.
+     */
+    public void edit(int offset, int removedLength, CharSequence inserted) {
+        if (offset < 0 || removedLength < 0 || offset + removedLength > text.length()) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", removed " + removedLength
+                + ", length " + text.length());
+        }
+        // Last checkpoint strictly before the edit; the token there is re-lexed
+        int resumeLine = index.lineOf(offset);
+        while (resumeLine > 0 && checkpoints[resumeLine].pos >= offset) resumeLine--;
+
+        text.replace(offset, offset + removedLength, inserted.toString());
+        int lineDelta = index.edit(offset, removedLength, inserted);
+        rescan(resumeLine, offset + removedLength, inserted.length() - removedLength,
+            offset + inserted.length(), lineDelta);
+    }
+
+    public String text() {
+        return text.toString();
+    }
+
+    /** Current findings, in the same order as a full review of the text. */
+    public List<CodeReviewerAgent1.Suggestion> suggestions() {
+        List<CodeReviewerAgent1.Suggestion> all = new ArrayList<>();
+        for (int r = 0; r < rules.size(); r++) {
+            for (Found f : found.get(r)) all.add(f.s);
+            all.addAll(atEnd.get(r));
+        }
+        all.sort(Comparator.comparingInt(s -> s.line));
+        return all;
+    }
+
+    /** Chars the last review or edit actually re-lexed. */
+    public int lastRescanLength() {
+        return lastRescan;
+    }
+
+    // ---------- Rescan ----------
+
+    /**
+     * Scans from the checkpoint of {@code resumeLine}. With an edit
+     * ({@code oldEditEnd >= 0}), stops at the first checkpoint at or past
+     * {@code newEditEnd} that matches the old state, and splices.
+     */
+    private void rescan(int resumeLine, int oldEditEnd, int delta, int newEditEnd, int lineDelta) {
+        Checkpoint resume = checkpoints[resumeLine];
+        Checkpoint[] old = checkpoints;
+        List<List<Found>> before = new ArrayList<>(rules.size());
+        for (List<Found> list : found) {
+            List<Found> kept = new ArrayList<>();
+            for (Found f : list) {
+                if (f.pos >= resume.pos) break;
+                kept.add(f);
+            }
+            before.add(kept);
+            list.clear();
+        }
+
+        restoreAll(resume.states);
+        tracker.start(resumeLine, resume.index, old, oldEditEnd, delta, newEditEnd, lineDelta);
+        boolean reachedEnd = lexer.scan(text, resume.pos, resume.index);
+        lastRescan = (reachedEnd ? text.length() : tracker.tokenStart) - resume.pos;
+
+        List<Checkpoint> fresh = tracker.captured;
+        Checkpoint[] next = new Checkpoint[index.lineCount() + 1];
+        System.arraycopy(old, 0, next, 0, resumeLine + 1);
+        for (int i = 0; i < fresh.size(); i++) next[resumeLine + 1 + i] = fresh.get(i);
+
+        for (int r = 0; r < rules.size(); r++) {
+            List<Found> merged = before.get(r);
+            merged.addAll(found.get(r));
+            found.set(r, merged);
+        }
+
+        if (!reachedEnd) {
+            // Converged: the old scan from here on still holds, moved by the shift
+            CodeReviewerAgent1.Shift shift = tracker.shift;
+            int oldPos = tracker.convergedOld.pos;
+            for (int line = resumeLine + 1 + fresh.size(); line < next.length; line++) {
+                next[line] = shifted(old[line - lineDelta], shift);
+            }
+            for (int r = 0; r < rules.size(); r++) {
+                for (Found f : oldFound.get(r)) {
+                    if (f.pos >= oldPos) {
+                        found.get(r).add(new Found(f.pos + delta,
+                            new CodeReviewerAgent1.Suggestion(f.s.line + lineDelta, f.s.msg, f.s.rule)));
+                    }
+                }
+            }
+            Object[] states = new Object[listeners.size()];
+            for (int i = 0; i < states.length; i++) {
+                states[i] = listeners.get(i).shift(finalStates[i], shift);
+            }
+            finalStates = states;
+            // End-of-text findings point anywhere in the file, so they are redone
+            restoreAll(finalStates);
+            for (List<CodeReviewerAgent1.Suggestion> list : atEnd) list.clear();
+            tracker.atEnd = true;
+            for (TokenListener l : listeners) l.onEnd(text.length());
+        }
+        checkpoints = next;
+        oldFound = snapshotFound();
+
+        for (int r : wholeFileRules) {
+            List<CodeReviewerAgent1.Suggestion> out = atEnd.get(r);
+            out.clear();
+            CodeReviewerAgent1.Rule rule = rules.get(r);
+            for (CodeReviewerAgent1.Suggestion s : rule.apply(text, index)) out.add(named(s, r));
+        }
+    }
+
+    /** {@code s} with the name of rule {@code r}, as a full review reports it. */
+    private CodeReviewerAgent1.Suggestion named(CodeReviewerAgent1.Suggestion s, int r) {
+        return s.rule != null ? s : new CodeReviewerAgent1.Suggestion(s.line, s.msg, rules.get(r).name());
+    }
+
+    /** Findings as of the last completed review, for splicing after the next edit. */
+    private List<List<Found>> oldFound = List.of();
+
+    private List<List<Found>> snapshotFound() {
+        List<List<Found>> copy = new ArrayList<>(found.size());
+        for (List<Found> list : found) copy.add(new ArrayList<>(list));
+        return copy;
+    }
+
+    private Checkpoint shifted(Checkpoint cp, CodeReviewerAgent1.Shift shift) {
+        Object[] states = new Object[cp.states.length];
+        for (int i = 0; i < states.length; i++) states[i] = listeners.get(i).shift(cp.states[i], shift);
+        return new Checkpoint(shift.pos(cp.pos), shift.index(cp.index), states);
+    }
+
+    private Object[] saveAll() {
+        Object[] states = new Object[listeners.size()];
+        for (int i = 0; i < states.length; i++) states[i] = listeners.get(i).save();
+        return states;
+    }
+
+    private void restoreAll(Object[] states) {
+        for (int i = 0; i < states.length; i++) listeners.get(i).restore(states[i]);
+    }
+
+    // ---------- Types ----------
+
+    private static final class Checkpoint {
+        final int pos;
+        final int index;
+        final Object[] states;
+
+        Checkpoint(int pos, int index, Object[] states) {
+            this.pos = pos;
+            this.index = index;
+            this.states = states;
+        }
+    }
+
+    private static final class Found {
+        final int pos;
+        final CodeReviewerAgent1.Suggestion s;
+
+        Found(int pos, CodeReviewerAgent1.Suggestion s) {
+            this.pos = pos;
+            this.s = s;
+        }
+    }
+
+    /** Subscribed first: records checkpoints and spots convergence before the rules see a token. */
+    private final class Tracker implements TokenListener {
+        int nextLine;
+        int nextIndex;
+        int tokenStart;
+        boolean atEnd;
+        List<Checkpoint> captured;
+        // convergence check against the previous scan
+        Checkpoint[] old;
+        int oldEditEnd, delta, newEditEnd, lineDelta;
+        CodeReviewerAgent1.Shift shift;
+        Checkpoint convergedOld;
+
+        void start(int resumeLine, int resumeIndex, Checkpoint[] old,
+                   int oldEditEnd, int delta, int newEditEnd, int lineDelta) {
+            this.nextLine = resumeLine + 1;
+            this.nextIndex = resumeIndex;
+            this.atEnd = false;
+            this.captured = new ArrayList<>();
+            this.old = old;
+            this.oldEditEnd = oldEditEnd;
+            this.delta = delta;
+            this.newEditEnd = newEditEnd;
+            this.lineDelta = lineDelta;
+            this.shift = null;
+            this.convergedOld = null;
+        }
+
+        @Override
+        public void onToken(Token t) {
+            tokenStart = t.start();
+            while (nextLine <= index.lineCount() && index.lineStart(nextLine) <= t.start()) {
+                Checkpoint cp = new Checkpoint(t.start(), t.index(), saveAll());
+                if (oldEditEnd >= 0 && t.start() >= newEditEnd && converged(cp)) {
+                    lexer.stop();
+                    return;
+                }
+                captured.add(cp);
+                nextLine++;
+            }
+            nextIndex = t.index() + 1;
+        }
+
+        @Override
+        public void onEnd(int length) {
+            Object[] states = saveAll();
+            while (nextLine <= index.lineCount()) {
+                captured.add(new Checkpoint(length, nextIndex, states));
+                nextLine++;
+            }
+            finalStates = states;
+            for (List<CodeReviewerAgent1.Suggestion> list : ReviewSession.this.atEnd) list.clear();
+            atEnd = true;
+        }
+
+        private boolean converged(Checkpoint cp) {
+            int oldLine = nextLine - lineDelta;
+            if (oldLine < 1 || oldLine >= old.length) return false;
+            Checkpoint prev = old[oldLine];
+            if (prev.pos + delta != cp.pos) return false;
+            CodeReviewerAgent1.Shift s = new CodeReviewerAgent1.Shift(oldEditEnd, delta, prev.index, cp.index - prev.index);
+            for (int i = 0; i < listeners.size(); i++) {
+                if (!listeners.get(i).sameState(cp.states[i], prev.states[i], s)) return false;
+            }
+            shift = s;
+            convergedOld = prev;
+            return true;
+        }
+    }
+
+    /** Routes a rule's findings, tagged with the token being processed. */
+    private final class RuleSink implements CodeReviewerAgent1.SuggestionSink {
+        final int rule;
+
+        RuleSink(int rule) { this.rule = rule; }
+
+        @Override
+        public void accept(CodeReviewerAgent1.Suggestion s) {
+            s = named(s, rule);
+            if (tracker.atEnd) {
+                atEnd.get(rule).add(s);
+            } else {
+                found.get(rule).add(new Found(tracker.tokenStart, s));
+            }
+        }
+    }
+
+    /** Adapts the shared pattern-rule matcher to {@link CodeReviewerAgent1.ResumableListener}. */
+    private static final class PatternListener implements CodeReviewerAgent1.ResumableListener {
+        private final TokenPatternMatcher.Scan scan;
+
+        PatternListener(TokenPatternMatcher.Scan scan) { this.scan = scan; }
+
+        @Override public void onToken(Token t) { scan.onToken(t); }
+        @Override public void onEnd(int length) { scan.onEnd(length); }
+        @Override public Object save() { return scan.save(); }
+        @Override public void restore(Object state) { scan.restore(state); }
+
+        @Override
+        public boolean sameState(Object state, Object old, CodeReviewerAgent1.Shift shift) {
+            // only an idle matcher is independent of the tokens before it
+            return state == null && old == null;
+        }
+
+        @Override
+        public Object shift(Object old, CodeReviewerAgent1.Shift shift) {
+            return TokenPatternMatcher.shift(old, shift.from, shift.delta, shift.indexFrom, shift.indexDelta);
+        }
+    }
+}
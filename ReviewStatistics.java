@@ -0,0 +1,188 @@
+package com.ai.reviewer.util;
+
+import com.ai.reviewer.model.ReviewComment;
+import com.ai.reviewer.model.ReviewResult;
+import com.ai.reviewer.model.ReviewSeverity;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Totals over many review results, safe to feed from every worker of a
+ * batch at once: counters are striped {@link LongAdder}s and
+ * {@link DoubleAdder}s, so workers recording results never wait on each
+ * other. Issues are counted per severity and per category, and scores in a
+ * histogram of ten-point buckets.
+ *
+ * {@link #snapshot()} can be taken at any time, also while results are
+ * still coming in. Each number in it is exact as of some moment during the
+ * call, but numbers are read one after another and need not be consistent
+ * with each other mid-batch. Snapshots merge, so per-module statistics from
+ * {@link Groups} add up to a global summary without counting anything twice.
+ */
+public final class ReviewStatistics {
+
+    /** Score histogram buckets: [0, 10), [10, 20), ..., [90, 100]. */
+    public static final int SCORE_BUCKETS = 10;
+
+    private static final ReviewSeverity[] SEVERITIES = ReviewSeverity.values();
+
+    private final LongAdder files = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder issues = new LongAdder();
+    private final LongAdder reviewMillis = new LongAdder();
+    private final DoubleAdder scoreSum = new DoubleAdder();
+    private final DoubleAccumulator minScore = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+    private final DoubleAccumulator maxScore = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+    private final LongAdder[] bySeverity = adders(SEVERITIES.length);
+    private final LongAdder[] scoreBuckets = adders(SCORE_BUCKETS);
+    private final ConcurrentMap<String, LongAdder> byCategory = new ConcurrentHashMap<>();
+
+    /** Records one reviewed file. */
+    public void add(ReviewResult result) {
+        files.increment();
+        double score = result.getOverallScore();
+        scoreSum.add(score);
+        minScore.accumulate(score);
+        maxScore.accumulate(score);
+        scoreBuckets[bucket(score)].increment();
+        issues.add(result.getTotalIssues());
+        reviewMillis.add(result.getReviewTimeMs());
+        if (result.getComments() == null) return;
+        for (ReviewComment c : result.getComments()) {
+            if (c.getSeverity() != null) bySeverity[c.getSeverity().ordinal()].increment();
+            category(c.getCategory()).increment();
+        }
+    }
+
+    /** Records a file that could not be reviewed. */
+    public void addFailure() {
+        failures.increment();
+    }
+
+    public Snapshot snapshot() {
+        long[] severity = new long[bySeverity.length];
+        for (int i = 0; i < severity.length; i++) severity[i] = bySeverity[i].sum();
+        long[] buckets = new long[scoreBuckets.length];
+        for (int i = 0; i < buckets.length; i++) buckets[i] = scoreBuckets[i].sum();
+        Map<String, Long> categories = new TreeMap<>();
+        byCategory.forEach((k, v) -> categories.put(k, v.sum()));
+        return new Snapshot(files.sum(), failures.sum(), issues.sum(), reviewMillis.sum(), scoreSum.sum(),
+            minScore.get(), maxScore.get(), severity, buckets, categories);
+    }
+
+    private LongAdder category(String category) {
+        String key = category == null ? "Uncategorized" : category;
+        LongAdder adder = byCategory.get(key);
+        // get first: computeIfAbsent locks the bin even when the key is there
+        return adder != null ? adder : byCategory.computeIfAbsent(key, k -> new LongAdder());
+    }
+
+    private static int bucket(double score) {
+        return Math.max(0, Math.min(SCORE_BUCKETS - 1, (int) (score / (100.0 / SCORE_BUCKETS))));
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) adders[i] = new LongAdder();
+        return adders;
+    }
+
+    /** Statistics kept per group, e.g. per module, created on first use. */
+    public static final class Groups {
+        private final ConcurrentMap<String, ReviewStatistics> groups = new ConcurrentHashMap<>();
+
+        public ReviewStatistics group(String name) {
+            ReviewStatistics stats = groups.get(name);
+            return stats != null ? stats : groups.computeIfAbsent(name, k -> new ReviewStatistics());
+        }
+
+        /** A snapshot per group, by name. */
+        public Map<String, Snapshot> snapshot() {
+            Map<String, Snapshot> out = new TreeMap<>();
+            groups.forEach((name, stats) -> out.put(name, stats.snapshot()));
+            return out;
+        }
+
+        /** All groups merged. */
+        public Snapshot total() {
+            Snapshot total = Snapshot.EMPTY;
+            for (ReviewStatistics stats : groups.values()) total = total.merge(stats.snapshot());
+            return total;
+        }
+    }
+
+    /** Immutable totals at one point; merge snapshots of disjoint sets of files to combine them. */
+    public static final class Snapshot {
+        public static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0, 0,
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, new long[SEVERITIES.length],
+            new long[SCORE_BUCKETS], Map.of());
+
+        private final long files;
+        private final long failures;
+        private final long issues;
+        private final long reviewMillis;
+        private final double scoreSum;
+        private final double minScore;
+        private final double maxScore;
+        private final long[] bySeverity;
+        private final long[] scoreBuckets;
+        private final Map<String, Long> byCategory;
+
+        private Snapshot(long files, long failures, long issues, long reviewMillis, double scoreSum,
+                         double minScore, double maxScore, long[] bySeverity, long[] scoreBuckets,
+                         Map<String, Long> byCategory) {
+            this.files = files;
+            this.failures = failures;
+            this.issues = issues;
+            this.reviewMillis = reviewMillis;
+            this.scoreSum = scoreSum;
+            this.minScore = minScore;
+            this.maxScore = maxScore;
+            this.bySeverity = bySeverity;
+            this.scoreBuckets = scoreBuckets;
+            this.byCategory = Collections.unmodifiableMap(byCategory);
+        }
+
+        public Snapshot merge(Snapshot o) {
+            long[] severity = bySeverity.clone();
+            for (int i = 0; i < severity.length; i++) severity[i] += o.bySeverity[i];
+            long[] buckets = scoreBuckets.clone();
+            for (int i = 0; i < buckets.length; i++) buckets[i] += o.scoreBuckets[i];
+            Map<String, Long> categories = new TreeMap<>(byCategory);
+            o.byCategory.forEach((k, v) -> categories.merge(k, v, Long::sum));
+            return new Snapshot(files + o.files, failures + o.failures, issues + o.issues,
+                reviewMillis + o.reviewMillis, scoreSum + o.scoreSum, Math.min(minScore, o.minScore),
+                Math.max(maxScore, o.maxScore), severity, buckets, categories);
+        }
+
+        public long getFiles() { return files; }
+        public long getFailures() { return failures; }
+        public long getTotalIssues() { return issues; }
+        public long getReviewTimeMs() { return reviewMillis; }
+        public double getAverageScore() { return files == 0 ? 0 : scoreSum / files; }
+        /** Lowest score seen, or NaN with no files. */
+        public double getMinScore() { return files == 0 ? Double.NaN : minScore; }
+        /** Highest score seen, or NaN with no files. */
+        public double getMaxScore() { return files == 0 ? Double.NaN : maxScore; }
+        public long getIssues(ReviewSeverity severity) { return bySeverity[severity.ordinal()]; }
+        public long getCriticalIssues() { return getIssues(ReviewSeverity.CRITICAL); }
+        public long getMajorIssues() { return getIssues(ReviewSeverity.MAJOR); }
+        /** Issues per category, by name. */
+        public Map<String, Long> getIssuesByCategory() { return byCategory; }
+        /** Files per ten-point score bucket, lowest first. */
+        public long[] getScoreHistogram() { return scoreBuckets.clone(); }
+
+        @Override
+        public String toString() {
+            return String.format("files=%d failures=%d avgScore=%.1f issues=%d bySeverity=%s",
+                files, failures, getAverageScore(), issues, Arrays.toString(bySeverity));
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.ai.reviewer;
 
 import com.ai.reviewer.agent.CodeReviewerAgent;
 import com.ai.reviewer.model.ReviewComment;
+import com.ai.reviewer.model.ReviewIndex;
 import com.ai.reviewer.model.ReviewResult;
 import com.ai.reviewer.model.ReviewSeverity;
 import java.util.List;
@@ -96,8 +97,11 @@ public class ReviewUserProgram {
         System.out.println("║           DETAILED ISSUE BREAKDOWN                       ║");
         System.out.println("╚════════════════════════════════════════════════════════╝\n");
         
+        // Bucketed once; each level below is a lookup, not another pass over the comments
+        ReviewIndex index = ReviewIndex.of(result);
+        
         // Critical issues
-        List<ReviewComment> criticalIssues = result.getCommentsBySeverity(ReviewSeverity.CRITICAL);
+        List<ReviewComment> criticalIssues = index.getCommentsBySeverity(ReviewSeverity.CRITICAL);
         if (criticalIssues.size() > 0) {
             System.out.println("🔴 CRITICAL ISSUES (" + criticalIssues.size() + "):");
             for (ReviewComment issue : criticalIssues) {
@@ -108,7 +112,7 @@ public class ReviewUserProgram {
         }
         
         // Major issues
-        List<ReviewComment> majorIssues = result.getCommentsBySeverity(ReviewSeverity.MAJOR);
+        List<ReviewComment> majorIssues = index.getCommentsBySeverity(ReviewSeverity.MAJOR);
         if (majorIssues.size() > 0) {
             System.out.println("🟠 MAJOR ISSUES (" + majorIssues.size() + "):");
             for (ReviewComment issue : majorIssues) {
@@ -119,7 +123,7 @@ public class ReviewUserProgram {
         }
         
         // Minor issues
-        List<ReviewComment> minorIssues = result.getCommentsBySeverity(ReviewSeverity.MINOR);
+        List<ReviewComment> minorIssues = index.getCommentsBySeverity(ReviewSeverity.MINOR);
         if (minorIssues.size() > 0) {
             System.out.println("🟡 MINOR ISSUES (" + minorIssues.size() + "):");
             for (ReviewComment issue : minorIssues) {
@@ -130,7 +134,7 @@ public class ReviewUserProgram {
         }
         
         // Info issues
-        List<ReviewComment> infoIssues = result.getCommentsBySeverity(ReviewSeverity.INFO);
+        List<ReviewComment> infoIssues = index.getCommentsBySeverity(ReviewSeverity.INFO);
         if (infoIssues.size() > 0) {
             System.out.println("ℹ️  INFO ITEMS (" + infoIssues.size() + "):");
             for (ReviewComment issue : infoIssues) {
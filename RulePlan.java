@@ -0,0 +1,150 @@
+import com.ai.reviewer.analyzer.SyntaxTree;
+import com.ai.reviewer.analyzer.TokenPatternMatcher;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The rules a review runs, fixed once and sorted by the pass that needs
+ * them: {@link CodeReviewerAgent1.PatternRule}s share one precompiled
+ * automaton, other {@link CodeReviewerAgent1.TokenRule}s subscribe to the
+ * shared lexer pass, {@link CodeReviewerAgent1.TreeRule}s share one
+ * {@link SyntaxTree} built in that pass, and plain rules scan the text on
+ * their own. A disabled
+ * rule is not in the plan at all, so it costs nothing per file.
+ *
+ * {@link #load} takes the built-in rules from {@link #BUILT_IN}, creating
+ * only the enabled ones, plus any found by {@link ServiceLoader} under
+ * {@code META-INF/services/CodeReviewerAgent1$Rule}.
+ * Such rules go in the default package next to the built-ins, as public
+ * classes with a public no-argument constructor. A rule is off when its
+ * {@link CodeReviewerAgent1.Rule#configKey() config key} is {@code false},
+ * e.g. {@code -Dreview.rule.MissingDotRule=false} on the CLI, or
+ * {@code RulePlan.load(config::getString)} with a {@code ConfigManager}.
+ * Rules that are not {@link CodeReviewerAgent1.Rule#enabledByDefault()
+ * enabled by default} run only once it is set to anything else.
+ */
+final class RulePlan {
+
+    /**
+     * Built-in rules by name and default, so a rule that is off is never
+     * loaded or created; each entry must match its rule's
+     * {@link CodeReviewerAgent1.Rule#name()} and
+     * {@link CodeReviewerAgent1.Rule#enabledByDefault()}. Lambdas, not
+     * constructor references: linking a reference loads the class.
+     */
+    static final List<BuiltIn> BUILT_IN = List.of(
+        new BuiltIn("MissingDotRule", true, () -> new CodeReviewerAgent1.MissingDotRule()),
+        new BuiltIn("SystemOutRule", true, () -> new CodeReviewerAgent1.SystemOutRule()),
+        new BuiltIn("UnclosedConstructRule", true, () -> new CodeReviewerAgent1.UnclosedConstructRule()),
+        new BuiltIn("EmptyCatchRule", false, () -> new CodeReviewerAgent1.EmptyCatchRule()),
+        new BuiltIn("NestedLoopRule", false, () -> new CodeReviewerAgent1.NestedLoopRule()),
+        new BuiltIn("LongMethodRule", false, () -> new CodeReviewerAgent1.LongMethodRule()),
+        new BuiltIn("NamingRule", false, () -> new CodeReviewerAgent1.NamingRule()));
+
+    /** Plans per rule list; rule lists are long-lived constants. */
+    private static final Map<List<CodeReviewerAgent1.Rule>, RulePlan> PLANS = new ConcurrentHashMap<>();
+
+    /** Enabled rules, built-ins first in their fixed order, then discovered ones by name. */
+    final List<CodeReviewerAgent1.Rule> rules;
+    /** Indexes into {@link #rules}, per pass. */
+    final int[] patternRules, tokenRules, treeRules, plainRules;
+    /** Node kinds each tree rule is called for, tree rule i being treeRules[i]. */
+    final List<Set<SyntaxTree.Kind>> treeKinds;
+    /** All pattern rules' patterns in one automaton, pattern i being patternRules[i]; null if none. */
+    final TokenPatternMatcher matcher;
+
+    private RulePlan(List<CodeReviewerAgent1.Rule> rules) {
+        this.rules = rules;
+        List<Integer> patterns = new ArrayList<>(), tokens = new ArrayList<>(), trees = new ArrayList<>(),
+            plain = new ArrayList<>();
+        List<Set<SyntaxTree.Kind>> kinds = new ArrayList<>();
+        for (int r = 0; r < rules.size(); r++) {
+            CodeReviewerAgent1.Rule rule = rules.get(r);
+            if (rule instanceof CodeReviewerAgent1.PatternRule) {
+                patterns.add(r);
+            } else if (rule instanceof CodeReviewerAgent1.TokenRule) {
+                tokens.add(r);
+            } else if (rule instanceof CodeReviewerAgent1.TreeRule) {
+                trees.add(r);
+                kinds.add(Set.copyOf(((CodeReviewerAgent1.TreeRule) rule).kinds()));
+            } else {
+                plain.add(r);
+            }
+        }
+        this.patternRules = toArray(patterns);
+        this.tokenRules = toArray(tokens);
+        this.treeRules = toArray(trees);
+        this.treeKinds = List.copyOf(kinds);
+        this.plainRules = toArray(plain);
+        if (patternRules.length == 0) {
+            this.matcher = null;
+        } else {
+            List<String> compiled = new ArrayList<>();
+            for (int r : patternRules) compiled.add(((CodeReviewerAgent1.PatternRule) rules.get(r)).pattern());
+            this.matcher = TokenPatternMatcher.compile(compiled);
+        }
+    }
+
+    /** The plan for exactly these rules, in this order, built on first use. */
+    static RulePlan of(List<CodeReviewerAgent1.Rule> rules) {
+        RulePlan plan = PLANS.get(rules);
+        return plan != null ? plan : PLANS.computeIfAbsent(rules, rs -> new RulePlan(List.copyOf(rs)));
+    }
+
+    /**
+     * Plan of every registered rule {@code config} does not switch off, or
+     * switches on if it is off by default; {@code config} returns null for
+     * keys it does not set.
+     */
+    static RulePlan load(Function<String, String> config) {
+        List<CodeReviewerAgent1.Rule> enabled = new ArrayList<>();
+        Set<String> builtIn = new HashSet<>();
+        for (BuiltIn b : BUILT_IN) {
+            builtIn.add(b.name);
+            if (on(config.apply(CodeReviewerAgent1.Rule.CONFIG_PREFIX + b.name), b.enabledByDefault)) {
+                enabled.add(b.create.get());
+            }
+        }
+        // discovered rules by name; a class registered twice counts once
+        Set<Class<?>> seen = new HashSet<>();
+        List<CodeReviewerAgent1.Rule> discovered = new ArrayList<>();
+        for (CodeReviewerAgent1.Rule rule : ServiceLoader.load(CodeReviewerAgent1.Rule.class)) {
+            if (builtIn.contains(rule.name()) || !seen.add(rule.getClass())) continue;
+            if (on(config.apply(rule.configKey()), rule.enabledByDefault())) discovered.add(rule);
+        }
+        discovered.sort(Comparator.comparing(CodeReviewerAgent1.Rule::name));
+        enabled.addAll(discovered);
+        return of(List.copyOf(enabled));
+    }
+
+    private static boolean on(String setting, boolean byDefault) {
+        return setting == null ? byDefault : !"false".equalsIgnoreCase(setting);
+    }
+
+    /** A built-in rule's name and default, and how to create it. */
+    static final class BuiltIn {
+        final String name;
+        final boolean enabledByDefault;
+        final Supplier<CodeReviewerAgent1.Rule> create;
+
+        BuiltIn(String name, boolean enabledByDefault, Supplier<CodeReviewerAgent1.Rule> create) {
+            this.name = name;
+            this.enabledByDefault = enabledByDefault;
+            this.create = create;
+        }
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] out = new int[list.size()];
+        for (int i = 0; i < out.length; i++) out[i] = list.get(i);
+        return out;
+    }
+}
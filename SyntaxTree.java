@@ -0,0 +1,499 @@
+package com.ai.reviewer.analyzer;
+
+import com.ai.reviewer.analyzer.JavaLexer.Token;
+import com.ai.reviewer.analyzer.JavaLexer.TokenKind;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Outline of a Java file's structure: types, methods, loops, try/catch and
+ * other blocks, with their offsets, built in one pass over the
+ * {@link JavaLexer} tokens so that structural checks query the tree
+ * instead of each rescanning the text.
+ *
+ * Nodes are numbered in source order, which is also preorder, and live in
+ * parallel arrays; node {@code n}'s subtree is {@code n + 1} up to
+ * {@link #subtreeEnd(int)}, so walking it costs nothing per node beyond
+ * the visit. The parser is a heuristic that never fails: it looks only at
+ * brackets and the few tokens before each {@code {}, a stray {@code }} is
+ * ignored, and nodes still open at the end of the text end there.
+ * Loops without braces are nodes too, down to one whose body is only a
+ * {@code ;}; they end at their statement's {@code ;} or closing brace.
+ * An enum constant's body is an anonymous TYPE, so its methods are METHODs.
+ */
+public final class SyntaxTree {
+
+    public enum Kind {
+        /** A class, interface, enum, record, anonymous class or enum constant body. */
+        TYPE,
+        /** A method or constructor with a body; starts at its first modifier or annotation. */
+        METHOD,
+        /** for, enhanced for, while or do; starts at the keyword. */
+        LOOP,
+        TRY,
+        CATCH,
+        FINALLY,
+        /** Any other braces: if, else, switch, lambda and initializer bodies, array initializers. */
+        BLOCK
+    }
+
+    /** Called as each node closes, with its subtree complete. */
+    public interface NodeListener {
+        void onClose(SyntaxTree tree, int node);
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private final CharSequence text;
+    private int size;
+    private byte[] kinds = new byte[64];
+    private int[] starts = new int[64];
+    private int[] bodies = new int[64];
+    private int[] ends = new int[64];
+    private int[] parents = new int[64];
+    private int[] afters = new int[64];
+    private int[] nameStarts = new int[64];
+    private int[] nameEnds = new int[64];
+    private int[] tokens = new int[64];
+    private int[] loopDepths = new int[64];
+
+    private SyntaxTree(CharSequence text) {
+        this.text = text;
+    }
+
+    /** Parses {@code text} with a lexer pass of its own. */
+    public static SyntaxTree parse(CharSequence text) {
+        Builder b = new Builder(text, null);
+        new JavaLexer().subscribeAll(b).scan(text);
+        return b.tree();
+    }
+
+    public int size() { return size; }
+    public Kind kind(int n) { return KINDS[kinds[n]]; }
+    /** Offset where the construct begins: its keyword, first modifier, or the brace. */
+    public int start(int n) { return starts[n]; }
+    /** Offset of the opening brace, or -1 for a loop without braces. */
+    public int bodyStart(int n) { return bodies[n]; }
+    /** Offset just past the node; the text's length if it never closed. */
+    public int end(int n) { return ends[n]; }
+    public int parent(int n) { return parents[n]; }
+    /** One past the last node in {@code n}'s subtree. */
+    public int subtreeEnd(int n) { return afters[n]; }
+    /** Tokens, comments included, between the braces or in the loop's statement. */
+    public int tokens(int n) { return tokens[n]; }
+    /** Loops from {@code n} out to the nearest enclosing method or type, {@code n} included. */
+    public int loopDepth(int n) { return loopDepths[n]; }
+
+    public int firstChild(int n) {
+        return n + 1 < afters[n] ? n + 1 : -1;
+    }
+
+    public int nextSibling(int n) {
+        int s = afters[n];
+        return s < size && parents[s] == parents[n] ? s : -1;
+    }
+
+    /** The type's or method's name; null for anonymous types and other nodes. */
+    public String name(int n) {
+        return nameStarts[n] < 0 ? null : text.subSequence(nameStarts[n], nameEnds[n]).toString();
+    }
+
+    private int add(Kind kind, int start, int body, int parent, int tokenCount) {
+        if (size == kinds.length) {
+            int cap = size * 2;
+            kinds = Arrays.copyOf(kinds, cap);
+            starts = Arrays.copyOf(starts, cap);
+            bodies = Arrays.copyOf(bodies, cap);
+            ends = Arrays.copyOf(ends, cap);
+            parents = Arrays.copyOf(parents, cap);
+            afters = Arrays.copyOf(afters, cap);
+            nameStarts = Arrays.copyOf(nameStarts, cap);
+            nameEnds = Arrays.copyOf(nameEnds, cap);
+            tokens = Arrays.copyOf(tokens, cap);
+            loopDepths = Arrays.copyOf(loopDepths, cap);
+        }
+        int n = size++;
+        kinds[n] = (byte) kind.ordinal();
+        starts[n] = start;
+        bodies[n] = body;
+        ends[n] = -1;
+        parents[n] = parent;
+        afters[n] = -1;
+        nameStarts[n] = -1;
+        nameEnds[n] = -1;
+        // the count at the node's first token until it closes
+        tokens[n] = tokenCount;
+        int outer = parent < 0 || kinds[parent] == Kind.TYPE.ordinal() || kinds[parent] == Kind.METHOD.ordinal()
+            ? 0 : loopDepths[parent];
+        loopDepths[n] = outer + (kind == Kind.LOOP ? 1 : 0);
+        return n;
+    }
+
+    /**
+     * Builds a tree from the tokens of one lexer pass; subscribe it to every
+     * token kind. The tree is readable during the pass for nodes already
+     * closed, which {@code listener} is told about as they close.
+     */
+    public static final class Builder implements JavaLexer.TokenListener {
+        /** What the token before a {@code (} says about a {@code {} after the group. */
+        private static final int OTHER = 0, LOOP = 1, CATCH = 2, TRY = 3, CONTROL = 4, NAME = 5, NEW_NAME = 6;
+
+        private final SyntaxTree tree;
+        private final NodeListener listener;
+        private int tokenCount;
+
+        /** Open nodes, innermost last, with the paren depth each was opened at. */
+        private int[] open = new int[16];
+        private int[] openParens = new int[16];
+        private boolean[] braceless = new boolean[16];
+        /** An enum body still in its constants, before the first {@code ;} in it. */
+        private boolean[] constants = new boolean[16];
+        private int depth;
+
+        /** Open parens, each with what came before it and where its construct starts. */
+        private int[] parenOpeners = new int[16];
+        private int[] parenStarts = new int[16];
+        private int[] parenNameEnds = new int[16];
+        private int parens;
+
+        /** The last group to close while what follows may still open its body, else -1. */
+        private int group = -1;
+        private int groupStart;
+        private int groupNameEnd;
+
+        /** Start of the declaration or statement the next {@code {} belongs to, or -1. */
+        private int headerStart = -1;
+        /** After class, interface, enum or a record header, until the {@code {}. */
+        private boolean typeDeclared;
+        private boolean enumDeclared;
+        private int typeName = -1, typeNameEnd;
+        private boolean expectTypeName;
+        private boolean maybeRecord;
+        /** After {@code new}, until the group of the constructor call opens. */
+        private boolean sawNew;
+
+        private TokenKind prevKind;
+        private String prevKeyword;
+        private int prevStart, prevEnd;
+        private char prevChar;
+        /** A braced node closed inside a loop without braces; it ends unless else, catch or finally follows. */
+        private boolean childClosed;
+        /** A do loop's body closed; the while after it is its condition, not a loop. */
+        private boolean doClosed;
+        private boolean doWhile;
+
+        public Builder(CharSequence text, NodeListener listener) {
+            this.tree = new SyntaxTree(text);
+            this.listener = listener;
+        }
+
+        /** The tree; complete once the pass has ended. */
+        public SyntaxTree tree() { return tree; }
+
+        /** Nodes open at this point of the pass, outermost first. */
+        public int openCount() { return depth; }
+        public int open(int i) { return open[i]; }
+
+        /**
+         * Where the earliest node of {@code kinds} still open starts, or the
+         * declaration or parenthesized header being read does if that is
+         * earlier; {@code pos} if none. No node of those kinds closes later
+         * that starts before it.
+         */
+        public int openFrom(Set<Kind> kinds, int pos) {
+            int from = pos;
+            if (headerStart >= 0) from = Math.min(from, headerStart);
+            if (group >= 0) from = Math.min(from, groupStart);
+            // a ';' inside a for header ends the declaration, not the loop's start
+            if (parens > 0) from = Math.min(from, parenStarts[0]);
+            // not just the outermost: a loop without braces opens around what follows it,
+            // which may already hold a node starting before the loop does
+            for (int i = 0; i < depth; i++) {
+                int n = open[i];
+                if (kinds.contains(KINDS[tree.kinds[n]])) from = Math.min(from, tree.starts[n]);
+            }
+            return from;
+        }
+
+        @Override
+        public void onToken(Token t) {
+            TokenKind kind = t.kind();
+            if (kind == TokenKind.LINE_COMMENT || kind == TokenKind.BLOCK_COMMENT) {
+                tokenCount++;
+                return;
+            }
+            String keyword = kind == TokenKind.IDENTIFIER ? keyword(t) : null;
+            char c = t.firstChar();
+            if (childClosed) {
+                childClosed = false;
+                if (!"else".equals(keyword) && !"catch".equals(keyword) && !"finally".equals(keyword)) {
+                    closeBraceless(prevEnd);
+                }
+            }
+            if (doClosed) {
+                doClosed = false;
+                doWhile = "while".equals(keyword);
+            }
+
+            if (group >= 0 && c != '{' && !(group >= NAME && throwsClause(kind, c))) {
+                // a loop's body is braces or a statement up to its ';', which may be that ';' alone;
+                // "do ;" is left out, as its while would close it only after the condition
+                if (group == LOOP && (c != ';' || tree.text.charAt(groupStart) != 'd')) openBraceless(groupStart);
+                group = -1;
+            }
+
+            if ("do".equals(keyword)) {
+                group = LOOP;
+                groupStart = t.start();
+            } else {
+                header(t, kind, keyword);
+                if (c == '(' && kind == TokenKind.OPEN_BRACKET) {
+                    pushParen(t);
+                } else if (c == ')' && kind == TokenKind.CLOSE_BRACKET) {
+                    popParen();
+                } else if (c == '{' && kind == TokenKind.OPEN_BRACKET) {
+                    openBraced(t);
+                } else if (c == '}' && kind == TokenKind.CLOSE_BRACKET) {
+                    closeBraced(t);
+                } else if (c == ';' && kind == TokenKind.OPERATOR) {
+                    endStatement(t);
+                } else if (c == ',' && inConstants()) {
+                    // the next constant's body starts at its own name
+                    resetHeader();
+                }
+            }
+
+            prevKind = kind;
+            prevKeyword = keyword;
+            prevStart = t.start();
+            prevEnd = t.end();
+            prevChar = c;
+            tokenCount++;
+        }
+
+        @Override
+        public void onEnd(int length) {
+            while (depth > 0) close(length);
+            for (int n = 0; n < tree.size; n++) {
+                if (tree.afters[n] < 0) tree.afters[n] = tree.size;
+            }
+        }
+
+        /** Notes where a declaration starts and whether it declares a type, and its name. */
+        private void header(Token t, TokenKind kind, String keyword) {
+            if (headerStart < 0) headerStart = t.start();
+            boolean identifier = kind == TokenKind.IDENTIFIER;
+            if (expectTypeName) {
+                expectTypeName = false;
+                if (identifier) {
+                    typeName = t.start();
+                    typeNameEnd = t.end();
+                }
+            }
+            if (maybeRecord) {
+                // "record" is a type only when a name follows it
+                maybeRecord = false;
+                if (identifier && keyword == null) {
+                    typeDeclared = true;
+                    typeName = t.start();
+                    typeNameEnd = t.end();
+                }
+            }
+            if (prevChar == '.') return;
+            if ("class".equals(keyword) || "interface".equals(keyword) || "enum".equals(keyword)) {
+                typeDeclared = true;
+                enumDeclared = "enum".equals(keyword);
+                expectTypeName = true;
+            } else if (identifier && t.is("record")) {
+                maybeRecord = true;
+            } else if ("new".equals(keyword)) {
+                sawNew = true;
+            }
+        }
+
+        /** Identifiers the parser cares about, interned to constants; null for the rest. */
+        private static String keyword(Token t) {
+            switch (t.length()) {
+                case 2: return t.is("do") ? "do" : t.is("if") ? "if" : null;
+                case 3: return t.is("for") ? "for" : t.is("try") ? "try" : t.is("new") ? "new" : null;
+                case 4: return t.is("else") ? "else" : t.is("enum") ? "enum" : null;
+                case 5: return t.is("while") ? "while" : t.is("catch") ? "catch" : t.is("class") ? "class" : null;
+                case 6: return t.is("switch") ? "switch" : null;
+                case 7: return t.is("finally") ? "finally" : null;
+                case 9: return t.is("interface") ? "interface" : null;
+                case 12: return t.is("synchronized") ? "synchronized" : null;
+                default: return null;
+            }
+        }
+
+        /** Tokens that may stand between a parameter list and the body: a throws clause. */
+        private static boolean throwsClause(TokenKind kind, char c) {
+            return kind == TokenKind.IDENTIFIER || c == '.' || c == ',' || c == '<' || c == '>' || c == '@';
+        }
+
+        private void pushParen(Token t) {
+            if (parens == parenOpeners.length) {
+                parenOpeners = Arrays.copyOf(parenOpeners, parens * 2);
+                parenStarts = Arrays.copyOf(parenStarts, parens * 2);
+                parenNameEnds = Arrays.copyOf(parenNameEnds, parens * 2);
+            }
+            int opener = OTHER;
+            int start = t.start();
+            if ("for".equals(prevKeyword) || ("while".equals(prevKeyword) && !doWhile)) {
+                opener = LOOP;
+                start = prevStart;
+            } else if ("catch".equals(prevKeyword)) {
+                opener = CATCH;
+                start = prevStart;
+            } else if ("try".equals(prevKeyword)) {
+                opener = TRY;
+                start = prevStart;
+            } else if ("if".equals(prevKeyword) || "switch".equals(prevKeyword)
+                    || "synchronized".equals(prevKeyword)) {
+                opener = CONTROL;
+            } else if (prevKind == TokenKind.IDENTIFIER && prevKeyword == null) {
+                opener = sawNew ? NEW_NAME : NAME;
+                start = prevStart;
+            }
+            doWhile = false;
+            sawNew = false;
+            parenOpeners[parens] = opener;
+            parenStarts[parens] = start;
+            parenNameEnds[parens] = prevEnd;
+            parens++;
+        }
+
+        private void popParen() {
+            if (parens == 0) return;
+            parens--;
+            int opener = parenOpeners[parens];
+            group = opener == OTHER ? -1 : opener;
+            groupStart = parenStarts[parens];
+            groupNameEnd = parenNameEnds[parens];
+        }
+
+        private void openBraced(Token t) {
+            Kind kind = Kind.BLOCK;
+            int start = t.start();
+            int name = -1, nameEnd = -1;
+            int g = group;
+            group = -1;
+            boolean inType = depth == 0 || tree.kinds[open[depth - 1]] == Kind.TYPE.ordinal();
+            boolean enumBody = typeDeclared && enumDeclared;
+            if (inConstants()) {
+                // X { ... } or X(args) { ... }: the constant's class body, not a block or a method
+                kind = Kind.TYPE;
+                start = headerStart;
+            } else if (g == LOOP) {
+                kind = Kind.LOOP;
+                start = groupStart;
+            } else if (g == CATCH) {
+                kind = Kind.CATCH;
+                start = groupStart;
+            } else if (g == TRY || "try".equals(prevKeyword)) {
+                kind = Kind.TRY;
+                start = g == TRY ? groupStart : prevStart;
+            } else if ("finally".equals(prevKeyword)) {
+                kind = Kind.FINALLY;
+                start = prevStart;
+            } else if (typeDeclared) {
+                kind = Kind.TYPE;
+                start = headerStart;
+                name = typeName;
+                nameEnd = typeNameEnd;
+            } else if (g == NEW_NAME) {
+                kind = Kind.TYPE;
+                start = groupStart;
+            } else if (g == NAME && inType && parens == 0) {
+                kind = Kind.METHOD;
+                start = headerStart;
+                name = groupStart;
+                nameEnd = groupNameEnd;
+            }
+            int n = tree.add(kind, start, t.start(), depth == 0 ? -1 : open[depth - 1], tokenCount + 1);
+            tree.nameStarts[n] = name;
+            tree.nameEnds[n] = nameEnd;
+            push(n, false);
+            constants[depth - 1] = enumBody;
+            resetHeader();
+        }
+
+        private void closeBraced(Token t) {
+            closeBraceless(prevEnd);
+            resetHeader();
+            group = -1;
+            // a stray '}' closes nothing
+            if (depth == 0) return;
+            int n = open[depth - 1];
+            // the do keyword is the only loop start beginning with 'd'
+            boolean isDo = tree.kinds[n] == Kind.LOOP.ordinal() && tree.text.charAt(tree.starts[n]) == 'd';
+            // parens left open inside the block are given up on
+            parens = openParens[depth - 1];
+            close(t.end());
+            childClosed = depth > 0 && braceless[depth - 1];
+            doClosed = isDo;
+        }
+
+        private void endStatement(Token t) {
+            if (inConstants()) constants[depth - 1] = false;
+            resetHeader();
+            group = -1;
+            if (depth > 0 && braceless[depth - 1] && openParens[depth - 1] == parens) {
+                // the loop's statement, and with it any loops without braces around it
+                closeBraceless(t.end());
+            }
+        }
+
+        private void openBraceless(int start) {
+            int n = tree.add(Kind.LOOP, start, -1, depth == 0 ? -1 : open[depth - 1], tokenCount);
+            push(n, true);
+        }
+
+        private void closeBraceless(int end) {
+            while (depth > 0 && braceless[depth - 1]) {
+                int n = open[depth - 1];
+                close(end);
+                // the while after "do x();" is its condition, as after "do { x(); }"
+                if (tree.text.charAt(tree.starts[n]) == 'd') doClosed = true;
+            }
+        }
+
+        /** Whether the innermost open node is an enum body still in its constants, outside any parens. */
+        private boolean inConstants() {
+            return depth > 0 && constants[depth - 1] && parens == openParens[depth - 1];
+        }
+
+        private void push(int n, boolean withoutBraces) {
+            if (depth == open.length) {
+                open = Arrays.copyOf(open, depth * 2);
+                openParens = Arrays.copyOf(openParens, depth * 2);
+                braceless = Arrays.copyOf(braceless, depth * 2);
+                constants = Arrays.copyOf(constants, depth * 2);
+            }
+            open[depth] = n;
+            openParens[depth] = parens;
+            braceless[depth] = withoutBraces;
+            constants[depth] = false;
+            depth++;
+        }
+
+        private void close(int end) {
+            int n = open[--depth];
+            tree.ends[n] = end;
+            // tokens held the count at the node's first token until now
+            tree.tokens[n] = tokenCount - tree.tokens[n];
+            tree.afters[n] = tree.size;
+            if (listener != null) listener.onClose(tree, n);
+        }
+
+        private void resetHeader() {
+            headerStart = -1;
+            typeDeclared = false;
+            enumDeclared = false;
+            typeName = -1;
+            expectTypeName = false;
+            maybeRecord = false;
+            sawNew = false;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.ai.reviewer.analyzer;
+
+import com.ai.reviewer.analyzer.JavaLexer.Token;
+import com.ai.reviewer.analyzer.JavaLexer.TokenListener;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Matches many identifier-sequence patterns at once, in one pass over the
+ * identifier tokens of a file.
+ *
+ * A pattern is a space-separated list of elements, each either a literal
+ * identifier or {@code *} for any identifier, e.g. {@code "System out println"}
+ * or {@code "* *"}. The tokens of a match must follow each other with only
+ * whitespace in between. The literal words of every pattern are interned into
+ * one symbol table (any other identifier is a single "other" symbol), and the
+ * patterns are compiled into one DFA over those symbols when the matcher is
+ * built. Each token then costs a hash lookup and an array index, no matter
+ * how many patterns there are.
+ *
+ * Like {@code Matcher.find()}, matches of the same pattern never overlap: the
+ * leftmost one wins, and the next one starts after it.
+ *
+ * A compiled matcher is immutable and can be shared between threads; per-file
+ * state lives in the listener returned by {@link #listener}.
+ */
+public final class TokenPatternMatcher {
+
+    /** Receives matches from one file's scan. */
+    public interface MatchListener {
+        void onMatch(int pattern, Match match);
+
+        /**
+         * Called after every token with the position where the earliest
+         * still-possible match starts, or the token's end if none is pending.
+         * No later match can start before it.
+         */
+        default void onAdvance(int pos) {}
+    }
+
+    /** Token spans of the current match; reused, valid only during the callback. */
+    public static final class Match {
+        private int[] starts;
+        private int[] ends;
+        private int last;
+        private int length;
+
+        /** Number of tokens in the match. */
+        public int length() { return length; }
+        public int start(int element) { return starts[slot(element)]; }
+        public int end(int element) { return ends[slot(element)]; }
+
+        private int slot(int element) {
+            return Math.floorMod(last - (length - 1) + element, starts.length);
+        }
+    }
+
+    private static final String ANY = "*";
+
+    private final int patternCount;
+    private final int[] lengths;
+    private final int maxLength;
+    /** Symbol table: open addressing over the literal words. */
+    private final String[] words;
+    private final int[] wordSymbols;
+    private final int maxWordLength;
+    private final int otherSymbol;
+    /** delta[state][symbol] is the next state. */
+    private final int[][] delta;
+    /** emits[state][symbol] lists the patterns completed by that transition. */
+    private final int[][][] emits;
+    /** Longest partial match alive in each state, in tokens. */
+    private final int[] depth;
+
+    private TokenPatternMatcher(List<String[]> patterns) {
+        patternCount = patterns.size();
+        lengths = new int[patternCount];
+        int longest = 1;
+        Map<String, Integer> symbols = new LinkedHashMap<>();
+        for (int p = 0; p < patternCount; p++) {
+            String[] elems = patterns.get(p);
+            lengths[p] = elems.length;
+            longest = Math.max(longest, elems.length);
+            for (String e : elems) {
+                if (!e.equals(ANY)) symbols.putIfAbsent(e, symbols.size());
+            }
+        }
+        maxLength = longest;
+        otherSymbol = symbols.size();
+
+        int capacity = Integer.highestOneBit(Math.max(4, symbols.size() * 2 + 1)) << 1;
+        words = new String[capacity];
+        wordSymbols = new int[capacity];
+        int maxWord = 0;
+        for (Map.Entry<String, Integer> e : symbols.entrySet()) {
+            int slot = hash(e.getKey(), 0, e.getKey().length()) & (capacity - 1);
+            while (words[slot] != null) slot = (slot + 1) & (capacity - 1);
+            words[slot] = e.getKey();
+            wordSymbols[slot] = e.getValue();
+            maxWord = Math.max(maxWord, e.getKey().length());
+        }
+        maxWordLength = maxWord;
+
+        // Subset construction; a state is the set of partial matches (pattern, tokens matched)
+        int[][] matchers = new int[patternCount][];
+        for (int p = 0; p < patternCount; p++) {
+            String[] elems = patterns.get(p);
+            matchers[p] = new int[elems.length];
+            for (int k = 0; k < elems.length; k++) {
+                matchers[p][k] = elems[k].equals(ANY) ? -1 : symbols.get(elems[k]);
+            }
+        }
+        int symbolCount = otherSymbol + 1;
+        Map<List<Long>, Integer> ids = new HashMap<>();
+        List<List<Long>> states = new ArrayList<>();
+        List<int[]> deltas = new ArrayList<>();
+        List<int[][]> outs = new ArrayList<>();
+        Deque<Integer> work = new ArrayDeque<>();
+        ids.put(List.of(), 0);
+        states.add(List.of());
+        work.add(0);
+        while (!work.isEmpty()) {
+            int id = work.poll();
+            List<Long> items = states.get(id);
+            int[] row = new int[symbolCount];
+            int[][] outRow = new int[symbolCount][];
+            for (int sym = 0; sym < symbolCount; sym++) {
+                TreeSet<Long> next = new TreeSet<>();
+                List<Integer> completed = new ArrayList<>();
+                // live partial matches first, then a fresh start for every pattern
+                for (long item : items) {
+                    step(matchers, (int) (item >>> 32), (int) item, sym, next, completed);
+                }
+                for (int p = 0; p < patternCount; p++) {
+                    step(matchers, p, 0, sym, next, completed);
+                }
+                // a completed match consumes the tokens of any later-started one
+                for (int p : completed) {
+                    next.removeIf(item -> (int) (item >>> 32) == p);
+                }
+                List<Long> key = List.copyOf(next);
+                Integer target = ids.get(key);
+                if (target == null) {
+                    target = states.size();
+                    ids.put(key, target);
+                    states.add(key);
+                    work.add(target);
+                }
+                row[sym] = target;
+                outRow[sym] = completed.stream().distinct().mapToInt(Integer::intValue).toArray();
+            }
+            // states are numbered in the order they are queued, so id == deltas.size()
+            deltas.add(row);
+            outs.add(outRow);
+        }
+        delta = deltas.toArray(new int[0][]);
+        emits = outs.toArray(new int[0][][]);
+        depth = new int[states.size()];
+        for (int s = 0; s < states.size(); s++) {
+            for (long item : states.get(s)) depth[s] = Math.max(depth[s], (int) item);
+        }
+    }
+
+    /**
+     * Compiles the given patterns; pattern numbers in {@link MatchListener#onMatch}
+     * are indexes into this list.
+     */
+    public static TokenPatternMatcher compile(List<String> patterns) {
+        List<String[]> parsed = new ArrayList<>(patterns.size());
+        for (String p : patterns) {
+            String[] elems = p.trim().split("\\s+");
+            if (elems.length == 0 || elems[0].isEmpty()) {
+                throw new IllegalArgumentException("Empty pattern");
+            }
+            parsed.add(elems);
+        }
+        return new TokenPatternMatcher(parsed);
+    }
+
+    public int patternCount() { return patternCount; }
+
+    /** Number of DFA states the patterns compiled to. */
+    public int stateCount() { return delta.length; }
+
+    /**
+     * Creates the per-file listener; subscribe it to
+     * {@link JavaLexer.TokenKind#IDENTIFIER} tokens.
+     */
+    public Scan listener(MatchListener listener) {
+        return new Scan(listener);
+    }
+
+    /**
+     * One file's matching state. It can be saved between tokens and restored
+     * later, so a scan can resume mid-file.
+     */
+    public final class Scan implements TokenListener {
+        private final MatchListener listener;
+        private final Match match = new Match();
+        private int state;
+        private int lastIndex = -2;
+        private int lastEnd;
+        private int slot = -1;
+
+        private Scan(MatchListener listener) {
+            this.listener = listener;
+            match.starts = new int[maxLength];
+            match.ends = new int[maxLength];
+        }
+
+        @Override
+        public void onToken(Token t) {
+            if (t.index() != lastIndex + 1 || t.start() <= lastEnd) state = 0;
+            slot = (slot + 1) % maxLength;
+            match.starts[slot] = t.start();
+            match.ends[slot] = t.end();
+            match.last = slot;
+
+            int sym = symbol(t);
+            int[] done = emits[state][sym];
+            state = delta[state][sym];
+            for (int p : done) {
+                match.length = lengths[p];
+                listener.onMatch(p, match);
+            }
+            lastIndex = t.index();
+            lastEnd = t.end();
+
+            int d = depth[state];
+            if (d == 0) {
+                listener.onAdvance(t.end());
+            } else {
+                match.length = d;
+                listener.onAdvance(match.start(0));
+            }
+        }
+
+        /**
+         * Snapshot of the current state, or null when no match is pending
+         * (the state then does not depend on earlier tokens at all).
+         */
+        public Object save() {
+            if (state == 0) return null;
+            return new Saved(state, lastIndex, lastEnd, slot, match.starts.clone(), match.ends.clone());
+        }
+
+        /** Restores a {@link #save()} snapshot; null restores the initial state. */
+        public void restore(Object saved) {
+            if (saved == null) {
+                state = 0;
+                lastIndex = -2;
+                return;
+            }
+            Saved s = (Saved) saved;
+            state = s.state;
+            lastIndex = s.lastIndex;
+            lastEnd = s.lastEnd;
+            slot = s.slot;
+            System.arraycopy(s.starts, 0, match.starts, 0, s.starts.length);
+            System.arraycopy(s.ends, 0, match.ends, 0, s.ends.length);
+        }
+    }
+
+    /**
+     * Moves a {@link Scan#save()} snapshot to the coordinates of an edited
+     * text: positions at or after {@code from} move by {@code delta}, token
+     * indexes at or after {@code indexFrom} by {@code indexDelta}.
+     */
+    public static Object shift(Object saved, int from, int delta, int indexFrom, int indexDelta) {
+        if (saved == null) return null;
+        Saved s = (Saved) saved;
+        int[] starts = s.starts.clone();
+        int[] ends = s.ends.clone();
+        for (int i = 0; i < starts.length; i++) {
+            if (starts[i] >= from) starts[i] += delta;
+            if (ends[i] >= from) ends[i] += delta;
+        }
+        return new Saved(s.state,
+            s.lastIndex >= indexFrom ? s.lastIndex + indexDelta : s.lastIndex,
+            s.lastEnd >= from ? s.lastEnd + delta : s.lastEnd,
+            s.slot, starts, ends);
+    }
+
+    private static final class Saved {
+        final int state, lastIndex, lastEnd, slot;
+        final int[] starts, ends;
+
+        Saved(int state, int lastIndex, int lastEnd, int slot, int[] starts, int[] ends) {
+            this.state = state;
+            this.lastIndex = lastIndex;
+            this.lastEnd = lastEnd;
+            this.slot = slot;
+            this.starts = starts;
+            this.ends = ends;
+        }
+    }
+
+    // ---------- Helpers ----------
+
+    private static void step(int[][] matchers, int p, int k, int sym, TreeSet<Long> next, List<Integer> completed) {
+        int want = matchers[p][k];
+        if (want != -1 && want != sym) return;
+        if (k + 1 == matchers[p].length) {
+            completed.add(p);
+        } else {
+            next.add(((long) p << 32) | (k + 1));
+        }
+    }
+
+    private int symbol(Token t) {
+        int len = t.length();
+        if (len > maxWordLength) return otherSymbol;
+        int mask = words.length - 1;
+        int slot = hash(t.text(), t.start(), t.end()) & mask;
+        String w;
+        while ((w = words[slot]) != null) {
+            if (t.is(w)) return wordSymbols[slot];
+            slot = (slot + 1) & mask;
+        }
+        return otherSymbol;
+    }
+
+    private static int hash(CharSequence s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) h = 31 * h + s.charAt(i);
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        return "TokenPatternMatcher[" + patternCount + " patterns, " + delta.length + " states]";
+    }
+}
@@ -1,23 +1,91 @@
 package com.ai.reviewer;
 
 import static spark.Spark.*;
+import com.ai.reviewer.agent.CodeReviewerAgent;
+import com.ai.reviewer.agent.FindingsStore;
+import com.ai.reviewer.agent.ParallelReviewEngine;
+import com.ai.reviewer.util.ReviewMetrics;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.MultipartConfigElement;
+import javax.servlet.http.Part;
+import spark.Request;
+import spark.Response;
+import spark.Route;
 
 public class WebServer {
 
-    public static void main(String[] args) {
+    /** Commit recorded for reviews that do not name one. */
+    private static final String NO_COMMIT = "unversioned";
+
+    public static void main(String[] args) throws IOException {
         port(4567); // Set the port for the web server
 
-        Gson gson = new Gson();
-        CodeReviewerAgent reviewerAgent = new CodeReviewerAgent();
+        // Results go out through the streaming adapters in ReviewJson, registered once here
+        Gson gson = ReviewJson.gson();
+        ReviewMetrics metrics = ReviewMetrics.GLOBAL;
+        metrics.setEnabled(Boolean.parseBoolean(System.getProperty("reviewer.metrics", "true")));
+        // Reviews run on their own bounded pool, never on Jetty's request threads
+        int workers = Integer.getInteger("review.workers", Runtime.getRuntime().availableProcessors());
+        int queueCapacity = Integer.getInteger("review.queue", workers * 16);
+        ReviewJobs jobs = new ReviewJobs(workers, queueCapacity, CodeReviewerAgent::new);
+
+        // With -Dreview.store, every finished review is kept for /findings queries
+        String storeDir = System.getProperty("review.store");
+        FindingsStore store = storeDir == null ? null : new FindingsStore(Path.of(storeDir));
+        if (store != null) {
+            jobs.setStore(store);
+            ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "findings-flush");
+                t.setDaemon(true);
+                return t;
+            });
+            // queries see sealed segments only, so seal what came in every few seconds
+            long flushSeconds = Long.getLong("review.store.flushSeconds", 10);
+            flusher.scheduleWithFixedDelay(() -> {
+                try {
+                    store.flush();
+                } catch (IOException e) {
+                    System.err.println("Could not flush findings: " + e.getMessage());
+                }
+            }, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    System.err.println("Could not flush findings: " + e.getMessage());
+                }
+            }));
+        }
 
-        // Define the /review endpoint
-        post("/review", (req, res) -> {
+        // Define the /review endpoint: queue the review and answer 202 with a job id
+        post("/review", timed(metrics, "/review", (req, res) -> {
             res.type("application/json");
 
             // Get the file path from the request
@@ -33,23 +101,144 @@ public class WebServer {
                 return gson.toJson(Map.of("error", "File not found: " + filePath));
             }
 
-            // Read the file content
-            StringBuilder code = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    code.append(line).append("\n");
+            String commit = req.queryParams("commit");
+            ReviewJobs.Job job = jobs.submit(file.toPath(), commit == null ? NO_COMMIT : commit);
+            if (job == null) {
+                // Queue full: shed the request rather than stacking up work
+                res.status(429);
+                res.header("Retry-After", String.valueOf(jobs.retryAfterSeconds()));
+                return gson.toJson(Map.of("error", "Review queue is full, retry later"));
+            }
+
+            res.status(202);
+            res.header("Location", "/review/" + job.getId());
+            return writeJob(gson, res, job);
+        }));
+
+        // Poll a queued review; the result is included once it is done
+        get("/review/:id", timed(metrics, "/review/{id}", (req, res) -> {
+            res.type("application/json");
+            ReviewJobs.Job job = jobs.get(req.params(":id"));
+            if (job == null) {
+                res.status(404);
+                return gson.toJson(Map.of("error", "Unknown or expired job: " + req.params(":id")));
+            }
+            return writeJob(gson, res, job);
+        }));
+
+        // Batches fan out on a separate pool; a few may run at once, the rest get 429
+        ParallelReviewEngine batchEngine = new ParallelReviewEngine(workers);
+        ThreadLocal<CodeReviewerAgent> batchAgents = ThreadLocal.withInitial(CodeReviewerAgent::new);
+        int maxBatches = Integer.getInteger("review.batches", 4);
+        Semaphore batchSlots = new Semaphore(maxBatches);
+        // files not yet reviewed, per batch being streamed
+        Set<AtomicInteger> batchesLeft = ConcurrentHashMap.newKeySet();
+        metrics.gauge("reviewer_batches_active", "Batch requests being streamed.",
+            () -> maxBatches - batchSlots.availablePermits());
+
+        // Review many files in one request; results stream back as NDJSON as they finish
+        post("/review/batch", timed(metrics, "/review/batch", (req, res) -> {
+            // before reading the body: a rejected batch should cost nothing
+            if (!batchSlots.tryAcquire()) {
+                res.type("application/json");
+                res.status(429);
+                res.header("Retry-After", String.valueOf(batchRetryAfter(jobs, batchesLeft)));
+                return gson.toJson(Map.of("error", "Too many batches in progress, retry later"));
+            }
+            AtomicInteger left = new AtomicInteger();
+            try {
+                List<BatchItem> items;
+                try {
+                    items = readBatch(req, gson);
+                } catch (IllegalArgumentException | JsonParseException e) {
+                    res.type("application/json");
+                    res.status(400);
+                    return gson.toJson(Map.of("error", "Invalid batch: " + e.getMessage()));
                 }
-            } catch (Exception e) {
-                res.status(500);
-                return gson.toJson(Map.of("error", "Error reading file: " + e.getMessage()));
+                left.set(items.size());
+                batchesLeft.add(left);
+                String commit = req.queryParamOrDefault("commit", NO_COMMIT);
+                res.type("application/x-ndjson");
+                res.status(200);
+                Writer out = new BufferedWriter(
+                    new OutputStreamWriter(res.raw().getOutputStream(), StandardCharsets.UTF_8));
+                batchEngine.reviewAsCompleted(items,
+                    item -> ReviewJobs.review(batchAgents.get(), item.name, item.source()),
+                    (index, item, result, error) -> {
+                        // one JsonWriter per line: a top-level writer accepts a single value
+                        JsonWriter line = gson.newJsonWriter(out);
+                        line.beginObject();
+                        line.name("index").value(index);
+                        line.name("file").value(item.name);
+                        if (error != null) {
+                            line.name("error").value(error.getClass().getSimpleName() + ": " + error.getMessage());
+                        } else {
+                            line.name("result");
+                            ReviewJson.writeResult(gson, line, result);
+                            if (store != null && result != null) {
+                                ReviewJobs.record(store, commit, item.path != null ? item.path.toString() : item.name,
+                                    result);
+                            }
+                        }
+                        line.endObject();
+                        out.write('\n');
+                        out.flush();
+                        left.decrementAndGet();
+                    });
+                out.flush();
+            } finally {
+                batchesLeft.remove(left);
+                batchSlots.release();
             }
+            return "";
+        }));
 
-            // Perform the code review
-            ReviewResult result = reviewerAgent.reviewCode(file.getName(), code.toString());
+        // Query recorded findings by commit, path prefix, rule and severity, without reviewing again
+        get("/findings", timed(metrics, "/findings", (req, res) -> {
+            res.type("application/json");
+            if (store == null) {
+                res.status(404);
+                return gson.toJson(Map.of("error", "No findings store; start the server with -Dreview.store=DIR"));
+            }
+            FindingsStore.Query query = new FindingsStore.Query()
+                .commit(req.queryParams("commit"))
+                .pathPrefix(req.queryParams("path"))
+                .rule(req.queryParams("rule"))
+                .severity(req.queryParams("severity"));
+            String since = req.queryParams("since");
+            if (since != null && req.queryParams("commit") == null) {
+                res.status(400);
+                return gson.toJson(Map.of("error", "since needs a commit to compare with"));
+            }
+            int limit;
+            try {
+                limit = Integer.parseInt(req.queryParamOrDefault("limit", "1000"));
+            } catch (NumberFormatException e) {
+                res.status(400);
+                return gson.toJson(Map.of("error", "limit must be a number"));
+            }
+            // pick up segments written by CLI runs sharing the directory
+            store.refresh();
+            Map<String, Object> body = new LinkedHashMap<>();
+            if (since != null) {
+                List<FindingsStore.Finding> added = store.newSince(since, req.queryParams("commit"), query);
+                body.put("count", added.size());
+                body.put("findings", added.subList(0, Math.min(limit, added.size())));
+            } else {
+                body.put("count", store.count(query));
+                if (!Boolean.parseBoolean(req.queryParams("countOnly"))) {
+                    body.put("findings", store.find(query.limit(limit)));
+                }
+            }
+            return gson.toJson(body);
+        }));
 
-            // Return the review result as JSON
-            return gson.toJson(result);
+        // Per-rule counters, queue depth and latency histograms, in Prometheus text format
+        get("/metrics", (req, res) -> {
+            res.type("text/plain; version=0.0.4");
+            StringBuilder out = new StringBuilder();
+            metrics.writePrometheus(out);
+            return out.toString();
         });
 
         // Define a simple health check endpoint
@@ -60,4 +249,150 @@ public class WebServer {
 
         System.out.println("Web server is running on http://localhost:4567");
     }
-}
\ No newline at end of file
+
+    /** Wraps a route so its handling time lands in a per-route latency histogram. */
+    private static Route timed(ReviewMetrics metrics, String route, Route handler) {
+        ReviewMetrics.Histogram latency = metrics.histogram("reviewer_http_request_seconds",
+            "Time to handle a request, including streaming the response.",
+            "route=\"" + route + "\"", ReviewJobs.LATENCY_BUCKETS);
+        return (req, res) -> {
+            long start = System.nanoTime();
+            try {
+                return handler.handle(req, res);
+            } finally {
+                latency.observeNanos(System.nanoTime() - start);
+            }
+        };
+    }
+
+    /** Streams a job's status, and its result once done, straight to the response. */
+    private static String writeJob(Gson gson, Response res, ReviewJobs.Job job) throws IOException {
+        // read the status first; it publishes the result and error fields
+        ReviewJobs.Status status = job.getStatus();
+        JsonWriter out = ReviewJson.writer(gson, res.raw().getOutputStream());
+        out.beginObject();
+        out.name("id").value(job.getId());
+        out.name("status").value(status.name().toLowerCase());
+        out.name("file").value(job.getFile().getFileName().toString());
+        if (status == ReviewJobs.Status.DONE) {
+            out.name("result");
+            ReviewJson.writeResult(gson, out, job.getResult());
+        }
+        if (status == ReviewJobs.Status.FAILED) out.name("error").value(job.getError());
+        out.endObject();
+        out.flush();
+        return "";
+    }
+
+    /** One file of a batch: a path on the server, or a source sent inline. */
+    private static final class BatchItem {
+        final String name;
+        final Path path;
+        final String source;
+
+        BatchItem(String name, Path path, String source) {
+            this.name = name;
+            this.path = path;
+            this.source = source;
+        }
+
+        String source() throws Exception {
+            return source != null ? source : Files.readString(path);
+        }
+    }
+
+    /**
+     * Rough time until a batch slot frees: until the running batch with the
+     * fewest files left is done, all of them sharing the review pool.
+     */
+    private static long batchRetryAfter(ReviewJobs jobs, Set<AtomicInteger> batchesLeft) {
+        long fewest = Long.MAX_VALUE;
+        int running = 0;
+        for (AtomicInteger left : batchesLeft) {
+            fewest = Math.min(fewest, left.get());
+            running++;
+        }
+        // all slots may still be reading their bodies
+        return running == 0 ? jobs.retryAfterSeconds(1) : jobs.retryAfterSeconds(fewest * running);
+    }
+
+    /**
+     * Reads the files of a batch from repeated {@code filePath} query params,
+     * an NDJSON body of {@code {"path": ...}} or {@code {"fileName": ..., "source": ...}}
+     * lines, or a multipart body whose file parts are sources.
+     */
+    private static List<BatchItem> readBatch(Request req, Gson gson) throws Exception {
+        List<BatchItem> items = new ArrayList<>();
+        String[] paths = req.queryParamsValues("filePath");
+        if (paths != null) {
+            for (String p : paths) items.add(pathItem(p));
+        }
+
+        String contentType = req.contentType() == null ? "" : req.contentType();
+        if (contentType.startsWith("multipart/form-data")) {
+            req.attribute("org.eclipse.jetty.multipartConfig",
+                new MultipartConfigElement(System.getProperty("java.io.tmpdir")));
+            for (Part part : req.raw().getParts()) {
+                String fileName = part.getSubmittedFileName();
+                if (fileName == null) continue;
+                try (InputStream in = part.getInputStream()) {
+                    items.add(new BatchItem(fileName, null, new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+                }
+            }
+        } else if (contentType.startsWith("application/x-ndjson")) {
+            BufferedReader reader = new BufferedReader(
+                new InputStreamReader(req.raw().getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            for (int number = 1; (line = reader.readLine()) != null; number++) {
+                if (line.isBlank()) continue;
+                JsonElement parsed;
+                try {
+                    parsed = JsonParser.parseString(line);
+                } catch (JsonParseException e) {
+                    throw new IllegalArgumentException("line " + number + ": " + e.getMessage());
+                }
+                if (!parsed.isJsonObject()) {
+                    throw new IllegalArgumentException("line " + number + ": expected a JSON object");
+                }
+                JsonObject obj = parsed.getAsJsonObject();
+                String source = stringField(obj, "source", number);
+                String path = stringField(obj, "path", number);
+                if (source != null) {
+                    String name = stringField(obj, "fileName", number);
+                    items.add(new BatchItem(name != null ? name : "inline-" + items.size(), null, source));
+                } else if (path != null) {
+                    try {
+                        items.add(pathItem(path));
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("line " + number + ": " + e.getMessage());
+                    }
+                } else {
+                    throw new IllegalArgumentException("line " + number + ": needs \"path\" or \"source\"");
+                }
+            }
+        }
+
+        if (items.isEmpty()) {
+            throw new IllegalArgumentException("no files given");
+        }
+        return items;
+    }
+
+    /** {@code obj}'s string {@code name}, or null if absent; anything but a string is a bad line. */
+    private static String stringField(JsonObject obj, String name, int line) {
+        JsonElement value = obj.get(name);
+        if (value == null || value.isJsonNull()) return null;
+        if (!value.isJsonPrimitive() || !value.getAsJsonPrimitive().isString()) {
+            throw new IllegalArgumentException("line " + line + ": \"" + name + "\" must be a string");
+        }
+        return value.getAsString();
+    }
+
+    private static BatchItem pathItem(String filePath) {
+        File file = new File(filePath);
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("File not found: " + filePath);
+        }
+        return new BatchItem(file.getName(), file.toPath(), null);
+    }
+}
@@ -0,0 +1,266 @@
+package com.ai.reviewer.analyzer;
+
+import com.ai.reviewer.analyzer.JavaLexer.Token;
+import com.ai.reviewer.analyzer.JavaLexer.TokenKind;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+/**
+ * Winnowing fingerprints of Java source (Schleimer, Wilkerson and Aiken),
+ * for finding code copied between files. The text is lexed into a
+ * normalized token stream: comments are dropped, every literal becomes one
+ * token and every identifier that is not a keyword another, so renaming
+ * variables or changing constants does not hide a copy. Each run of
+ * {@code k} tokens gets a rolling hash, and from every {@code window}
+ * consecutive hashes the smallest is kept.
+ *
+ * Two texts sharing a normalized run of at least {@code k + window - 1}
+ * tokens are guaranteed to share a fingerprint for it, and equal runs
+ * select equal fingerprints in both, so matches line up fingerprint by
+ * fingerprint. Instances are immutable and safe to share between threads.
+ */
+public final class Winnower {
+
+    public static final int DEFAULT_K = 20;
+    public static final int DEFAULT_WINDOW = 10;
+
+    private static final long BASE = 0x100000001B3L;
+    private static final long IDENTIFIER = mix(1);
+    private static final long LITERAL = mix(2);
+
+    /** Hashes of the keywords, sorted; identifiers with these hashes keep their text. */
+    private static final long[] KEYWORDS = keywordHashes(
+        "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
+        "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float",
+        "for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native",
+        "new", "package", "private", "protected", "public", "return", "short", "static", "strictfp",
+        "super", "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void",
+        "volatile", "while", "true", "false", "null", "var", "record", "yield");
+
+    private final int k;
+    private final int window;
+
+    public Winnower() {
+        this(DEFAULT_K, DEFAULT_WINDOW);
+    }
+
+    public Winnower(int k, int window) {
+        if (k < 1 || window < 1) {
+            throw new IllegalArgumentException("k and window must be positive");
+        }
+        this.k = k;
+        this.window = window;
+    }
+
+    public int k() { return k; }
+    public int window() { return window; }
+
+    public Fingerprints fingerprint(CharSequence text) {
+        TokenStream tokens = new TokenStream(text);
+        new JavaLexer().subscribe(tokens, EnumSet.complementOf(
+            EnumSet.of(TokenKind.LINE_COMMENT, TokenKind.BLOCK_COMMENT))).scan(text);
+        return winnow(tokens);
+    }
+
+    private Fingerprints winnow(TokenStream tokens) {
+        int grams = tokens.count - k + 1;
+        if (grams <= 0) return new Fingerprints(tokens.count, 0, new long[0], new int[0], new int[0], new int[0]);
+
+        long[] hashes = new long[grams];
+        long h = 0;
+        long drop = 1; // BASE^k, to take the outgoing token back out
+        for (int i = 0; i < k; i++) {
+            h = h * BASE + tokens.hashes[i];
+            drop *= BASE;
+        }
+        hashes[0] = mix(h);
+        for (int i = 1; i < grams; i++) {
+            h = h * BASE + tokens.hashes[i + k - 1] - tokens.hashes[i - 1] * drop;
+            hashes[i] = mix(h);
+        }
+
+        Fingerprints.Builder out = new Fingerprints.Builder(tokens.count, grams / window + 1);
+        int w = Math.min(window, grams);
+        int min = -1;
+        for (int end = w - 1; end < grams; end++) {
+            int start = end - w + 1;
+            if (min < start) {
+                // the minimum left the window: rescan, rightmost minimum wins
+                min = start;
+                for (int i = start + 1; i <= end; i++) {
+                    if (hashes[i] <= hashes[min]) min = i;
+                }
+                out.add(hashes[min], min, tokens.firstLines[min], tokens.lastLines[min + k - 1]);
+            } else if (hashes[end] <= hashes[min]) {
+                min = end;
+                out.add(hashes[min], min, tokens.firstLines[min], tokens.lastLines[min + k - 1]);
+            }
+        }
+        return out.build();
+    }
+
+    /** Collects the normalized token hashes with each token's first and last line. */
+    private static final class TokenStream implements JavaLexer.TokenListener {
+        private final CharSequence text;
+        long[] hashes = new long[256];
+        int[] firstLines = new int[256];
+        int[] lastLines = new int[256];
+        int count;
+        private int pos;
+        private int line = 1;
+
+        TokenStream(CharSequence text) {
+            this.text = text;
+        }
+
+        @Override
+        public void onToken(Token token) {
+            if (count == hashes.length) {
+                hashes = Arrays.copyOf(hashes, count * 2);
+                firstLines = Arrays.copyOf(firstLines, count * 2);
+                lastLines = Arrays.copyOf(lastLines, count * 2);
+            }
+            firstLines[count] = lineAt(token.start());
+            lastLines[count] = lineAt(Math.max(token.start(), token.end() - 1));
+            hashes[count++] = normalized(token);
+        }
+
+        /** Line of {@code p}; positions only move forward. */
+        private int lineAt(int p) {
+            for (; pos < p; pos++) {
+                if (text.charAt(pos) == '\n') line++;
+            }
+            return line;
+        }
+
+        private long normalized(Token token) {
+            switch (token.kind()) {
+                case STRING:
+                case CHAR:
+                case NUMBER:
+                    return LITERAL;
+                case IDENTIFIER:
+                    long h = hash(text, token.start(), token.end());
+                    return Arrays.binarySearch(KEYWORDS, h) >= 0 ? h : IDENTIFIER;
+                default:
+                    return hash(text, token.start(), token.end());
+            }
+        }
+    }
+
+    /** FNV-1a over the chars, finished with {@link #mix}. */
+    private static long hash(CharSequence s, int start, int end) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = start; i < end; i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    /** Murmur3 finalizer; spreads the rolling hash so window minima are evenly placed. */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long[] keywordHashes(String... keywords) {
+        long[] out = new long[keywords.length];
+        for (int i = 0; i < keywords.length; i++) out[i] = hash(keywords[i], 0, keywords[i].length());
+        Arrays.sort(out);
+        return out;
+    }
+
+    /**
+     * The fingerprints selected from one text, in text order. Fingerprint
+     * {@code i} stands for the {@code k} tokens from token {@link #token(int)},
+     * which span lines {@link #firstLine(int)} to {@link #lastLine(int)}.
+     */
+    public static final class Fingerprints {
+        private final int tokens;
+        private final int size;
+        private final long[] hashes;
+        private final int[] starts;
+        private final int[] firstLines;
+        private final int[] lastLines;
+
+        private Fingerprints(int tokens, int size, long[] hashes, int[] starts, int[] firstLines, int[] lastLines) {
+            this.tokens = tokens;
+            this.size = size;
+            this.hashes = hashes;
+            this.starts = starts;
+            this.firstLines = firstLines;
+            this.lastLines = lastLines;
+        }
+
+        /** Normalized tokens in the text. */
+        public int tokens() { return tokens; }
+        public int size() { return size; }
+        public long hash(int i) { return hashes[i]; }
+        public int token(int i) { return starts[i]; }
+        public int firstLine(int i) { return firstLines[i]; }
+        public int lastLine(int i) { return lastLines[i]; }
+
+        public void writeTo(DataOutput out) throws IOException {
+            out.writeInt(tokens);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeLong(hashes[i]);
+                out.writeInt(starts[i]);
+                out.writeInt(firstLines[i]);
+                out.writeInt(lastLines[i]);
+            }
+        }
+
+        public static Fingerprints readFrom(DataInput in) throws IOException {
+            int tokens = in.readInt();
+            int size = in.readInt();
+            if (tokens < 0 || size < 0 || size > tokens) throw new StreamCorruptedException("corrupt fingerprints");
+            Builder b = new Builder(tokens, size);
+            for (int i = 0; i < size; i++) b.add(in.readLong(), in.readInt(), in.readInt(), in.readInt());
+            return b.build();
+        }
+
+        private static final class Builder {
+            private final int tokens;
+            private long[] hashes;
+            private int[] starts, firstLines, lastLines;
+            private int size;
+
+            Builder(int tokens, int capacity) {
+                this.tokens = tokens;
+                capacity = Math.max(capacity, 1);
+                hashes = new long[capacity];
+                starts = new int[capacity];
+                firstLines = new int[capacity];
+                lastLines = new int[capacity];
+            }
+
+            void add(long hash, int start, int firstLine, int lastLine) {
+                if (size == hashes.length) {
+                    hashes = Arrays.copyOf(hashes, size * 2);
+                    starts = Arrays.copyOf(starts, size * 2);
+                    firstLines = Arrays.copyOf(firstLines, size * 2);
+                    lastLines = Arrays.copyOf(lastLines, size * 2);
+                }
+                hashes[size] = hash;
+                starts[size] = start;
+                firstLines[size] = firstLine;
+                lastLines[size] = lastLine;
+                size++;
+            }
+
+            Fingerprints build() {
+                return new Fingerprints(tokens, size, hashes, starts, firstLines, lastLines);
+            }
+        }
+    }
+}
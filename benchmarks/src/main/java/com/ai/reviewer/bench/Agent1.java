@@ -0,0 +1,82 @@
+package com.ai.reviewer.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Access to {@code CodeReviewerAgent1} internals from a named package.
+ *
+ * The CLI reviewer lives in the default package with package-private types,
+ * which Java code cannot reference directly, and JMH refuses benchmarks in
+ * the default package. The handles below are static finals, so the JIT
+ * inlines them and the indirection does not show up in the measurements.
+ */
+final class Agent1 {
+
+    private static final String OUTER = "CodeReviewerAgent1";
+
+    private static final MethodHandle NEW_LINE_INDEX;
+    private static final MethodHandle LINE_OF;
+    private static final MethodHandle APPLY;
+    private static final MethodHandle REVIEW;
+
+    static {
+        try {
+            Class<?> lineIndex = nested("LineIndex");
+            Class<?> rule = nested("Rule");
+
+            Constructor<?> ctor = lineIndex.getDeclaredConstructor(CharSequence.class);
+            ctor.setAccessible(true);
+            NEW_LINE_INDEX = MethodHandles.lookup().unreflectConstructor(ctor)
+                .asType(MethodType.methodType(Object.class, String.class));
+
+            LINE_OF = unreflect(lineIndex.getDeclaredMethod("lineOf", int.class))
+                .asType(MethodType.methodType(int.class, Object.class, int.class));
+            APPLY = unreflect(rule.getDeclaredMethod("apply", CharSequence.class, lineIndex))
+                .asType(MethodType.methodType(List.class, Object.class, String.class, Object.class));
+            REVIEW = unreflect(Class.forName(OUTER).getDeclaredMethod("review", CharSequence.class))
+                .asType(MethodType.methodType(List.class, String.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Agent1() {}
+
+    static Object newLineIndex(String text) throws Throwable {
+        return (Object) NEW_LINE_INDEX.invokeExact(text);
+    }
+
+    static int lineOf(Object index, int pos) throws Throwable {
+        return (int) LINE_OF.invokeExact(index, pos);
+    }
+
+    /** Creates one of the built-in rules by its simple class name. */
+    static Object newRule(String name) throws ReflectiveOperationException {
+        Constructor<?> ctor = nested(name).getDeclaredConstructor();
+        ctor.setAccessible(true);
+        return ctor.newInstance();
+    }
+
+    static List<?> apply(Object rule, String text, Object index) throws Throwable {
+        return (List<?>) APPLY.invokeExact(rule, text, index);
+    }
+
+    /** The full fused review of one file, as the CLI runs it. */
+    static List<?> review(String text) throws Throwable {
+        return (List<?>) REVIEW.invokeExact(text);
+    }
+
+    private static Class<?> nested(String name) throws ClassNotFoundException {
+        return Class.forName(OUTER + "$" + name);
+    }
+
+    private static MethodHandle unreflect(Method m) throws IllegalAccessException {
+        m.setAccessible(true);
+        return MethodHandles.lookup().unreflect(m);
+    }
+}
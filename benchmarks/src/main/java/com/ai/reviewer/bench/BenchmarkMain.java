@@ -0,0 +1,34 @@
+package com.ai.reviewer.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results as JSON to
+ * {@code target/jmh-results/<timestamp>.json}, so runs can be diffed over
+ * time. Accepts the usual JMH command line, e.g. a benchmark regex or
+ * {@code -p corpus=LARGE}; an explicit {@code -rff} wins over the default file.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Path.of("target", "jmh-results");
+        Files.createDirectories(dir);
+        String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+
+        Options cli = new CommandLineOptions(args);
+        Options opts = new OptionsBuilder()
+            .parent(cli)
+            .resultFormat(cli.getResultFormat().orElse(ResultFormatType.JSON))
+            .result(cli.getResult().orElse(dir.resolve(stamp + ".json").toString()))
+            .build();
+        new Runner(opts).run();
+    }
+}
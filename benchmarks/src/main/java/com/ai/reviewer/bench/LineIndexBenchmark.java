@@ -0,0 +1,73 @@
+package com.ai.reviewer.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@code LineIndex} construction, and {@code lineOf} lookups both in source
+ * order (what the rules do) and in random order.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LineIndexBenchmark {
+
+    private static final int LOOKUPS = 4096;
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public SyntheticCorpus corpus;
+
+    private String text;
+    private Object index;
+    private int[] sorted;
+    private int[] shuffled;
+
+    @Setup
+    public void setUp() throws Throwable {
+        text = corpus.generate();
+        index = Agent1.newLineIndex(text);
+        Random rnd = new Random(7);
+        shuffled = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) shuffled[i] = rnd.nextInt(text.length());
+        sorted = shuffled.clone();
+        Arrays.sort(sorted);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object build() throws Throwable {
+        return Agent1.newLineIndex(text);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int lineOfSorted() throws Throwable {
+        int sum = 0;
+        for (int pos : sorted) sum += Agent1.lineOf(index, pos);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int lineOfRandom() throws Throwable {
+        int sum = 0;
+        for (int pos : shuffled) sum += Agent1.lineOf(index, pos);
+        return sum;
+    }
+}
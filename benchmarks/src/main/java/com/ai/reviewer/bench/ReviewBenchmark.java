@@ -0,0 +1,71 @@
+package com.ai.reviewer.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end reviews of one file: the fused {@code CodeReviewerAgent1} rule
+ * pass, and {@code CodeReviewerAgent.reviewCode}.
+ *
+ * The agent is looked up by name, since the reviewer jar does not always
+ * contain it; without it only {@link #agentReviewCode} fails.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReviewBenchmark {
+
+    @Param
+    public SyntheticCorpus corpus;
+
+    private static final String AGENT = "com.ai.reviewer.agent.CodeReviewerAgent";
+
+    private String text;
+    /** {@code agent.reviewCode(name, text)}; null when the agent is not on the class path. */
+    private MethodHandle reviewCode;
+
+    @Setup
+    public void setUp() throws Throwable {
+        text = corpus.generate();
+        Class<?> type;
+        try {
+            type = Class.forName(AGENT);
+        } catch (ClassNotFoundException e) {
+            return;
+        }
+        Object agent = type.getConstructor(String.class, String.class).newInstance("Benchmark Reviewer", "1.0.0");
+        reviewCode = MethodHandles.publicLookup()
+            .findVirtual(type, "reviewCode", MethodType.methodType(
+                Class.forName("com.ai.reviewer.model.ReviewResult"), String.class, String.class))
+            .bindTo(agent)
+            .asType(MethodType.methodType(Object.class, String.class, String.class));
+    }
+
+    @Benchmark
+    public List<?> agent1Review() throws Throwable {
+        return Agent1.review(text);
+    }
+
+    @Benchmark
+    public Object agentReviewCode() throws Throwable {
+        if (reviewCode == null) throw new IllegalStateException(AGENT + " is not on the class path");
+        return reviewCode.invokeExact("Generated.java", text);
+    }
+}
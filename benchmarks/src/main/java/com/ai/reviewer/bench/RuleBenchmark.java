@@ -0,0 +1,51 @@
+package com.ai.reviewer.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Each {@code CodeReviewerAgent1} rule in isolation, through its standalone
+ * {@code Rule.apply} entry point.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RuleBenchmark {
+
+    @Param({"MissingDotRule", "SystemOutRule", "UnclosedConstructRule", "EmptyCatchRule", "NestedLoopRule",
+        "LongMethodRule"})
+    public String rule;
+
+    @Param
+    public SyntheticCorpus corpus;
+
+    private Object instance;
+    private String text;
+    private Object index;
+
+    @Setup
+    public void setUp() throws Throwable {
+        instance = Agent1.newRule(rule);
+        text = corpus.generate();
+        index = Agent1.newLineIndex(text);
+    }
+
+    @Benchmark
+    public List<?> apply() throws Throwable {
+        return Agent1.apply(instance, text, index);
+    }
+}
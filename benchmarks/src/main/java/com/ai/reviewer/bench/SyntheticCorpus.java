@@ -0,0 +1,101 @@
+package com.ai.reviewer.bench;
+
+import java.util.Random;
+
+/**
+ * Deterministic synthetic Java sources used as benchmark inputs.
+ *
+ * Every shape is generated from a fixed seed, so two runs (or two machines)
+ * benchmark byte-identical text and their JSON results stay comparable.
+ */
+public enum SyntheticCorpus {
+
+    /** A typical hand-written class, about 2 KB. */
+    SMALL {
+        @Override String generate() { return classes(2 * 1024); }
+    },
+    /** A large hand-written class, about 100 KB. */
+    MEDIUM {
+        @Override String generate() { return classes(100 * 1024); }
+    },
+    /** Generated-code sized input, about 1.5 MB. */
+    LARGE {
+        @Override String generate() { return classes(1536 * 1024); }
+    },
+    /** Brackets nested 50,000 levels deep, then closed again. */
+    NESTED_BRACKETS {
+        @Override String generate() {
+            int depth = 50_000;
+            StringBuilder sb = new StringBuilder("class Nested {\n  int[] v = ");
+            for (int i = 0; i < depth; i++) sb.append(i % 3 == 0 ? "(" : i % 3 == 1 ? "{" : "[");
+            sb.append('0');
+            for (int i = depth - 1; i >= 0; i--) sb.append(i % 3 == 0 ? ")" : i % 3 == 1 ? "}" : "]");
+            return sb.append(";\n}\n").toString();
+        }
+    },
+    /** A single 1 MB string literal on one line, as in minified or embedded resources. */
+    HUGE_STRING {
+        @Override String generate() {
+            StringBuilder sb = new StringBuilder("class Blob {\n  static final String DATA = \"");
+            Random rnd = new Random(SEED);
+            for (int i = 0; i < 1024 * 1024; i++) {
+                char c = (char) ('a' + rnd.nextInt(26));
+                sb.append(i % 97 == 0 ? "\\\"" : String.valueOf(c));
+            }
+            return sb.append("\";\n}\n").toString();
+        }
+    },
+    /** Thousands of brackets that are never closed. */
+    UNMATCHED_BRACKETS {
+        @Override String generate() {
+            StringBuilder sb = new StringBuilder("class Broken {\n");
+            for (int i = 0; i < 20_000; i++) {
+                sb.append("  void m").append(i).append("( {\n");
+            }
+            return sb.toString();
+        }
+    };
+
+    private static final long SEED = 42;
+
+    abstract String generate();
+
+    /** Appends varied, mostly well-formed classes until {@code size} chars are reached. */
+    private static String classes(int size) {
+        Random rnd = new Random(SEED);
+        StringBuilder sb = new StringBuilder(size + 4096);
+        sb.append("package com.example.generated;\n\nimport java.util.*;\n\n");
+        int cls = 0;
+        while (sb.length() < size) {
+            sb.append("/** Generated class ").append(cls).append(". */\n");
+            sb.append("public class Generated").append(cls).append(" {\n");
+            sb.append("    public static int COUNTER = ").append(rnd.nextInt(10_000)).append(";\n");
+            sb.append("    private final List<String> items = new ArrayList<>();\n\n");
+            for (int m = 0; m < 8; m++) {
+                sb.append("    public int method").append(m).append("(int a, String s) {\n");
+                sb.append("        // compute something for ").append(m).append('\n');
+                sb.append("        int total = a * ").append(rnd.nextInt(100)).append(";\n");
+                sb.append("        for (int i = 0; i < items.size(); i++) {\n");
+                sb.append("            if (items.get(i).equals(s)) {\n");
+                switch (rnd.nextInt(4)) {
+                    case 0: sb.append("                System out println(\"found \" + s);\n"); break;
+                    case 1: sb.append("                items remove(i);\n"); break;
+                    case 2: sb.append("                char c = '\\'';\n"); break;
+                    default: sb.append("                System.out.println(\"match: {\" + i);\n");
+                }
+                sb.append("                total += i;\n");
+                sb.append("            }\n");
+                sb.append("        }\n");
+                sb.append("        try {\n");
+                sb.append("            return Math.max(total, s.length());\n");
+                sb.append("        } catch (Exception e) {\n");
+                sb.append("        }\n");
+                sb.append("        return 0;\n");
+                sb.append("    }\n\n");
+            }
+            sb.append("}\n\n");
+            cls++;
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,39 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Input for the appcds profile's training run of QuickReview. It touches
+ * comments, literals, brackets, loops and try/catch so the archive holds
+ * the classes a real review loads, and has no findings, so the run exits
+ * with 0 and any other status means the build is broken.
+ */
+class Training {
+    static final String GREETING = "text with (brackets) and \"quotes\"";
+    static final char QUOTE = '\'';
+    static final String BLOCK = """
+        a text block { with braces }
+        """;
+
+    final Map<String, Integer> counts = new TreeMap<>();
+    final List<String> words = new ArrayList<>();
+
+    Training() {
+        for (String w : GREETING.split(" ")) {
+            counts.merge(w, 1, Integer::sum);
+        }
+        int i = 0;
+        while (i < words.size()) {
+            i++;
+        }
+        try {
+            words.add(BLOCK.strip());
+        } catch (RuntimeException e) {
+            // nothing to recover
+            throw e;
+        }
+        Runnable r = () -> words.clear();
+        r.run();
+    }
+}
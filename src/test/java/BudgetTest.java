@@ -0,0 +1,97 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class BudgetTest {
+
+    /** Enough tokens for the watchdog to check several times. */
+    private static final String TEXT = "class A {\n" + "    int x = 1;\n".repeat(5000) + "}\n";
+
+    private final List<String> found = new ArrayList<>();
+    private final List<String> incomplete = new ArrayList<>();
+
+    @AfterEach
+    void restore() {
+        CodeReviewerAgent1.budget = CodeReviewerAgent1.Budget.NONE;
+    }
+
+    @Test
+    void plainRuleOverTimeIsSkipped() {
+        CodeReviewerAgent1.budget = CodeReviewerAgent1.Budget.NONE.withRuleMillis(20);
+        review(new RereadingRule(0));
+        assertEquals(List.of(), found);
+        assertEquals(List.of("RereadingRule skipped after exceeding its time budget of 20 ms"), incomplete);
+    }
+
+    @Test
+    void plainRuleOverMemoryIsSkipped() {
+        CodeReviewerAgent1.budget = CodeReviewerAgent1.Budget.NONE.withRuleMegabytes(1);
+        review(new RereadingRule(64 * 1024));
+        assertEquals(List.of(), found);
+        assertEquals(List.of("RereadingRule skipped after exceeding its memory budget of 1 MB"), incomplete);
+    }
+
+    @Test
+    void plainRuleTimeIsNotChargedInTheTokenPass() {
+        // slower than the budget, but without reading: the watchdog used to skip it after the fact
+        CodeReviewerAgent1.budget = CodeReviewerAgent1.Budget.NONE.withRuleMillis(20);
+        review(new SleepingRule());
+        assertEquals(List.of("slept"), found);
+        assertEquals(List.of(), incomplete);
+    }
+
+    private void review(CodeReviewerAgent1.Rule rule) {
+        List<CodeReviewerAgent1.Rule> rules = List.of(new CodeReviewerAgent1.SystemOutRule(), rule);
+        CodeReviewerAgent1.review(TEXT, new CodeReviewerAgent1.LineIndex().reset(TEXT), rules,
+            new CodeReviewerAgent1.SuggestionSink() {
+                @Override
+                public void accept(CodeReviewerAgent1.Suggestion s) {
+                    found.add(s.msg);
+                }
+
+                @Override
+                public void incomplete(String reason) {
+                    incomplete.add(reason);
+                }
+            });
+    }
+
+    /** Scans the text over and over for a second, allocating {@code garbage} bytes per pass. */
+    static final class RereadingRule implements CodeReviewerAgent1.Rule {
+        private final int garbage;
+
+        RereadingRule(int garbage) {
+            this.garbage = garbage;
+        }
+
+        @Override
+        public List<CodeReviewerAgent1.Suggestion> apply(CharSequence text, CodeReviewerAgent1.LineIndex index) {
+            long end = System.nanoTime() + 1_000_000_000L;
+            List<byte[]> kept = new ArrayList<>();
+            int ones = 0;
+            while (System.nanoTime() < end) {
+                for (int i = 0; i < text.length(); i++) {
+                    if (text.charAt(i) == '1') ones++;
+                    if (garbage > 0 && i % 1024 == 0) kept.add(new byte[garbage]);
+                }
+                kept.clear();
+            }
+            return List.of(new CodeReviewerAgent1.Suggestion(1, ones + " ones"));
+        }
+    }
+
+    static final class SleepingRule implements CodeReviewerAgent1.Rule {
+        @Override
+        public List<CodeReviewerAgent1.Suggestion> apply(CharSequence text, CodeReviewerAgent1.LineIndex index) {
+            try {
+                Thread.sleep(60);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of(new CodeReviewerAgent1.Suggestion(1, "slept"));
+        }
+    }
+}
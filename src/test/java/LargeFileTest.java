@@ -0,0 +1,44 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LargeFileTest {
+
+    private static final String TEXT = "class A {\n    café bar();\n}\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void mappedFileReportsLikeAReadOne() throws IOException {
+        Path small = Files.writeString(Files.createDirectory(dir.resolve("small")).resolve("A.java"), TEXT);
+        StringBuilder padded = new StringBuilder(TEXT);
+        // past the size from which files are memory-mapped
+        while (padded.length() < 2 * 1024 * 1024) padded.append("// padding\n");
+        Path large = Files.writeString(Files.createDirectory(dir.resolve("large")).resolve("A.java"), padded);
+        String report = CodeReviewerAgent1.reviewFile(small);
+        assertEquals(1, report.lines().filter(l -> l.contains("Line 2:")).count(), report);
+        assertEquals(report, CodeReviewerAgent1.reviewFile(large));
+    }
+
+    @Test
+    void malformedFileReportsLikeAReadOne() throws IOException {
+        // café in ISO-8859-1, which reads as malformed UTF-8
+        byte[] text = TEXT.replace("é", "\u0000").getBytes(StandardCharsets.UTF_8);
+        text[TEXT.indexOf('\u00e9')] = (byte) 0xE9;
+        Path small = Files.write(Files.createDirectory(dir.resolve("small")).resolve("A.java"), text);
+        ByteArrayOutputStream padded = new ByteArrayOutputStream();
+        padded.write(text);
+        while (padded.size() < 2 * 1024 * 1024) padded.write("// padding\n".getBytes(StandardCharsets.UTF_8));
+        Path large = Files.write(Files.createDirectory(dir.resolve("large")).resolve("A.java"), padded.toByteArray());
+        String report = CodeReviewerAgent1.reviewFile(small);
+        assertEquals(1, report.lines().filter(l -> l.contains("Line 2:") && l.contains("caf\uFFFD")).count(), report);
+        assertEquals(report, CodeReviewerAgent1.reviewFile(large));
+    }
+}
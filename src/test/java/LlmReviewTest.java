@@ -0,0 +1,94 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LlmReviewTest {
+
+    private static final String REPLY = "{\"choices\":[{\"message\":{\"content\":\"{\\\"1\\\":\\\"use a logger\\\"}\"}}]}";
+
+    @TempDir
+    Path dir;
+
+    private HttpServer server;
+    private final List<String> prompts = new CopyOnWriteArrayList<>();
+    private final List<String> keys = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            prompts.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            keys.add(String.valueOf(exchange.getRequestHeaders().getFirst("Authorization")));
+            byte[] body = REPLY.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    void sendsTheFindingsOfTheReviewWithoutAKey() throws Exception {
+        Path file = Files.writeString(dir.resolve("A.java"),
+            "class A {\n    void run() {\n        System.out.println(\"a\");\n    }\n}\n");
+        String out = run(file);
+        assertTrue(out.contains("Model review for "), out);
+        assertTrue(out.contains("use a logger"), out);
+        assertEquals(1, prompts.size());
+        assertTrue(prompts.get(0).contains("System.out.println"), prompts.get(0));
+        assertEquals(List.of("null"), keys);
+    }
+
+    @Test
+    void cleanFilesAreNotSent() throws Exception {
+        Path file = Files.writeString(dir.resolve("B.java"), "class B {\n    int x;\n}\n");
+        String out = run(file);
+        assertEquals(List.of(), prompts);
+        assertTrue(!out.contains("Model review for "), out);
+    }
+
+    @Test
+    void openAiKeyStaysWithOpenAi() {
+        assertNull(CodeReviewerAgent1.llmKey(URI.create("http://localhost:8089/v1/chat/completions"), null));
+        assertNull(CodeReviewerAgent1.llmKey(URI.create("https://api.openai.com.example/v1"), null));
+        assertEquals(System.getenv("PATH"), CodeReviewerAgent1.llmKey(URI.create("http://localhost/"), "PATH"));
+    }
+
+    private String run(Path file) throws Exception {
+        URI endpoint = URI.create("http://" + server.getAddress().getHostString() + ":"
+            + server.getAddress().getPort() + "/v1/chat/completions");
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+        try {
+            CodeReviewerAgent1.main(new String[] {"--llm", endpoint.toString(), file.toString()});
+        } finally {
+            System.setOut(stdout);
+        }
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+}
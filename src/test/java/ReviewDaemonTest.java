@@ -0,0 +1,103 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReviewDaemonTest {
+
+    @TempDir
+    Path dir;
+
+    private Path root;
+    private ReviewDaemon daemon;
+
+    @BeforeEach
+    void start() throws Exception {
+        root = Files.createDirectory(dir.resolve("workspace"));
+        Files.writeString(root.resolve("A.java"), "class A {\n    int x;\n}\n");
+        Files.writeString(Files.createDirectories(root.resolve("src")).resolve("B.java"), "class B {}\n");
+        Files.writeString(Files.createDirectories(root.resolve("target/generated")).resolve("G.java"), "class G {}\n");
+        Files.createDirectories(root.resolve(".git/objects"));
+        Files.writeString(dir.resolve("Secret.java"), "class Secret {\n    void run() { System.out.println(); }\n}\n");
+        Files.writeString(Files.createDirectories(root.resolve("gone/deeper")).resolve("C.java"), "class C {}\n");
+        daemon = new ReviewDaemon(root, "**.java", 1);
+        Thread thread = new Thread(() -> {
+            try {
+                daemon.run();
+            } catch (IOException | InterruptedException e) {
+                // closed by the test
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        for (int i = 0; i < 500 && !Files.exists(daemon.socketFile()); i++) Thread.sleep(10);
+    }
+
+    @AfterEach
+    void stop() {
+        daemon.close();
+    }
+
+    @Test
+    void reviewsFilesInTheWorkspace() throws IOException {
+        assertTrue(request("REVIEW\nA.java\n").startsWith("OK 0 0\n"));
+    }
+
+    @Test
+    void skipsBuildAndVersionControlDirectories() throws IOException {
+        // the workspace, src/ and gone/deeper/ only
+        assertTrue(request("STATUS\n").matches("OK files=3 .* watched=4\n"), request("STATUS\n"));
+    }
+
+    @Test
+    void deletedDirectoryTakesItsFilesAlong() throws Exception {
+        Files.delete(root.resolve("gone/deeper/C.java"));
+        Files.delete(root.resolve("gone/deeper"));
+        Files.delete(root.resolve("gone"));
+        String status = request("STATUS\n");
+        for (int i = 0; i < 500 && !status.startsWith("OK files=2 "); i++) {
+            Thread.sleep(10);
+            status = request("STATUS\n");
+        }
+        assertTrue(status.startsWith("OK files=2 "), status);
+    }
+
+    @Test
+    void onlyTheOwnerMayConnect() throws IOException {
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(daemon.socketFile())));
+    }
+
+    @Test
+    void refusesPathsOutOfTheWorkspace() throws IOException {
+        String reply = request("REVIEW\n../Secret.java\n" + dir.resolve("Secret.java") + "\n");
+        assertTrue(reply.startsWith("OK 0 2\n"), reply);
+        assertTrue(reply.contains("not in the workspace"), reply);
+    }
+
+    @Test
+    void refusesLinksOutOfTheWorkspace() throws IOException {
+        Files.createSymbolicLink(root.resolve("Link.java"), dir.resolve("Secret.java"));
+        String reply = request("REVIEW\nLink.java\n");
+        assertEquals("OK 0 1\n", reply.substring(0, reply.indexOf('\n') + 1), reply);
+    }
+
+    private String request(String text) throws IOException {
+        try (SocketChannel socket = SocketChannel.open(UnixDomainSocketAddress.of(daemon.socketFile()))) {
+            socket.write(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+            socket.shutdownOutput();
+            return new String(Channels.newInputStream(socket).readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
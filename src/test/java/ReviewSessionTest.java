@@ -0,0 +1,74 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ReviewSessionTest {
+
+    /** Pieces that open and close comments, strings, blocks and findings across edits. */
+    private static final String[] PIECES = {
+        "\n", "\n", " ", "{", "}", "(", ")", ";", "\"", "'", "/*", "*/", "//", "\\",
+        "System.out.println(x);", "System.err.print(1)", "for (int i = 0; i < n; i++) ",
+        "while (true) ", "try { f(); } catch (Exception e) {}", "catch (E e) { }",
+        "void m() {", "class C {", "x = a .b;", "String s = \"a\\\"b\";", "// TODO later\n",
+        "/* XXX */", "int x;", "if (a) {", "\"\"\"\ntext\n\"\"\"",
+    };
+
+    private static final List<CodeReviewerAgent1.Rule> RULES = new ArrayList<>(CodeReviewerAgent1.rules());
+
+    static {
+        RULES.add(new CodeReviewerAgent1.EmptyCatchRule());
+        RULES.add(new CodeReviewerAgent1.NestedLoopRule());
+    }
+
+    @Test
+    void editsMatchAFullReview() {
+        Random random = new Random(9);
+        for (int round = 0; round < 200; round++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = random.nextInt(60); i > 0; i--) text.append(piece(random));
+            ReviewSession session = new ReviewSession(text, RULES);
+            for (int edit = 0; edit < 25; edit++) {
+                int offset = random.nextInt(text.length() + 1);
+                int removed = random.nextInt(Math.min(8, text.length() - offset) + 1);
+                String inserted = random.nextInt(3) == 0 ? "" : piece(random);
+                text.replace(offset, offset + removed, inserted);
+                session.edit(offset, removed, inserted);
+                assertEquals(text.toString(), session.text());
+                assertEquals(full(text), describe(session.suggestions()),
+                    "round " + round + ", edit " + edit + " of:\n" + text);
+            }
+        }
+    }
+
+    @Test
+    void typingRescansLessThanTheFile() {
+        StringBuilder text = new StringBuilder("class A {\n");
+        for (int i = 0; i < 500; i++) text.append("    int f").append(i).append(" = ").append(i).append(";\n");
+        text.append("}\n");
+        ReviewSession session = new ReviewSession(text, CodeReviewerAgent1.rules());
+        int offset = text.indexOf("f250");
+        session.edit(offset, 0, "x");
+        assertTrue(session.lastRescanLength() < text.length() / 10, "rescanned " + session.lastRescanLength());
+    }
+
+    private static String piece(Random random) {
+        return PIECES[random.nextInt(PIECES.length)];
+    }
+
+    private static List<String> full(CharSequence text) {
+        String copy = text.toString();
+        CodeReviewerAgent1.SuggestionTable table = new CodeReviewerAgent1.SuggestionTable();
+        CodeReviewerAgent1.review(copy, new CodeReviewerAgent1.LineIndex().reset(copy), RULES, table);
+        List<CodeReviewerAgent1.Suggestion> all = new ArrayList<>(table);
+        all.sort((a, b) -> Integer.compare(a.line, b.line));
+        return describe(all);
+    }
+
+    private static List<String> describe(List<CodeReviewerAgent1.Suggestion> suggestions) {
+        return suggestions.stream().map(s -> s.line + ": " + s.rule + ": " + s.msg).toList();
+    }
+}
@@ -0,0 +1,26 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class RulePlanTest {
+
+    @Test
+    void builtInEntriesMatchTheirRules() {
+        for (RulePlan.BuiltIn b : RulePlan.BUILT_IN) {
+            CodeReviewerAgent1.Rule rule = b.create.get();
+            assertEquals(b.name, rule.name());
+            assertEquals(b.enabledByDefault, rule.enabledByDefault(), b.name);
+            assertEquals(CodeReviewerAgent1.Rule.CONFIG_PREFIX + b.name, rule.configKey());
+        }
+    }
+
+    @Test
+    void builtInsComeFirstThenDiscoveredRules() {
+        List<String> names = RulePlan.load(key -> key.equals("review.rule.SystemOutRule") ? "false" : null).rules
+            .stream().map(CodeReviewerAgent1.Rule::name).toList();
+        assertEquals(List.of("MissingDotRule", "UnclosedConstructRule", "WarningRule"), names);
+        assertTrue(CodeReviewerAgent1.rules().stream().anyMatch(r -> r instanceof CodeReviewerAgent1.SystemOutRule));
+    }
+}
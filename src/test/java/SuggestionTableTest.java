@@ -0,0 +1,36 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SuggestionTableTest {
+
+    private static final String TEXT = "class A {\n    // XXX later\n    int x;\n}\n";
+
+    @Test
+    void discoveredRuleIsPlanned() {
+        assertTrue(CodeReviewerAgent1.rules().stream().anyMatch(r -> r instanceof WarningRule));
+    }
+
+    @Test
+    void unknownSeverityCountsAsMajor() {
+        CodeReviewerAgent1.SuggestionTable table = CodeReviewerAgent1.review(TEXT);
+        assertEquals(1, table.size());
+        assertEquals("WarningRule", table.get(0).rule);
+        assertEquals("MAJOR", CodeReviewerAgent1.SuggestionTable.severityOf("WarningRule"));
+        assertEquals(List.of(table.get(0).msg), messages(table.bySeverity("MAJOR")));
+    }
+
+    @Test
+    void unknownSeveritySurvivesTheCacheFormat() {
+        // --cache replays findings through decode into a fresh table
+        CodeReviewerAgent1.SuggestionTable table =
+            CodeReviewerAgent1.Suggestion.decode(CodeReviewerAgent1.Suggestion.encode(CodeReviewerAgent1.review(TEXT)));
+        assertEquals(1, table.bySeverity("MAJOR").size());
+    }
+
+    private static List<String> messages(List<CodeReviewerAgent1.Suggestion> suggestions) {
+        return suggestions.stream().map(s -> s.msg).toList();
+    }
+}
@@ -0,0 +1,161 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ai.reviewer.analyzer.SyntaxTree;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class TreeRuleTest {
+
+    private static final List<CodeReviewerAgent1.Rule> RULES = List.of(
+        new CodeReviewerAgent1.MissingDotRule(),
+        new CodeReviewerAgent1.UnclosedConstructRule(),
+        new CodeReviewerAgent1.EmptyCatchRule(),
+        new CodeReviewerAgent1.NestedLoopRule(),
+        new CodeReviewerAgent1.LongMethodRule(),
+        new CodeReviewerAgent1.NamingRule());
+
+    private static final String[] TOKENS = {
+        "for", "while", "do", "try", "catch", "finally", "if", "else", "class", "new", "void", "t", "n",
+        "(", ")", "{", "}", ";", "\"\"", "'''", "//c", "\n", "\n", " ", "=", "."
+    };
+
+    @Test
+    void treeRulesAreOptIn() {
+        assertTrue(RulePlan.load(key -> null).rules.stream().noneMatch(r -> r instanceof CodeReviewerAgent1.TreeRule));
+        List<CodeReviewerAgent1.Rule> on = RulePlan.load(
+            key -> key.equals("review.rule.NestedLoopRule") ? "true" : null).rules;
+        assertEquals(1, on.stream().filter(r -> r instanceof CodeReviewerAgent1.TreeRule).count());
+        assertTrue(on.stream().anyMatch(r -> r instanceof CodeReviewerAgent1.NestedLoopRule));
+    }
+
+    @Test
+    void configuredLimitIsPartOfTheCacheKey() {
+        assertEquals("CodeReviewerAgent1$LongMethodRule[review.max.method.lines="
+                + CodeReviewerAgent1.LongMethodRule.MAX_LINES + "],CodeReviewerAgent1$NestedLoopRule,",
+            CodeReviewerAgent1.ruleSet(List.of(new CodeReviewerAgent1.LongMethodRule(),
+                new CodeReviewerAgent1.NestedLoopRule())));
+    }
+
+    @Test
+    void loopWithoutBracesAroundAnEarlierLoop() {
+        // the loop opened for line 1 ends up inside the one starting on line 2
+        assertEquals(List.of(1, 2, 2), lines("for(\"\"'''\n'''for())t n(;"));
+    }
+
+    @Test
+    void loopHeaderSpanningLines() {
+        // the ';' in the header must not let the line after it go first
+        CodeReviewerAgent1.TreeRule loops = new CodeReviewerAgent1.TreeRule() {
+            @Override
+            public Set<SyntaxTree.Kind> kinds() { return EnumSet.of(SyntaxTree.Kind.LOOP); }
+
+            @Override
+            public void onNode(SyntaxTree tree, int node, CodeReviewerAgent1.LineIndex index,
+                               CodeReviewerAgent1.SuggestionSink out) {
+                out.accept(new CodeReviewerAgent1.Suggestion(index.lineOf(tree.start(node)), "loop"));
+            }
+        };
+        assertEquals(List.of(1, 2), lines("for (int i = 0;\n     i < n; t n()) {}\n",
+            List.of(new CodeReviewerAgent1.MissingDotRule(), loops)));
+    }
+
+    @Test
+    void nestedLoopInsideASwitchCase() {
+        List<CodeReviewerAgent1.Rule> nested = List.of(new CodeReviewerAgent1.NestedLoopRule());
+        assertEquals(List.of(4), lines("for (int i : xs) {\n"
+            + "    switch (k) {\n"
+            + "        case 1:\n"
+            + "            for (int j : xs) g();\n"
+            + "            break;\n"
+            + "        default:\n"
+            + "    }\n"
+            + "}\n", nested));
+        assertEquals(List.of(4), lines("switch (k) {\n"
+            + "    case 1 -> {\n"
+            + "        for (int i : xs)\n"
+            + "            for (int j : xs) g();\n"
+            + "    }\n"
+            + "    default -> {}\n"
+            + "}\n", nested));
+    }
+
+    @Test
+    void bracelessNestWithAnEmptyBody() {
+        assertEquals(List.of(1), lines("for (int i : xs) for (int j : xs) ;\n",
+            List.of(new CodeReviewerAgent1.NestedLoopRule())));
+    }
+
+    @Test
+    void whileAfterADoWithoutBracesIsItsCondition() {
+        String text = "void f() { do x(); while (a); while (b); }";
+        assertEquals(List.of("METHOD", "LOOP do x();", "LOOP while (b);"), outline(SyntaxTree.parse(text), text));
+    }
+
+    @Test
+    void enumConstantBodiesHoldMethods() {
+        String text = "enum E {\n"
+            + "    X {\n"
+            + "        void h() { for (int i : xs) for (int j : xs) ; }\n"
+            + "    },\n"
+            + "    @Deprecated Y(1) { void h() {} },\n"
+            + "    Z;\n"
+            + "    E() {}\n"
+            + "    E(int a) {}\n"
+            + "    void h() {}\n"
+            + "}\n";
+        assertEquals(List.of("TYPE enum E", "TYPE X", "METHOD", "LOOP for (int i : xs) for (int j : xs) ;",
+            "LOOP for (int j : xs) ;", "TYPE @Deprecated Y(1)",
+            "METHOD", "METHOD", "METHOD", "METHOD"), outline(SyntaxTree.parse(text), text));
+        assertEquals(List.of(3), lines(text, List.of(new CodeReviewerAgent1.NestedLoopRule())));
+    }
+
+    @Test
+    void namingChecksTypesAndMethodsButNotConstructors() {
+        String text = "class good {\n"
+            + "    good() {}\n"
+            + "    void Bad() {}\n"
+            + "    void fine() { new Runnable() { public void run() {} }; }\n"
+            + "    enum Mode { A { void Odd() {} } }\n"
+            + "}\n";
+        assertEquals(List.of(1, 3, 5), lines(text, List.of(new CodeReviewerAgent1.NamingRule())));
+    }
+
+    @Test
+    void findingsComeInLineOrder() {
+        Random random = new Random(42);
+        for (int round = 0; round < 2000; round++) {
+            StringBuilder text = new StringBuilder();
+            int length = 1 + random.nextInt(40);
+            for (int i = 0; i < length; i++) text.append(TOKENS[random.nextInt(TOKENS.length)]);
+            List<Integer> lines = lines(text.toString());
+            for (int i = 1; i < lines.size(); i++) {
+                assertTrue(lines.get(i - 1) <= lines.get(i), text + " gave lines " + lines);
+            }
+        }
+    }
+
+    /** Each node's kind, then as much of its start as tells the nodes apart. */
+    private static List<String> outline(SyntaxTree tree, String text) {
+        List<String> out = new ArrayList<>();
+        for (int n = 0; n < tree.size(); n++) {
+            String start = text.substring(tree.start(n), tree.bodyStart(n) < 0 ? tree.end(n) : tree.bodyStart(n));
+            out.add(tree.kind(n) + (tree.kind(n) == SyntaxTree.Kind.METHOD ? "" : " " + start.trim()));
+        }
+        return out;
+    }
+
+    private static List<Integer> lines(String text) {
+        return lines(text, RULES);
+    }
+
+    private static List<Integer> lines(String text, List<CodeReviewerAgent1.Rule> rules) {
+        List<Integer> lines = new ArrayList<>();
+        CodeReviewerAgent1.review(text, new CodeReviewerAgent1.LineIndex().reset(text), rules, s -> lines.add(s.line));
+        return lines;
+    }
+}
@@ -0,0 +1,21 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A discovered rule, registered for the tests only, whose severity is none
+ * of the {@code ReviewSeverity} names. It flags lines containing "XXX".
+ */
+public class WarningRule implements CodeReviewerAgent1.Rule {
+    @Override
+    public List<CodeReviewerAgent1.Suggestion> apply(CharSequence text, CodeReviewerAgent1.LineIndex index) {
+        List<CodeReviewerAgent1.Suggestion> out = new ArrayList<>();
+        String s = text.toString();
+        for (int i = s.indexOf("XXX"); i >= 0; i = s.indexOf("XXX", i + 3)) {
+            out.add(new CodeReviewerAgent1.Suggestion(index.lineOf(i), "XXX marker"));
+        }
+        return out;
+    }
+
+    @Override
+    public String severity() { return "WARNING"; }
+}
@@ -0,0 +1,111 @@
+package com.ai.reviewer.agent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CloneIndexTest {
+
+    private static final String[] OPERATORS = {"+", "-", "*", "/", "%", "&", "|", "^", "<<", ">>"};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void findsARenamedCopyAcrossFiles() throws IOException {
+        Random random = new Random(22);
+        // the copy is lines 41-52 of A and 11-22 of B; the line before ends in "y;" in both
+        Path a = write("A.java", filler(random, 40) + method("total", "items", 1) + filler(random, 30));
+        Path b = write("B.java", filler(random, 10) + method("sum", "values", 7) + filler(random, 50));
+        Path c = write("C.java", filler(random, 60));
+        CloneIndex index = new CloneIndex();
+        for (Path p : List.of(a, b, c)) index.update(p);
+
+        List<CloneIndex.Cluster> clusters = index.clusters(CloneIndex.DEFAULT_MIN_TOKENS);
+        assertEquals(1, clusters.size(), clusters.toString());
+        List<CloneIndex.Region> regions = clusters.get(0).regions();
+        assertEquals(2, regions.size(), regions.toString());
+        CloneIndex.Region inA = regions.get(0).path().equals(CloneIndex.key(a)) ? regions.get(0) : regions.get(1);
+        CloneIndex.Region inB = inA == regions.get(0) ? regions.get(1) : regions.get(0);
+        assertEquals(CloneIndex.key(b), inB.path());
+        assertWithin(inA, 40, 52);
+        assertWithin(inB, 10, 22);
+    }
+
+    @Test
+    void unchangedFilesAreNotReadAgain() throws IOException {
+        Random random = new Random(3);
+        Path stored = dir.resolve("fingerprints.bin");
+        Path a = write("A.java", method("total", "items", 1) + filler(random, 5));
+        Path b = write("B.java", method("sum", "values", 2));
+        CloneIndex index = new CloneIndex(stored);
+        assertTrue(index.update(a));
+        assertTrue(index.update(b));
+        index.save();
+
+        CloneIndex reloaded = new CloneIndex(stored);
+        assertEquals(2, reloaded.size());
+        assertFalse(reloaded.update(a));
+        write("B.java", filler(random, 20));
+        assertTrue(reloaded.update(b));
+        assertEquals(1, reloaded.rehashed());
+        assertEquals(List.of(), reloaded.clusters(CloneIndex.DEFAULT_MIN_TOKENS));
+    }
+
+    @Test
+    void deletedFilesLeaveTheIndex() throws IOException {
+        Path a = write("A.java", method("total", "items", 1));
+        Path b = write("B.java", method("sum", "values", 2));
+        CloneIndex index = new CloneIndex();
+        index.update(a);
+        index.update(b);
+        assertEquals(1, index.clusters(CloneIndex.DEFAULT_MIN_TOKENS).size());
+        index.retainAll(List.of(a));
+        assertEquals(1, index.size());
+        assertEquals(List.of(), index.clusters(CloneIndex.DEFAULT_MIN_TOKENS));
+    }
+
+    private Path write(String name, String text) throws IOException {
+        return Files.writeString(dir.resolve(name), text);
+    }
+
+    /** Twelve lines; names and literals differ between copies, the shape does not. */
+    private static String method(String result, String input, int literal) {
+        return "int " + result + "(int[] " + input + ") {\n"
+            + "    int " + result + " = " + literal + ";\n"
+            + "    for (int i = 0; i < " + input + ".length; i++) {\n"
+            + "        if (" + input + "[i] > " + literal + ") {\n"
+            + "            " + result + " += " + input + "[i] * " + literal + ";\n"
+            + "        } else if (" + input + "[i] < 0) {\n"
+            + "            " + result + " -= " + input + "[i];\n"
+            + "        } else {\n"
+            + "            continue;\n"
+            + "        }\n"
+            + "    }\n"
+            + "    return " + result + " / (" + input + ".length + 1);\n";
+    }
+
+    /** Lines whose operators are random, so no two stretches of them look alike. */
+    private static String filler(Random random, int lines) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            text.append("x = y");
+            for (int j = 0; j < 4; j++) text.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(" y");
+            text.append(";\n");
+        }
+        return text.toString();
+    }
+
+    private static void assertWithin(CloneIndex.Region region, int first, int last) {
+        assertTrue(region.firstLine() >= first && region.lastLine() <= last
+            && region.lastLine() - region.firstLine() >= (last - first) / 2, region.toString());
+    }
+}
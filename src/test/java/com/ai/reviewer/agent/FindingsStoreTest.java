@@ -0,0 +1,166 @@
+package com.ai.reviewer.agent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FindingsStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void laterReviewReplacesEarlier() throws IOException {
+        try (FindingsStore store = new FindingsStore(dir)) {
+            store.add("c", "f", List.of(finding("old")));
+            store.add("c", "f", List.of(finding("new")));
+            store.flush();
+            assertEquals(List.of("new"), messages(store, "c"));
+            store.add("c", "f", List.of());
+            store.flush();
+            assertEquals(List.of(), messages(store, "c"));
+        }
+    }
+
+    @Test
+    void compactionKeepsNewerSegmentOfAnotherStore() throws IOException {
+        FindingsStore a = new FindingsStore(dir);
+        FindingsStore b = new FindingsStore(dir);
+        a.add("c", "f", List.of(finding("old")));
+        a.add("c", "g", List.of(finding("other")));
+        a.flush();
+        a.add("c", "h", List.of(finding("third")));
+        a.flush();
+        b.add("c", "f", List.of(finding("new")));
+        b.flush();
+        // a has not seen b's segment
+        a.compact();
+        assertEquals(List.of("other", "third", "new"), messages(new FindingsStore(dir), "c"));
+        assertEquals(List.of("other", "third", "new"), messages(a, "c"));
+    }
+
+    @Test
+    void writeAfterCompactionStaysNewest() throws IOException {
+        FindingsStore a = new FindingsStore(dir);
+        a.add("c", "f", List.of(finding("v1")));
+        a.flush();
+        FindingsStore b = new FindingsStore(dir);
+        a.add("c", "g", List.of(finding("g")));
+        a.flush();
+        a.add("c", "f", List.of(finding("v2")));
+        a.flush();
+        a.compact();
+        // b's view predates the compaction, which freed lower numbers
+        b.add("c", "f", List.of(finding("v3")));
+        b.flush();
+        assertEquals(List.of("g", "v3"), messages(new FindingsStore(dir), "c"));
+    }
+
+    @Test
+    void storesWritingTogetherKeepBothSegments() throws IOException {
+        FindingsStore a = new FindingsStore(dir);
+        FindingsStore b = new FindingsStore(dir);
+        a.add("c", "f", List.of(finding("from a")));
+        a.flush();
+        b.add("c", "g", List.of(finding("from b")));
+        b.flush();
+        assertEquals(List.of("from a", "from b"), messages(new FindingsStore(dir), "c"));
+    }
+
+    @Test
+    void refreshSeesSegmentCompactedInPlace() throws IOException {
+        FindingsStore a = new FindingsStore(dir);
+        a.add("c", "f", List.of(finding("f")));
+        a.flush();
+        a.add("c", "g", List.of(finding("g")));
+        a.flush();
+        FindingsStore b = new FindingsStore(dir);
+        b.compact();
+        assertEquals(1, b.segmentCount());
+        a.refresh();
+        assertEquals(1, a.segmentCount());
+        assertEquals(List.of("f", "g"), messages(a, "c"));
+    }
+
+    @Test
+    void newSinceIgnoresMovedFindings() throws IOException {
+        try (FindingsStore store = new FindingsStore(dir)) {
+            store.add("base", "f", List.of(new FindingsStore.Finding("R", "MAJOR", 3, "same")));
+            store.add("head", "f", List.of(new FindingsStore.Finding("R", "MAJOR", 9, "same"),
+                new FindingsStore.Finding("R", "MAJOR", 12, "added")));
+            store.flush();
+            List<FindingsStore.Finding> added = store.newSince("base", "head", new FindingsStore.Query());
+            assertEquals(List.of("added"), added.stream().map(FindingsStore.Finding::getMessage)
+                .collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void indexedQueriesMatchAFilterOverEveryFinding() throws IOException {
+        // "a/" must not take "ab/"; "é/" sorts after every ASCII path
+        List<String> files = List.of("a/X.java", "a/b/Y.java", "ab/Z.java", "b/W.java", "é/V.java");
+        List<String> rules = List.of("R1", "R2", "R3");
+        List<String> severities = List.of("MINOR", "MAJOR", "CRITICAL");
+        List<FindingsStore.Finding> all = new ArrayList<>();
+        Random random = new Random(7);
+        try (FindingsStore store = new FindingsStore(dir)) {
+            for (String commit : List.of("c1", "c2", "c3")) {
+                for (String file : files) {
+                    List<FindingsStore.Finding> found = new ArrayList<>();
+                    // some files are reviewed clean, which leaves entries without rows
+                    for (int i = random.nextInt(4); i > 0; i--) {
+                        found.add(new FindingsStore.Finding(rules.get(random.nextInt(rules.size())),
+                            severities.get(random.nextInt(severities.size())), random.nextInt(100), "m" + all.size()));
+                        FindingsStore.Finding f = found.get(found.size() - 1);
+                        all.add(new FindingsStore.Finding(commit, file, f.getRule(), f.getSeverity(), f.getLine(),
+                            f.getMessage()));
+                    }
+                    store.add(commit, file, found);
+                }
+                store.flush();
+            }
+            for (boolean compacted : List.of(false, true)) {
+                if (compacted) store.compact();
+                for (String commit : Arrays.asList(null, "c2", "c9")) {
+                    for (String prefix : Arrays.asList(null, "a/", "ab", "é/", "zz")) {
+                        for (String rule : Arrays.asList(null, "R2", "MAJOR")) {
+                            for (String severity : Arrays.asList(null, "MAJOR", "R1")) {
+                                FindingsStore.Query q = new FindingsStore.Query().commit(commit).pathPrefix(prefix)
+                                    .rule(rule).severity(severity);
+                                List<String> want = all.stream()
+                                    .filter(f -> commit == null || f.getCommit().equals(commit))
+                                    .filter(f -> prefix == null || f.getFile().startsWith(prefix))
+                                    .filter(f -> rule == null || f.getRule().equals(rule))
+                                    .filter(f -> severity == null || f.getSeverity().equals(severity))
+                                    .map(FindingsStore.Finding::toString)
+                                    .collect(Collectors.toList());
+                                String what = commit + " " + prefix + " " + rule + " " + severity;
+                                assertEquals(want, store.find(q).stream().map(FindingsStore.Finding::toString)
+                                    .collect(Collectors.toList()), what);
+                                assertEquals(want.size(), store.count(q), what);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static FindingsStore.Finding finding(String message) {
+        return new FindingsStore.Finding("R", "MAJOR", 1, message);
+    }
+
+    private static List<String> messages(FindingsStore store, String commit) {
+        return store.find(new FindingsStore.Query().commit(commit)).stream()
+            .map(FindingsStore.Finding::getMessage)
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,94 @@
+package com.ai.reviewer.analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.ai.reviewer.analyzer.JavaLexer.TokenKind;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class TokenPatternMatcherTest {
+
+    private static final String[] WORDS = {"a", "b", "c", "d"};
+    /** Identifiers, and what may or may not separate them. */
+    private static final String[] PIECES = {"a", "b", "c", "d", "ab", " ", " ", "\n", ".", "(", "/* */", "// x\n", "\"a\""};
+
+    @Test
+    void matchesOnlyAdjacentIdentifiers() {
+        TokenPatternMatcher matcher = TokenPatternMatcher.compile(List.of("System out println"));
+        assertEquals(List.of("0:3-21"), dfa(matcher, "x; System out println(1); System.out.println(2);"));
+    }
+
+    @Test
+    void agreesWithANaiveMatcher() {
+        Random random = new Random(8);
+        for (int round = 0; round < 2000; round++) {
+            List<String> patterns = new ArrayList<>();
+            for (int p = random.nextInt(6) + 1; p > 0; p--) {
+                StringBuilder pattern = new StringBuilder();
+                for (int e = random.nextInt(4) + 1; e > 0; e--) {
+                    if (pattern.length() > 0) pattern.append(' ');
+                    pattern.append(random.nextInt(5) == 0 ? "*" : WORDS[random.nextInt(WORDS.length)]);
+                }
+                patterns.add(pattern.toString());
+            }
+            StringBuilder text = new StringBuilder();
+            for (int i = random.nextInt(40); i > 0; i--) {
+                text.append(PIECES[random.nextInt(PIECES.length)]);
+                if (random.nextBoolean()) text.append(' ');
+            }
+            TokenPatternMatcher matcher = TokenPatternMatcher.compile(patterns);
+            assertEquals(naive(patterns, text), dfa(matcher, text), patterns + " in " + text);
+        }
+    }
+
+    /** Matches as "pattern:start-end", by end, then pattern. */
+    private static List<String> dfa(TokenPatternMatcher matcher, CharSequence text) {
+        List<String> found = new ArrayList<>();
+        TokenPatternMatcher.Scan scan = matcher.listener((p, m) -> found.add(p + ":" + m.start(0) + "-" + m.end(m.length() - 1)));
+        new JavaLexer().subscribe(scan, EnumSet.of(TokenKind.IDENTIFIER)).scan(text);
+        found.sort(TokenPatternMatcherTest::byEndThenPattern);
+        return found;
+    }
+
+    /** Tries every pattern at every identifier; matches of one pattern do not overlap. */
+    private static List<String> naive(List<String> patterns, CharSequence text) {
+        List<int[]> ids = new ArrayList<>();
+        List<String> images = new ArrayList<>();
+        new JavaLexer().subscribe(t -> {
+            ids.add(new int[] {t.index(), t.start(), t.end()});
+            images.add(t.image());
+        }, EnumSet.of(TokenKind.IDENTIFIER)).scan(text);
+        List<String> found = new ArrayList<>();
+        for (int p = 0; p < patterns.size(); p++) {
+            String[] elems = patterns.get(p).split(" ");
+            int next = 0;
+            for (int i = next; i + elems.length <= ids.size(); i++) {
+                if (i < next || !matches(elems, ids, images, i)) continue;
+                found.add(p + ":" + ids.get(i)[1] + "-" + ids.get(i + elems.length - 1)[2]);
+                next = i + elems.length;
+            }
+        }
+        found.sort(TokenPatternMatcherTest::byEndThenPattern);
+        return found;
+    }
+
+    private static boolean matches(String[] elems, List<int[]> ids, List<String> images, int from) {
+        for (int e = 0; e < elems.length; e++) {
+            if (e > 0 && ids.get(from + e)[0] != ids.get(from + e - 1)[0] + 1) return false;
+            if (!elems[e].equals("*") && !elems[e].equals(images.get(from + e))) return false;
+        }
+        return true;
+    }
+
+    private static int byEndThenPattern(String a, String b) {
+        int c = Integer.compare(end(a), end(b));
+        return c != 0 ? c : a.compareTo(b);
+    }
+
+    private static int end(String match) {
+        return Integer.parseInt(match.substring(match.indexOf('-') + 1));
+    }
+}
@@ -0,0 +1,69 @@
+package com.ai.reviewer.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GitDiffTest {
+
+    @TempDir
+    Path repo;
+
+    @BeforeEach
+    void commit() throws Exception {
+        Files.createDirectories(repo.resolve("src"));
+        Files.writeString(repo.resolve("src/A.java"), "class A {}\n");
+        Files.writeString(repo.resolve("B.java"), "class B {}\n");
+        git("init", "-q");
+        git("add", ".");
+        git("-c", "user.name=t", "-c", "user.email=t@t", "commit", "-q", "-m", "init");
+    }
+
+    @Test
+    void cleanTree() throws IOException {
+        assertFalse(GitDiff.dirty(repo, List.of()));
+    }
+
+    @Test
+    void modifiedOrUntrackedFileIsDirty() throws IOException {
+        Files.writeString(repo.resolve("src/A.java"), "class A { int x; }\n");
+        assertTrue(GitDiff.dirty(repo, List.of()));
+        assertTrue(GitDiff.dirty(repo, List.of(Path.of("src"))));
+        assertFalse(GitDiff.dirty(repo, List.of(Path.of("B.java"))));
+        Files.writeString(repo.resolve("C.java"), "class C {}\n");
+        assertTrue(GitDiff.dirty(repo, List.of(Path.of("C.java"))));
+    }
+
+    @Test
+    void threeDotRangeStartsAtTheMergeBase() throws Exception {
+        String fork = GitDiff.revParse(repo, "HEAD");
+        git("checkout", "-q", "-b", "topic");
+        Files.writeString(repo.resolve("B.java"), "class B { int y; }\n");
+        git("-c", "user.name=t", "-c", "user.email=t@t", "commit", "-q", "-am", "topic");
+        git("checkout", "-q", "-");
+        Files.writeString(repo.resolve("src/A.java"), "class A { int x; }\n");
+        git("-c", "user.name=t", "-c", "user.email=t@t", "commit", "-q", "-am", "main");
+
+        assertArrayEquals(new String[] {fork, "topic"}, GitDiff.range(repo, "HEAD...topic"));
+        assertEquals(List.of("B.java"), List.copyOf(GitDiff.changedLines(repo, fork, "topic", 0).keySet()));
+        assertArrayEquals(new String[] {"HEAD", "topic"}, GitDiff.range(repo, "..topic"));
+        assertArrayEquals(new String[] {"HEAD~1", null}, GitDiff.range(repo, "HEAD~1"));
+    }
+
+    private void git(String... args) throws Exception {
+        String[] cmd = new String[args.length + 1];
+        cmd[0] = "git";
+        System.arraycopy(args, 0, cmd, 1, args.length);
+        Process p = new ProcessBuilder(cmd).directory(repo.toFile()).inheritIO().start();
+        if (p.waitFor() != 0) throw new IOException("git " + String.join(" ", args) + " failed");
+    }
+}
@@ -0,0 +1,87 @@
+package com.ai.reviewer.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.annotations.SerializedName;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class JsonFieldsTest {
+
+    @Test
+    void writesWhatReflectionWrites() throws IOException {
+        for (Gson gson : List.of(new Gson(), new GsonBuilder().serializeNulls().create(),
+                new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES).create())) {
+            Comment comment = new Comment(7, "Use a logger", null);
+            JsonFields<Comment> fields = JsonFields.of(gson, Comment.class, writers());
+            String written = write(gson, fields, comment);
+            assertEquals(gson.toJson(comment), written);
+            Comment read = gson.fromJson(written, Comment.class);
+            assertEquals(comment.getLineNumber(), read.getLineNumber());
+            assertEquals(comment.getMessage(), read.getMessage());
+            assertEquals(comment.getCode(), read.getCode());
+            assertEquals(comment.getRule(), read.getRule());
+        }
+    }
+
+    @Test
+    void missingOrUnknownFieldsFallBack() {
+        Map<String, JsonFields.Value<Comment>> missing = writers();
+        missing.remove("code");
+        assertNull(JsonFields.of(new Gson(), Comment.class, missing));
+        Map<String, JsonFields.Value<Comment>> unknown = writers();
+        unknown.put("severity", (out, c) -> out.value("MAJOR"));
+        assertNull(JsonFields.of(new Gson(), Comment.class, unknown));
+    }
+
+    private static Map<String, JsonFields.Value<Comment>> writers() {
+        // not in declaration order: the output must follow the class, not the map
+        Map<String, JsonFields.Value<Comment>> w = new LinkedHashMap<>();
+        w.put("rule", (out, c) -> out.value(c.getRule()));
+        w.put("code", (out, c) -> out.value(c.getCode()));
+        w.put("message", (out, c) -> out.value(c.getMessage()));
+        w.put("lineNumber", (out, c) -> out.value(c.getLineNumber()));
+        return w;
+    }
+
+    private static <T> String write(Gson gson, JsonFields<T> fields, T value) throws IOException {
+        StringWriter text = new StringWriter();
+        fields.write(gson.newJsonWriter(text), value);
+        return text.toString();
+    }
+
+    static class Finding {
+        private String rule = "SystemOutRule";
+    }
+
+    static class Comment extends Finding {
+        static int instances;
+
+        private int lineNumber;
+        @SerializedName("text")
+        private String message;
+        private String code;
+        private transient String cached = "not written";
+
+        Comment() {}
+
+        Comment(int lineNumber, String message, String code) {
+            this.lineNumber = lineNumber;
+            this.message = message;
+            this.code = code;
+        }
+
+        int getLineNumber() { return lineNumber; }
+        String getMessage() { return message; }
+        String getCode() { return code; }
+        String getRule() { return ((Finding) this).rule; }
+    }
+}
@@ -0,0 +1,45 @@
+package com.ai.reviewer.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedSourceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void textIsTheMappingEvenWhenNotAscii() throws IOException {
+        String text = "class A {\n    café bar();\n}\n";
+        Path p = write(text);
+        try (MappedSource source = MappedSource.map(p)) {
+            assertSame(source, source.text());
+            // positions are bytes: é is two of them
+            assertEquals(text.length() + 1, source.length());
+            assertEquals(text, source.toString());
+            int name = text.indexOf("café");
+            assertEquals("café", source.subSequence(name, name + 5).toString());
+        }
+    }
+
+    @Test
+    void malformedBytesAreReplacedOnBothPaths() throws IOException {
+        // é in ISO-8859-1, which is not UTF-8
+        Path p = Files.write(dir.resolve("A.java"), new byte[] {'c', 'a', 'f', (byte) 0xE9, ';'});
+        try (MappedSource source = MappedSource.map(p)) {
+            assertEquals("caf\uFFFD;", source.toString());
+            assertEquals(source.toString(), MappedSource.read(p));
+        }
+    }
+
+    private Path write(String text) throws IOException {
+        return Files.write(dir.resolve("A.java"), text.getBytes(StandardCharsets.UTF_8));
+    }
+}